@@ -0,0 +1,201 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import hr.fer.zemris.ppj.lexical.LexBackend;
+import hr.fer.zemris.ppj.lexical.input.EditableInput;
+import hr.fer.zemris.ppj.lexical.input.MappedInput;
+import hr.fer.zemris.ppj.lexical.input.StreamInput;
+import hr.fer.zemris.ppj.syntax.LRNode;
+import hr.fer.zemris.ppj.syntax.SymbolQueue;
+
+/**
+ * Helper class used for testing the compiler. Tables are generated from the
+ * language in semantic_test, and every program in semantic_test/programs is
+ * compiled with {@link PPJC}. Output is compared with test.out, which is what
+ * LA, SA and GeneratorKoda run one after another write to a.frisc for the
+ * program (test.in). There are programs with lexical, syntax and semantic
+ * errors too.
+ *
+ * Every program is also compiled with the lexer and the parser working at the
+ * same time, like <code>PPJC -pipe</code> does, with the default queue and
+ * with a queue of only one batch. All programs one after another, many times,
+ * make a long input, which is compiled both ways too, and then again with an
+ * input that fails in the middle, so the lexer fails while the parser waits.
+ *
+ * @author fhrenic
+ */
+public class CompilerTester {
+
+    private static final String DIR = "semantic_test";
+    private static final String PROGRAMS = DIR + "/programs";
+    // semantic analysis goes as deep as the program is long, so not too long
+    private static final int REPEAT = 10;
+    private static final long TIMEOUT = 10_000;
+    private static final int[] CAPACITIES = { SymbolQueue.DEFAULT_CAPACITY, 1 };
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        long start = System.currentTimeMillis();
+        boolean allGood = true;
+        int n = 0;
+
+        try (InputStream lexical = new FileInputStream(DIR + "/lex.in");
+                InputStream syntax = new FileInputStream(DIR + "/syn.in")) {
+            new GLA(lexical).generateLA();
+            new GSA(syntax).generateSA();
+        }
+        PPJC compiler = new PPJC(LA.readTables(LexBackend.GENERATED), SA.readTables());
+
+        File[] tests = new File(PROGRAMS).listFiles();
+        Arrays.sort(tests);
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        for (File test : tests) {
+            n++;
+            Path program = new File(test, "test.in").toPath();
+            all.write(Files.readAllBytes(program));
+            String expected = new String(Files.readAllBytes(new File(test, "test.out")
+                    .toPath()), StandardCharsets.UTF_8);
+            boolean ok = check(test + " sequential", expected,
+                    compile(compiler, compiler.parse(compiler.lex(program))));
+            for (int capacity : CAPACITIES) {
+                ok &= check(test + " pipelined, capacity " + capacity, expected,
+                        compile(compiler, compiler.lexAndParse(new MappedInput(program),
+                                capacity)));
+            }
+            allGood &= ok;
+        }
+
+        // long input, with many batches of symbols
+        n++;
+        byte[] programs = all.toByteArray();
+        byte[] program = new byte[programs.length * REPEAT];
+        for (int idx = 0; idx < REPEAT; idx++) {
+            System.arraycopy(programs, 0, program, idx * programs.length, programs.length);
+        }
+        String expected = compile(compiler, compiler.parse(compiler.lex(
+                new ByteArrayInputStream(program))));
+        for (int capacity : CAPACITIES) {
+            allGood &= check("long input, capacity " + capacity, expected,
+                    compile(compiler, compiler.lexAndParse(new StreamInput(
+                            new ByteArrayInputStream(program)), capacity)));
+        }
+
+        // lexer fails, the parser must not wait for it forever
+        n++;
+        for (int capacity : CAPACITIES) {
+            try {
+                compiler.lexAndParse(new StreamInput(new FailingStream(program,
+                        program.length / 2)), capacity);
+                System.out.println("Failed failing input, capacity " + capacity
+                        + ": no exception");
+                allGood = false;
+            } catch (IOException ex) {
+                allGood &= check("failing input, capacity " + capacity,
+                        FailingStream.MESSAGE, ex.getMessage());
+            }
+        }
+
+        // parser stops, the lexer must not wait for it forever
+        n++;
+        allGood &= cancel();
+
+        long end = System.currentTimeMillis();
+        System.out.println(String.format("Total time for %d tests: %.2f seconds", n,
+                (end - start) / 1000.0));
+        System.out.println("All ok: " + allGood);
+    }
+
+    private static String compile(PPJC compiler, LRNode tree) {
+        return PPJC.output(compiler.analyse(tree));
+    }
+
+    private static boolean check(String name, String expected, String output) {
+        if (!expected.equals(output)) {
+            System.out.println("Failed " + name);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lexer fills a queue of one batch, the parser takes one symbol and
+     * cancels the queue while the lexer waits. Lexer must get an exception
+     * instead of waiting forever.
+     */
+    private static boolean cancel() {
+        final SymbolQueue queue = new SymbolQueue(Collections.<String> emptyList(), 1);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread lexer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    EditableInput input = new EditableInput("x");
+                    for (int idx = 0; idx < 4 * SymbolQueue.BATCH_SIZE; idx++) {
+                        queue.addToken("IDN", 1, input, 0, 1);
+                    }
+                    queue.close();
+                } catch (IOException ex) {
+                    failure.set(ex);
+                }
+            }
+        });
+        lexer.setDaemon(true);
+        lexer.start();
+
+        boolean ok = queue.next() != null;
+        try {
+            // cancel while the lexer waits for a free slot
+            long until = System.currentTimeMillis() + TIMEOUT;
+            while (lexer.getState() != Thread.State.WAITING
+                    && System.currentTimeMillis() < until) {
+                Thread.sleep(1);
+            }
+            queue.cancel();
+            lexer.join(TIMEOUT);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        ok &= !lexer.isAlive() && failure.get() != null && !queue.hasEnded();
+        if (!ok) {
+            System.out.println("Failed cancelled queue");
+        }
+        return ok;
+    }
+
+    /**
+     * Stream that fails after the given number of bytes.
+     */
+    private static class FailingStream extends InputStream {
+
+        private static final String MESSAGE = "Input failed";
+
+        private byte[] bytes;
+        private int failAt;
+        private int position;
+
+        public FailingStream(byte[] bytes, int failAt) {
+            this.bytes = bytes;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == failAt) {
+                throw new IOException(MESSAGE);
+            }
+            return bytes[position++] & 0xff;
+        }
+
+    }
+
+}
@@ -0,0 +1,214 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import hr.fer.zemris.ppj.lexical.LexBackend;
+
+/**
+ * Helper class used for testing {@link PPJCDaemon}. Requests in
+ * semantic_test/daemon/test.in are the sample programs of the compiler, an
+ * empty program and one with characters that aren't ASCII, test.out has the
+ * responses for them, in the same order. Requests are sent many times, with
+ * different ids, to a daemon with several threads, and every response must be
+ * a whole frame with the expected status and output for it's id. Invalid and
+ * cut off requests must stop the daemon with an exception, after responses to
+ * requests before them.
+ *
+ * @author fhrenic
+ */
+public class DaemonTester {
+
+    private static final String DIR = "semantic_test";
+    private static final String REQUESTS = DIR + "/daemon/test.in";
+    private static final String RESPONSES = DIR + "/daemon/test.out";
+    private static final int ROUNDS = 32;
+    private static final int THREADS = 8;
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        long start = System.currentTimeMillis();
+        boolean allGood = true;
+        int n = 0;
+
+        try (InputStream lexical = new FileInputStream(DIR + "/lex.in");
+                InputStream syntax = new FileInputStream(DIR + "/syn.in")) {
+            new GLA(lexical).generateLA();
+            new GSA(syntax).generateSA();
+        }
+        PPJC compiler = new PPJC(LA.readTables(LexBackend.GENERATED), SA.readTables());
+
+        List<Frame> requests = readFrames(Files.readAllBytes(Paths.get(REQUESTS)));
+        List<Frame> responses = readFrames(Files.readAllBytes(Paths.get(RESPONSES)));
+
+        // every request many times, ids tell them apart
+        n++;
+        ByteArrayOutputStream input = new ByteArrayOutputStream();
+        Map<String, Frame> expected = new HashMap<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int idx = 0; idx < requests.size(); idx++) {
+                String id = requests.get(idx).header[0] + "." + round;
+                String[] header = responses.get(idx).header.clone();
+                header[0] = id;
+                expected.put(id, new Frame(header, responses.get(idx).body));
+                write(input, requests.get(idx).body, id);
+            }
+        }
+        byte[] output = serve(compiler, input.toByteArray());
+        allGood &= check("concurrent requests", expected, output);
+
+        // invalid requests, responses to requests before them are still sent
+        String[] invalid = { "x 5\nabc", "x\n", "x -1\n", "x y\n", "x 1 2\n",
+                "x 2000000000\n" };
+        for (String request : invalid) {
+            n++;
+            Frame first = requests.get(0);
+            input = new ByteArrayOutputStream();
+            write(input, first.body, "first");
+            input.write(request.getBytes(StandardCharsets.UTF_8));
+            output = null;
+            try {
+                serve(compiler, input.toByteArray());
+                System.out.println("Failed invalid request " + Arrays.toString(request
+                        .split("\n")) + ": no exception");
+                allGood = false;
+            } catch (Partial ex) {
+                output = ex.output;
+            }
+            if (output != null) {
+                String[] header = responses.get(0).header.clone();
+                header[0] = "first";
+                expected = new HashMap<>();
+                expected.put("first", new Frame(header, responses.get(0).body));
+                allGood &= check("invalid request " + Arrays.toString(request.split("\n")),
+                        expected, output);
+            }
+        }
+
+        long end = System.currentTimeMillis();
+        System.out.println(String.format("Total time for %d tests: %.2f seconds", n,
+                (end - start) / 1000.0));
+        System.out.println("All ok: " + allGood);
+    }
+
+    /**
+     * Sends requests to a new daemon.
+     *
+     * @return responses
+     * @throws Partial if the daemon failed, with responses written before
+     */
+    private static byte[] serve(PPJC compiler, byte[] requests) throws Partial {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            new PPJCDaemon(compiler, THREADS).serve(new ByteArrayInputStream(requests),
+                    output);
+        } catch (IOException ex) {
+            throw new Partial(output.toByteArray());
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Checks that there is exactly the expected response for every id.
+     */
+    private static boolean check(String name, Map<String, Frame> expected, byte[] output)
+            throws IOException {
+        List<Frame> frames;
+        try {
+            frames = readFrames(output);
+        } catch (IOException ex) {
+            System.out.println("Failed " + name + ": " + ex.getMessage());
+            return false;
+        }
+        Map<String, Frame> left = new HashMap<>(expected);
+        for (Frame frame : frames) {
+            Frame wanted = left.remove(frame.header[0]);
+            if (wanted == null || !Arrays.equals(wanted.header, frame.header)
+                    || !Arrays.equals(wanted.body, frame.body)) {
+                System.out.println("Failed " + name + ": response "
+                        + Arrays.toString(frame.header));
+                return false;
+            }
+        }
+        if (!left.isEmpty()) {
+            System.out.println("Failed " + name + ": no responses for " + left.keySet());
+            return false;
+        }
+        return true;
+    }
+
+    private static void write(ByteArrayOutputStream output, byte[] program, String id)
+            throws IOException {
+        output.write((id + " " + program.length + "\n").getBytes(StandardCharsets.UTF_8));
+        output.write(program);
+    }
+
+    /**
+     * Reads frames, a header line with the length of the body at the end, and
+     * the body.
+     */
+    private static List<Frame> readFrames(byte[] bytes) throws IOException {
+        List<Frame> frames = new ArrayList<>();
+        int position = 0;
+        while (position < bytes.length) {
+            int newLine = position;
+            while (newLine < bytes.length && bytes[newLine] != '\n') {
+                newLine++;
+            }
+            if (newLine == bytes.length) {
+                throw new EOFException("Frame ended in the header");
+            }
+            String[] header = new String(bytes, position, newLine - position,
+                    StandardCharsets.UTF_8).split(" ");
+            int length;
+            try {
+                length = Integer.parseInt(header[header.length - 1]);
+            } catch (NumberFormatException ex) {
+                throw new IOException("Invalid header: " + Arrays.toString(header));
+            }
+            position = newLine + 1;
+            if (length < 0 || length > bytes.length - position) {
+                throw new EOFException("Frame ended in the body");
+            }
+            frames.add(new Frame(header, Arrays.copyOfRange(bytes, position,
+                    position + length)));
+            position += length;
+        }
+        return frames;
+    }
+
+    private static class Frame {
+
+        private String[] header;
+        private byte[] body;
+
+        public Frame(String[] header, byte[] body) {
+            this.header = header;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Thrown when the daemon fails, with responses it wrote before.
+     */
+    private static class Partial extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private byte[] output;
+
+        public Partial(byte[] output) {
+            this.output = output;
+        }
+    }
+
+}
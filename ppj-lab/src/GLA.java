@@ -1,31 +1,74 @@
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
+import hr.fer.zemris.ppj.lexical.LexTables;
+import hr.fer.zemris.ppj.lexical.codegen.JavaLexerWriter;
+import hr.fer.zemris.ppj.lexical.regex.RegexParser;
+import hr.fer.zemris.ppj.util.FlatTables;
 import hr.fer.zemris.ppj.util.Streamer;
+import hr.fer.zemris.ppj.util.TableCache;
 import hr.fer.zemris.ppj.util.input.LexicalInputParser;
 
 /**
  * This class is used to generate a lexical analyzer. It reads in definitions,
  * creates automatons and writes them to the file that will be read by the
- * lexical analyzer.
+ * lexical analyzer. If all automatons are generated, they are also written as
+ * flat tables that the lexical analyzer maps instead (see {@link FlatTables}).
+ * Generated files can be cached, so a definition that didn't change isn't
+ * generated again (see {@link TableCache}). With the <code>-java</code> option
+ * (optionally followed by a class name) it writes the source of a Java class
+ * that is a lexical analyzer for the language instead (see
+ * {@link JavaLexerWriter}). With the <code>-x</code> option regular
+ * expressions use the extended syntax, with classes like <code>[a-z]</code>
+ * and operators <code>+</code> and <code>?</code> (see {@link RegexParser}).
  * 
  * @author fhrenic
  * @author ajuric
  */
 public class GLA {
 
+    /**
+     * Name of the generated lexical analyzer class if none is given.
+     */
+    public static final String DEFAULT_CLASS_NAME = "GeneratedLA";
+
     /**
      * Method which is called when program starts.
      * 
-     * @param args not used
+     * @param args options
      * @throws FileNotFoundException
      */
     public static void main(String[] args) {
         InputStream input = System.in;
-        GLA generator = new GLA(input);
-        generator.generateLA();
+        boolean extendedSyntax = false;
+        String className = null;
+        for (int idx = 0; idx < args.length; idx++) {
+            if (args[idx].equals("-x")) {
+                extendedSyntax = true;
+            } else if (args[idx].equals("-java")) {
+                className = DEFAULT_CLASS_NAME;
+                if (idx + 1 < args.length && !args[idx + 1].startsWith("-")) {
+                    className = args[++idx];
+                }
+            }
+        }
+
+        if (className != null) {
+            // generated lexer can't build automatons while analyzing
+            GLA generator = new GLA(input, true, Integer.MAX_VALUE, extendedSyntax);
+            generator.generateJavaLA(className);
+        } else {
+            GLA generator = new GLA(input, true, LexicalInputParser.DEFAULT_MAX_DFA_STATES,
+                    extendedSyntax);
+            generator.generateLA();
+        }
     }
 
     /**
@@ -33,31 +76,128 @@ public class GLA {
      */
     private InputStream input;
 
+    /**
+     * If <code>true</code>, automatons are minimized before they are written.
+     */
+    private boolean minimize;
+
+    /**
+     * Maximum number of states of an automaton that is built by the generator.
+     */
+    private int maxDFAStates;
+
+    /**
+     * If <code>true</code>, regular expressions use the extended syntax.
+     */
+    private boolean extendedSyntax;
+
     /**
      * Creates a new GLA (generator) whose job is to generate objects that will
-     * be used by the LA (lexical analyzer)
+     * be used by the LA (lexical analyzer). Generated automatons are minimal.
      * 
      * @param input input stream used to read in the definitions
      */
     public GLA(InputStream input) {
+        this(input, true);
+    }
+
+    /**
+     * Creates a new GLA (generator) whose job is to generate objects that will
+     * be used by the LA (lexical analyzer)
+     * 
+     * @param input input stream used to read in the definitions
+     * @param minimize should the automatons be minimized
+     */
+    public GLA(InputStream input, boolean minimize) {
+        this(input, minimize, LexicalInputParser.DEFAULT_MAX_DFA_STATES);
+    }
+
+    /**
+     * Creates a new GLA (generator) whose job is to generate objects that will
+     * be used by the LA (lexical analyzer). Automatons that would have more
+     * than the given number of states are built by the LA, while analyzing.
+     * 
+     * @param input input stream used to read in the definitions
+     * @param minimize should the automatons be minimized
+     * @param maxDFAStates maximum number of states of a generated automaton
+     */
+    public GLA(InputStream input, boolean minimize, int maxDFAStates) {
+        this(input, minimize, maxDFAStates, false);
+    }
+
+    /**
+     * Creates a new GLA (generator) whose job is to generate objects that will
+     * be used by the LA (lexical analyzer), regular expressions of the
+     * definitions can use the extended syntax.
+     * 
+     * @param input input stream used to read in the definitions
+     * @param minimize should the automatons be minimized
+     * @param maxDFAStates maximum number of states of a generated automaton
+     * @param extendedSyntax should regular expressions use the extended syntax
+     */
+    public GLA(InputStream input, boolean minimize, int maxDFAStates, boolean extendedSyntax) {
         this.input = input;
+        this.minimize = minimize;
+        this.maxDFAStates = maxDFAStates;
+        this.extendedSyntax = extendedSyntax;
     }
 
     /**
      * Generates objects needed by the lexical analyzer.
      */
     public void generateLA() {
-        LexicalInputParser parser = new LexicalInputParser(input);
-        String filename = Streamer.getFilename4Generator(Streamer.LEXICAL_OBJECTS);
+        try {
+            final byte[] definition = Streamer.readBytes(input);
+            String key = TableCache.key("GLA " + minimize + " " + maxDFAStates + " "
+                    + extendedSyntax, definition);
+            TableCache.getDefault().load(key, new TableCache.Generator() {
 
-        try (ObjectOutputStream stream = Streamer.getOutput(filename)) {
-            stream.writeObject(parser.getStartState());
-            stream.writeObject(parser.getStates());
-            stream.writeObject(parser.getLexAutomatonHandler());
+                @Override
+                public void generate(Path directory) throws IOException {
+                    writeTables(new ByteArrayInputStream(definition), directory);
+                }
+            }, Paths.get(Streamer.FOLDER), Streamer.LEXICAL_OBJECTS, Streamer.LEXICAL_TABLES);
         } catch (IOException ioe) {
             System.err.println("Error in GLA: " + ioe.getMessage());
         }
+    }
 
+    /**
+     * Writes objects for the definitions into the directory, and flat tables
+     * if there can be any.
+     */
+    private void writeTables(InputStream definition, Path directory) throws IOException {
+        LexicalInputParser parser = new LexicalInputParser(definition, minimize, maxDFAStates,
+                extendedSyntax);
+        LexTables tables = parser.getTables();
+        String filename = directory.resolve(Streamer.LEXICAL_OBJECTS).toString();
+        try (ObjectOutputStream stream = Streamer.getOutput(filename)) {
+            tables.write(stream);
+        }
+        if (tables.hasFlatForm()) {
+            FlatTables flat = new FlatTables(FlatTables.LEXICAL);
+            tables.write(flat);
+            Streamer.writeTables(directory.resolve(Streamer.LEXICAL_TABLES).toString(), flat);
+        }
+    }
+
+    /**
+     * Generates the source of a Java class that is a lexical analyzer, it's
+     * written to the file with the class name in the analyzer folder.
+     * 
+     * @param className name of the class
+     */
+    public void generateJavaLA(String className) {
+        LexicalInputParser parser = new LexicalInputParser(input, minimize, maxDFAStates,
+                extendedSyntax);
+        String filename = Streamer.getFilename4Generator(className + ".java");
+
+        try (OutputStream stream = Files.newOutputStream(Paths.get(filename))) {
+            new JavaLexerWriter(className, parser.getStartState(), parser.getStateNames(),
+                    parser.getStates(), parser.getAutomatons()).write(stream);
+        } catch (IOException | IllegalArgumentException ex) {
+            System.err.println("Error in GLA: " + ex.getMessage());
+        }
     }
 
 }
@@ -1,17 +1,24 @@
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
+import hr.fer.zemris.ppj.syntax.LRTables;
 import hr.fer.zemris.ppj.syntax.grammar.Grammar;
+import hr.fer.zemris.ppj.util.FlatTables;
 import hr.fer.zemris.ppj.util.Streamer;
+import hr.fer.zemris.ppj.util.TableCache;
 import hr.fer.zemris.ppj.util.input.SyntaxInputParser;
 
 /**
  * This class is used to generate a syntax analyzer. It reads in grammar
- * definition and based on that generates lr(1) parser's tables.
+ * definition and based on that generates lr(1) parser's tables, they are
+ * written as flat tables (see {@link FlatTables}). Tables can be cached, so a
+ * definition that didn't change isn't generated again (see {@link TableCache}).
  * 
  * @author fhrenic
  */
@@ -42,19 +49,32 @@ public class GSA {
      * file. More concretely, tables are actions and new state.
      */
     public void generateSA() {
-        SyntaxInputParser sip = new SyntaxInputParser(input);
-
-        Grammar grammar = sip.getConstructedGrammar();
-        String filename = Streamer.getFilename4Generator(Streamer.SYNTAX_OBJECTS);
-
-        try (ObjectOutputStream stream = Streamer.getOutput(filename)) {
-            stream.writeObject(grammar.getActions());
-            stream.writeObject(grammar.getNewStates());
-            stream.writeObject(grammar.getSyncSymbols());
+        try {
+            final byte[] definition = Streamer.readBytes(input);
+            TableCache.getDefault().load(TableCache.key("GSA", definition),
+                    new TableCache.Generator() {
 
+                        @Override
+                        public void generate(Path directory) throws IOException {
+                            writeTables(new ByteArrayInputStream(definition), directory);
+                        }
+                    }, Paths.get(Streamer.FOLDER), Streamer.SYNTAX_TABLES);
         } catch (IOException ioe) {
             System.err.println("Error in GSA: " + ioe.getMessage());
         }
     }
 
+    /**
+     * Writes tables for the grammar definition into the directory.
+     */
+    private static void writeTables(InputStream definition, Path directory) throws IOException {
+        SyntaxInputParser sip = new SyntaxInputParser(definition);
+
+        Grammar grammar = sip.getConstructedGrammar();
+        FlatTables flat = new FlatTables(FlatTables.SYNTAX);
+        LRTables.of(grammar.getSyncSymbols(), grammar.getActions(), grammar.getNewStates())
+                .write(flat);
+        Streamer.writeTables(directory.resolve(Streamer.SYNTAX_TABLES).toString(), flat);
+    }
+
 }
@@ -0,0 +1,112 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import hr.fer.zemris.ppj.lexical.LexBackend;
+import hr.fer.zemris.ppj.lexical.LexTables;
+import hr.fer.zemris.ppj.lexical.incremental.IncrementalLex;
+import hr.fer.zemris.ppj.lexical.input.EditableInput;
+import hr.fer.zemris.ppj.lexical.output.TextTokenSink;
+
+/**
+ * Helper class used for testing the incremental lexer. For every language in
+ * tests_lexical, the test input is edited at random places many times, and
+ * after every edit tokens of the incremental lexer are compared with tokens of
+ * a lexer that analyzes the whole text again. Edits are the same in every run.
+ *
+ * @author fhrenic
+ */
+public class IncrementalTester {
+
+    private static final String TESTS = "tests_lexical";
+    private static final int EDITS = 900;
+    private static final long SEED = 13;
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        long start = System.currentTimeMillis();
+        boolean allGood = true;
+        int n = 0;
+
+        File[] tests = new File(TESTS).listFiles();
+        Arrays.sort(tests);
+        for (File test : tests) {
+            n++;
+            try (InputStream definition = new FileInputStream(new File(test, "test.lan"))) {
+                new GLA(definition).generateLA();
+            }
+            LexTables tables = LA.readTables(LexBackend.GENERATED);
+            String text = new String(Files.readAllBytes(new File(test, "test.in").toPath()),
+                    StandardCharsets.UTF_8);
+            boolean ok = compare(tables, text, new Random(SEED));
+            allGood &= ok;
+            if (!ok) {
+                System.out.println("Failed " + test);
+            }
+        }
+
+        long end = System.currentTimeMillis();
+        System.out.println(String.format("Total time for %d tests: %.2f seconds", n,
+                (end - start) / 1000.0));
+        System.out.println("All ok: " + allGood);
+    }
+
+    /**
+     * Edits the text and compares tokens after every edit.
+     */
+    private static boolean compare(LexTables tables, String text, Random random)
+            throws IOException {
+        IncrementalLex lex = new IncrementalLex(tables, tables.getStartState(), text);
+        String original = text;
+        if (!tokens(lex).equals(tokens(tables, text))) {
+            System.out.println("\tDifferent tokens before editing");
+            return false;
+        }
+
+        for (int edit = 0; edit < EDITS; edit++) {
+            int offset = random.nextInt(text.length() + 1);
+            int removed = random.nextInt(Math.min(8, text.length() - offset) + 1);
+            String inserted;
+            if (random.nextBoolean() && !original.isEmpty()) {
+                // part of the original text, so edits make tokens of the language
+                int from = random.nextInt(original.length());
+                inserted = original.substring(from,
+                        Math.min(original.length(), from + random.nextInt(12)));
+            } else {
+                StringBuilder sb = new StringBuilder();
+                for (int idx = random.nextInt(3); idx >= 0; idx--) {
+                    sb.append(original.isEmpty() ? '\n'
+                            : original.charAt(random.nextInt(original.length())));
+                }
+                inserted = sb.toString();
+            }
+
+            lex.edit(offset, removed, inserted);
+            text = text.substring(0, offset) + inserted + text.substring(offset + removed);
+            if (!lex.getText().equals(text) || !tokens(lex).equals(tokens(tables, text))) {
+                System.out.println("\tDifferent tokens after edit " + edit + ": " + removed
+                        + " removed at " + offset + ", inserted \"" + inserted + "\"");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String tokens(IncrementalLex lex) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        lex.writeTo(new TextTokenSink(output));
+        return output.toString("UTF-8");
+    }
+
+    private static String tokens(LexTables tables, String text) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        tables.createLex(new TextTokenSink(output)).analyzeInput(new EditableInput(text));
+        return output.toString("UTF-8");
+    }
+
+}
@@ -2,29 +2,68 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.OutputStream;
-import java.util.HashMap;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import hr.fer.zemris.ppj.lexical.Lex;
-import hr.fer.zemris.ppj.lexical.LexRule;
-import hr.fer.zemris.ppj.lexical.automaton.LexAutomatonHandler;
+import hr.fer.zemris.ppj.lexical.LexBackend;
+import hr.fer.zemris.ppj.lexical.LexTables;
+import hr.fer.zemris.ppj.lexical.input.ArrayInput;
+import hr.fer.zemris.ppj.lexical.output.BinaryTokenSink;
+import hr.fer.zemris.ppj.lexical.output.TextTokenSink;
+import hr.fer.zemris.ppj.lexical.output.TokenSink;
+import hr.fer.zemris.ppj.lexical.parallel.ParallelLex;
+import hr.fer.zemris.ppj.util.FlatTables;
 import hr.fer.zemris.ppj.util.Streamer;
 
 /**
  * This class reads the automatons from a file, creates a lexical analyzer based
- * on those automatons and analyzes the input
+ * on those automatons and analyzes the input. Generated automatons are mapped
+ * from flat tables if the generator wrote them (see {@link FlatTables}). If a
+ * file name is given as an argument, that file is analyzed instead of the
+ * standard input, and it is mapped into memory instead of being read. With the
+ * <code>-b</code> option tokens are written in the binary format instead of the
+ * text format (see {@link BinaryTokenSink}), syntax analyzer reads both.
+ * Options <code>-lazy</code> and <code>-nfa</code> choose automatons other than
+ * the generated ones (see {@link LexBackend}). With the <code>-p</code> option
+ * large inputs are analyzed on more threads (see {@link ParallelLex}).
  * 
  * @author fhrenic
  */
 public class LA {
 
     public static void main(String[] args) {
-        InputStream input = System.in;
-        new LA(input, System.out).lexicalAnalysis();
+        boolean binary = false;
+        boolean parallel = false;
+        LexBackend backend = LexBackend.GENERATED;
+        Path path = null;
+        for (String arg : args) {
+            if (arg.equals("-b")) {
+                binary = true;
+            } else if (arg.equals("-p")) {
+                parallel = true;
+            } else if (arg.equals("-lazy")) {
+                backend = LexBackend.LAZY_DFA;
+            } else if (arg.equals("-nfa")) {
+                backend = LexBackend.BIT_PARALLEL_NFA;
+            } else {
+                path = Paths.get(arg);
+            }
+        }
+        LA la = path != null ? new LA(path, System.out, binary)
+                : new LA(System.in, System.out, binary);
+        la.setBackend(backend);
+        la.setParallel(parallel);
+        la.lexicalAnalysis();
     }
 
     private InputStream input;
+    private Path path;
     private OutputStream output;
+    private boolean binary;
+    private LexBackend backend = LexBackend.GENERATED;
+    private boolean parallel;
 
     /**
      * Creates a new Lexical Analyzer that analyzes the input stream and prints
@@ -34,26 +73,113 @@ public class LA {
      * @param output output stream to show the results
      */
     public LA(InputStream input, OutputStream output) {
+        this(input, output, false);
+    }
+
+    /**
+     * Creates a new Lexical Analyzer that analyzes the input stream and prints
+     * the results to the output stream in the text or binary format
+     * 
+     * @param input input stream to analyze
+     * @param output output stream to show the results
+     * @param binary if <code>true</code>, results are in the binary format
+     */
+    public LA(InputStream input, OutputStream output, boolean binary) {
         this.input = input;
         this.output = output;
+        this.binary = binary;
+    }
+
+    /**
+     * Creates a new Lexical Analyzer that analyzes the file with the given path
+     * and prints the results to the output stream
+     * 
+     * @param path path to the file to analyze
+     * @param output output stream to show the results
+     */
+    public LA(Path path, OutputStream output) {
+        this(path, output, false);
+    }
+
+    /**
+     * Creates a new Lexical Analyzer that analyzes the file with the given path
+     * and prints the results to the output stream in the text or binary format
+     * 
+     * @param path path to the file to analyze
+     * @param output output stream to show the results
+     * @param binary if <code>true</code>, results are in the binary format
+     */
+    public LA(Path path, OutputStream output, boolean binary) {
+        this.path = path;
+        this.output = output;
+        this.binary = binary;
+    }
+
+    /**
+     * Sets the kind of automatons the lexer uses, generated automatons are used
+     * by default.
+     * 
+     * @param backend kind of automatons
+     */
+    public void setBackend(LexBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Sets whether large inputs are analyzed on more threads. Input is then read
+     * whole before it's analyzed. It's used only if automatons of all states keep
+     * all of their states, so lexers can compare them.
+     * 
+     * @param parallel if <code>true</code>, large inputs are analyzed on more
+     *            threads
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
     }
 
     /**
      * Performs lexical analysis of the input stream.
      */
-    @SuppressWarnings("unchecked")
     public void lexicalAnalysis() {
-        String filename = Streamer.getFilename4Analyzer(Streamer.LEXICAL_OBJECTS);
-
-        try (ObjectInputStream stream = Streamer.getInput(filename)) {
-            String startState = (String) stream.readObject();
-            HashMap<String, List<LexRule>> states = (HashMap<String, List<LexRule>>) stream
-                    .readObject();
-            LexAutomatonHandler handler = (LexAutomatonHandler) stream.readObject();
-            new Lex(startState, states, handler, output).analyzeInput(input);
+        try {
+            LexTables tables = readTables(backend);
+            TokenSink sink = binary ? new BinaryTokenSink(output) : new TextTokenSink(output);
+            if (parallel && tables.hasStableStates()) {
+                ArrayInput array = path != null ? ArrayInput.read(path) : ArrayInput.read(input);
+                new ParallelLex(tables, tables.getStartState()).analyzeInput(array, sink);
+                return;
+            }
+            Lex lex = tables.createLex(sink);
+            if (path != null) {
+                lex.analyzeInput(path);
+            } else {
+                lex.analyzeInput(input);
+            }
         } catch (IOException | ClassNotFoundException ex) {
             System.err.println("Error in LA: " + ex.getMessage());
         }
     }
 
+    /**
+     * Reads tables written by the generator for the given backend, generated
+     * automatons are mapped from flat tables if there are any.
+     * 
+     * @param backend kind of automatons
+     * @return tables
+     * @throws IOException if tables can't be read
+     * @throws ClassNotFoundException if the file with objects has unknown
+     *             objects
+     */
+    public static LexTables readTables(LexBackend backend)
+            throws IOException, ClassNotFoundException {
+        String flatFilename = Streamer.getFilename4Analyzer(Streamer.LEXICAL_TABLES);
+        if (backend == LexBackend.GENERATED && Files.exists(Paths.get(flatFilename))) {
+            return LexTables.read(Streamer.mapTables(flatFilename, FlatTables.LEXICAL));
+        }
+        String filename = Streamer.getFilename4Analyzer(Streamer.LEXICAL_OBJECTS);
+        try (ObjectInputStream stream = Streamer.getInput(filename)) {
+            return LexTables.read(stream).withBackend(backend);
+        }
+    }
+
 }
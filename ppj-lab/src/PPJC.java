@@ -0,0 +1,258 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import hr.fer.zemris.ppj.lexical.Lex;
+import hr.fer.zemris.ppj.lexical.LexBackend;
+import hr.fer.zemris.ppj.lexical.LexTables;
+import hr.fer.zemris.ppj.lexical.input.LexInput;
+import hr.fer.zemris.ppj.lexical.input.MappedInput;
+import hr.fer.zemris.ppj.lexical.input.StreamInput;
+import hr.fer.zemris.ppj.semantic.analysis.SemanticAnalyzer;
+import hr.fer.zemris.ppj.semantic.parse.Trie;
+import hr.fer.zemris.ppj.syntax.LRNode;
+import hr.fer.zemris.ppj.syntax.LRParser;
+import hr.fer.zemris.ppj.syntax.LRSymbol;
+import hr.fer.zemris.ppj.syntax.LRTables;
+import hr.fer.zemris.ppj.syntax.SymbolQueue;
+import hr.fer.zemris.ppj.syntax.SymbolSink;
+import hr.fer.zemris.ppj.util.Streamer;
+import hr.fer.zemris.ppj.util.input.SemanticInputParser;
+
+/**
+ * This class compiles a program in a single process: lexical, syntax and
+ * semantic analysis and code generation. Tokens go straight to the parser and
+ * the tree goes straight to the semantic analyzer, nothing is written as text
+ * and parsed back like when LA, SA and GeneratorKoda are run one after
+ * another. Tables are read from files written by the generators (GLA and GSA).
+ *
+ * If a file name is given as an argument, that file is compiled instead of the
+ * standard input. Generated code, or the semantic error, is written to
+ * {@value #OUTPUT} like GeneratorKoda does. With the <code>-sem</code> option
+ * only the semantic error is printed, like SemantickiAnalizator does. With the
+ * <code>-pipe</code> option the parser reads tokens while the lexer is still
+ * working on another thread (see {@link #lexAndParse(LexInput)}).
+ *
+ * @author fhrenic
+ */
+public class PPJC {
+
+    /**
+     * File generated code is written to.
+     */
+    public static final String OUTPUT = "a.frisc";
+
+    public static void main(String[] args) {
+        boolean semanticOnly = false;
+        boolean pipelined = false;
+        Path path = null;
+        for (String arg : args) {
+            if (arg.equals("-sem")) {
+                semanticOnly = true;
+            } else if (arg.equals("-pipe")) {
+                pipelined = true;
+            } else {
+                path = Paths.get(arg);
+            }
+        }
+
+        try {
+            PPJC compiler = new PPJC(LA.readTables(LexBackend.GENERATED), SA.readTables());
+            LRNode tree;
+            if (pipelined) {
+                tree = compiler.lexAndParse(path != null ? new MappedInput(path)
+                        : new StreamInput(System.in));
+            } else {
+                List<LRSymbol> symbols = path != null ? compiler.lex(path)
+                        : compiler.lex(System.in);
+                tree = compiler.parse(symbols);
+            }
+            SemanticAnalyzer sema = compiler.analyse(tree);
+            if (semanticOnly) {
+                if (sema.getError() != null) {
+                    System.out.println(sema.getError());
+                }
+                return;
+            }
+            try (OutputStream stream = new FileOutputStream(OUTPUT)) {
+                Streamer.writeToStream(output(sema), stream);
+            }
+        } catch (IOException | ClassNotFoundException ex) {
+            System.err.println("Error in PPJC: " + ex.getMessage());
+        }
+    }
+
+    private LexTables lexTables;
+    private LRTables lrTables;
+    private Trie productions;
+
+    /**
+     * Creates a new compiler that uses the given tables, productions of the
+     * language are read from {@value Trie#PRODUCTIONS}.
+     *
+     * @param lexTables tables of the lexical analyzer
+     * @param lrTables tables of the parser
+     */
+    public PPJC(LexTables lexTables, LRTables lrTables) {
+        this(lexTables, lrTables, Trie.PRODUCTIONS);
+    }
+
+    /**
+     * Creates a new compiler that uses the given tables. Compiler doesn't
+     * change the tables or the productions, so it can compile more programs
+     * at the same time, on different threads.
+     *
+     * @param lexTables tables of the lexical analyzer
+     * @param lrTables tables of the parser
+     * @param productions path to the file with productions of the language
+     */
+    public PPJC(LexTables lexTables, LRTables lrTables, String productions) {
+        this.lexTables = lexTables;
+        this.lrTables = lrTables;
+        this.productions = new Trie(productions);
+    }
+
+    /**
+     * Performs lexical analysis of the input stream.
+     *
+     * @param input input stream
+     * @return symbols for the parser
+     * @throws IOException if reading fails
+     */
+    public List<LRSymbol> lex(InputStream input) throws IOException {
+        SymbolSink sink = new SymbolSink(lrTables.getSyncSymbols());
+        lexTables.createLex(sink).analyzeInput(input);
+        return sink.getSymbols();
+    }
+
+    /**
+     * Performs lexical analysis of the file with the given path, the file is
+     * mapped into memory.
+     *
+     * @param path path to the file
+     * @return symbols for the parser
+     * @throws IOException if reading fails
+     */
+    public List<LRSymbol> lex(Path path) throws IOException {
+        SymbolSink sink = new SymbolSink(lrTables.getSyncSymbols());
+        lexTables.createLex(sink).analyzeInput(path);
+        return sink.getSymbols();
+    }
+
+    /**
+     * Performs syntax analysis of the symbols.
+     *
+     * @param symbols symbols, as returned by lexical analysis
+     * @return root of the tree, <code>null</code> if there is none
+     */
+    public LRNode parse(List<LRSymbol> symbols) {
+        return new LRParser(symbols, lrTables).parseTree();
+    }
+
+    /**
+     * Performs lexical and syntax analysis of the input at the same time. Lexer
+     * runs on a new thread and gives symbols to the parser, on this thread,
+     * through a {@link SymbolQueue}, so only a bounded number of symbols
+     * waits for the parser. The tree is the same as when symbols are parsed
+     * after the whole input is analyzed.
+     *
+     * @param input input
+     * @return root of the tree, <code>null</code> if there is none
+     * @throws IOException if reading fails
+     */
+    public LRNode lexAndParse(LexInput input) throws IOException {
+        return lexAndParse(input, SymbolQueue.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Performs lexical and syntax analysis of the input at the same time, like
+     * {@link #lexAndParse(LexInput)}, with the given number of batches in the
+     * queue.
+     *
+     * @param input input
+     * @param capacity number of batches of symbols that wait for the parser
+     * @return root of the tree, <code>null</code> if there is none
+     * @throws IOException if reading fails
+     */
+    public LRNode lexAndParse(final LexInput input, int capacity) throws IOException {
+        final SymbolQueue queue = new SymbolQueue(lrTables.getSyncSymbols(), capacity);
+        final Lex lex = lexTables.createLex(queue);
+        FutureTask<Void> lexing = new FutureTask<>(new Callable<Void>() {
+
+            @Override
+            public Void call() throws IOException {
+                try {
+                    lex.analyzeInput(input);
+                    queue.close();
+                } catch (Throwable ex) {
+                    queue.fail();
+                    throw ex;
+                }
+                return null;
+            }
+        });
+        Thread thread = new Thread(lexing, "ppjc-lex");
+        thread.setDaemon(true);
+        thread.start();
+
+        LRNode tree;
+        try {
+            tree = new LRParser(queue, lrTables).parseTree();
+        } finally {
+            // lexer stops if the parser didn't read everything
+            queue.cancel();
+        }
+        try {
+            lexing.get();
+        } catch (ExecutionException ex) {
+            // failures after the parser stopped don't matter
+            if (queue.hasEnded()) {
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
+                }
+                throw new IOException("Lexical analysis failed", ex.getCause());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the lexer");
+        }
+        return tree;
+    }
+
+    /**
+     * Performs semantic analysis of the tree and generates code.
+     *
+     * @param tree root of the tree
+     * @return analyzer with the semantic error or the generated code
+     */
+    public SemanticAnalyzer analyse(LRNode tree) {
+        SemanticInputParser sip = new SemanticInputParser();
+        sip.parse(tree);
+        SemanticAnalyzer sema = new SemanticAnalyzer(productions);
+        sema.analysis(sip.getRoot());
+        return sema;
+    }
+
+    /**
+     * Returns what is written to {@value #OUTPUT}, the semantic error if
+     * there is one, generated code otherwise.
+     *
+     * @param sema analyzer, after the analysis
+     * @return output of the compiler
+     */
+    public static String output(SemanticAnalyzer sema) {
+        if (sema.getError() != null) {
+            return sema.getError();
+        }
+        return sema.getCodeGen().toString();
+    }
+
+}
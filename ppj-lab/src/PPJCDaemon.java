@@ -0,0 +1,230 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import hr.fer.zemris.ppj.lexical.LexBackend;
+import hr.fer.zemris.ppj.semantic.analysis.SemanticAnalyzer;
+
+/**
+ * Compiler that keeps running and compiles programs it gets on the standard
+ * input, so tables are read and the code is warmed up only once, not for
+ * every program. Every program is compiled on a thread of a pool by the same
+ * {@link PPJC}, with it's own lexer, parser and semantic analyzer, so programs
+ * don't share anything they change.
+ *
+ * Requests and responses are frames, a header line and the given number of
+ * bytes (UTF-8):
+ *
+ * <pre>
+ * request:  id length
+ *           program
+ * response: id status length
+ *           output
+ * </pre>
+ *
+ * Id is any word the client chooses, responses come in the order programs are
+ * compiled, not in the order of requests. Status is <code>code</code> if the
+ * output is generated code, <code>error</code> if it's the semantic error (the
+ * same output GeneratorKoda writes to a.frisc), or <code>fail</code> if the
+ * program couldn't be compiled, with the reason. Only responses are written to
+ * the standard output. Daemon stops at the end of the input, after the last
+ * response.
+ *
+ * Option <code>-threads n</code> sets the number of threads, there is one for
+ * every processor if it isn't given.
+ *
+ * @author fhrenic
+ */
+public class PPJCDaemon {
+
+    // requests that wait for a thread, the reader compiles one itself when
+    // there are more
+    private static final int QUEUE_SIZE = 64;
+    private static final int MAX_HEADER_LENGTH = 1 << 10;
+    private static final int MAX_PROGRAM_LENGTH = 1 << 26;
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int idx = 0; idx < args.length; idx++) {
+            if (args[idx].equals("-threads") && idx + 1 < args.length) {
+                threads = Integer.parseInt(args[++idx]);
+            }
+        }
+
+        // nothing else may write to the output
+        PrintStream output = System.out;
+        System.setOut(System.err);
+        try {
+            PPJC compiler = new PPJC(LA.readTables(LexBackend.GENERATED), SA.readTables());
+            new PPJCDaemon(compiler, threads).serve(System.in, output);
+        } catch (IOException | ClassNotFoundException ex) {
+            System.err.println("Error in PPJCDaemon: " + ex.getMessage());
+        }
+    }
+
+    private PPJC compiler;
+    private int threads;
+
+    /**
+     * Creates a new daemon.
+     *
+     * @param compiler compiler used for all programs
+     * @param threads number of threads that compile programs
+     */
+    public PPJCDaemon(PPJC compiler, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        this.compiler = compiler;
+        this.threads = threads;
+    }
+
+    /**
+     * Reads requests from the input and writes responses to the output, until
+     * the end of the input. Programs can have at most
+     * {@value #MAX_PROGRAM_LENGTH} bytes.
+     *
+     * @param input input with requests
+     * @param output output for responses
+     * @throws IOException if reading fails or a request is invalid
+     */
+    public void serve(InputStream input, OutputStream output) throws IOException {
+        InputStream requests = new BufferedInputStream(input);
+        final OutputStream responses = new BufferedOutputStream(output);
+        ExecutorService pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new Workers(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            String header;
+            while ((header = readHeader(requests)) != null) {
+                String[] parts = header.split(" ");
+                if (parts.length != 2) {
+                    throw new IOException("Invalid request: " + header);
+                }
+                final String id = parts[0];
+                int length;
+                try {
+                    length = Integer.parseInt(parts[1]);
+                } catch (NumberFormatException ex) {
+                    throw new IOException("Invalid request: " + header);
+                }
+                if (length < 0 || length > MAX_PROGRAM_LENGTH) {
+                    throw new IOException("Invalid request: " + header);
+                }
+                final byte[] program = readBytes(requests, length);
+                pool.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        respond(id, program, responses);
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (responses) {
+                responses.flush();
+            }
+        }
+    }
+
+    /**
+     * Compiles the program and writes the response.
+     */
+    private void respond(String id, byte[] program, OutputStream responses) {
+        String status;
+        String result;
+        try {
+            SemanticAnalyzer sema = compiler.analyse(compiler.parse(compiler.lex(
+                    new ByteArrayInputStream(program))));
+            status = sema.getError() != null ? "error" : "code";
+            result = PPJC.output(sema);
+        } catch (IOException | RuntimeException | StackOverflowError ex) {
+            status = "fail";
+            result = String.valueOf(ex);
+        }
+
+        byte[] bytes = result.getBytes(StandardCharsets.UTF_8);
+        byte[] header = (id + " " + status + " " + bytes.length + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        synchronized (responses) {
+            try {
+                responses.write(header);
+                responses.write(bytes);
+                responses.flush();
+            } catch (IOException ex) {
+                System.err.println("Error in PPJCDaemon: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads the header line of a request.
+     *
+     * @return header, <code>null</code> at the end of the input
+     */
+    private static String readHeader(InputStream input) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = input.read()) != '\n') {
+            if (b < 0) {
+                if (line.size() == 0) {
+                    return null;
+                }
+                throw new EOFException("Request ended in the header");
+            }
+            if (line.size() == MAX_HEADER_LENGTH) {
+                throw new IOException("Request header is too long");
+            }
+            line.write(b);
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+    }
+
+    private static byte[] readBytes(InputStream input, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = input.read(bytes, read, length - read);
+            if (n < 0) {
+                throw new EOFException("Request ended in the program");
+            }
+            read += n;
+        }
+        return bytes;
+    }
+
+    /**
+     * Creates named daemon threads.
+     */
+    private static class Workers implements ThreadFactory {
+
+        private AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "ppjc-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import hr.fer.zemris.ppj.lexical.LexBackend;
+import hr.fer.zemris.ppj.lexical.LexTables;
+import hr.fer.zemris.ppj.lexical.input.ArrayInput;
+import hr.fer.zemris.ppj.lexical.output.TextTokenSink;
+import hr.fer.zemris.ppj.lexical.parallel.ParallelLex;
+
+/**
+ * Helper class used for testing the parallel lexer. For every language in
+ * tests_lexical, the test input is repeated until it's long enough to be split
+ * into parts, and tokens of the parallel lexer with different numbers of
+ * threads are compared with tokens of a single lexer. Number of threads is
+ * given, so inputs are split even on a machine with one processor.
+ *
+ * @author fhrenic
+ */
+public class ParallelTester {
+
+    private static final String TESTS = "tests_lexical";
+    private static final int LENGTH = 6 * ParallelLex.MIN_CHUNK_LENGTH;
+    private static final int[] PARALLELISMS = { 2, 3, 4, 7 };
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        long start = System.currentTimeMillis();
+        boolean allGood = true;
+        int n = 0;
+
+        File[] tests = new File(TESTS).listFiles();
+        Arrays.sort(tests);
+        for (File test : tests) {
+            n++;
+            try (InputStream definition = new FileInputStream(new File(test, "test.lan"))) {
+                new GLA(definition).generateLA();
+            }
+            LexTables tables = LA.readTables(LexBackend.GENERATED);
+            String text = new String(Files.readAllBytes(new File(test, "test.in").toPath()),
+                    StandardCharsets.UTF_8);
+            if (!tables.hasStableStates()) {
+                // LA doesn't analyze these on more threads
+                System.out.println("Skipped " + test);
+                continue;
+            }
+
+            StringBuilder sb = new StringBuilder(LENGTH + text.length());
+            while (sb.length() < LENGTH && !text.isEmpty()) {
+                sb.append(text);
+            }
+            char[] input = sb.toString().toCharArray();
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            tables.createLex(new TextTokenSink(expected)).analyzeInput(new ArrayInput(input));
+
+            for (int parallelism : PARALLELISMS) {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                new ParallelLex(tables, tables.getStartState(), parallelism).analyzeInput(
+                        new ArrayInput(input), new TextTokenSink(output));
+                boolean ok = Arrays.equals(expected.toByteArray(), output.toByteArray());
+                allGood &= ok;
+                if (!ok) {
+                    System.out.println("Failed " + test + " with " + parallelism + " threads");
+                }
+            }
+        }
+
+        long end = System.currentTimeMillis();
+        System.out.println(String.format("Total time for %d tests: %.2f seconds", n,
+                (end - start) / 1000.0));
+        System.out.println("All ok: " + allGood);
+    }
+
+}
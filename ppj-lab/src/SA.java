@@ -2,18 +2,16 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.io.OutputStream;
-import java.util.List;
-import java.util.Map;
 
 import hr.fer.zemris.ppj.syntax.LRParser;
-import hr.fer.zemris.ppj.syntax.actions.LRAction;
-import hr.fer.zemris.ppj.syntax.grammar.Symbol;
+import hr.fer.zemris.ppj.syntax.LRTables;
+import hr.fer.zemris.ppj.util.FlatTables;
 import hr.fer.zemris.ppj.util.Streamer;
 
 /**
- * This class is used to do syntax analysis of a program. It uses LR(1) parser.
+ * This class is used to do syntax analysis of a program. It uses LR(1) parser,
+ * it's tables are mapped from the file written by the generator.
  * 
  * @author fhrenic
  */
@@ -41,20 +39,23 @@ public class SA {
     /**
      * Performs syntax analysis of the input stream.
      */
-    @SuppressWarnings("unchecked")
     public void syntaxAnalysis() {
-        String filename = Streamer.getFilename4Analyzer(Streamer.SYNTAX_OBJECTS);
-
-        try (ObjectInputStream stream = Streamer.getInput(filename)) {
-            Map<Integer, Map<Symbol, LRAction>> actions = (Map<Integer, Map<Symbol, LRAction>>) stream
-                    .readObject();
-            Map<Integer, Map<Symbol, Integer>> newStates = (Map<Integer, Map<Symbol, Integer>>) stream
-                    .readObject();
-            List<String> syncSymbols = (List<String>) stream.readObject();
-            new LRParser(input, output, syncSymbols, actions, newStates).parse();
-        } catch (IOException | ClassNotFoundException ex) {
+        try {
+            new LRParser(input, output, readTables()).parse();
+        } catch (IOException ex) {
             System.err.println("Error in SA: " + ex.getMessage());
         }
     }
 
+    /**
+     * Maps tables written by the generator.
+     * 
+     * @return tables
+     * @throws IOException if tables can't be read
+     */
+    public static LRTables readTables() throws IOException {
+        String filename = Streamer.getFilename4Analyzer(Streamer.SYNTAX_TABLES);
+        return LRTables.read(Streamer.mapTables(filename, FlatTables.SYNTAX));
+    }
+
 }
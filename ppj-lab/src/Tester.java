@@ -1,25 +1,61 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import hr.fer.zemris.ppj.lexical.LexBackend;
+import hr.fer.zemris.ppj.lexical.input.EditableInput;
+import hr.fer.zemris.ppj.lexical.output.BinaryTokenSink;
+import hr.fer.zemris.ppj.syntax.LRSymbol;
+import hr.fer.zemris.ppj.syntax.grammar.Symbol;
+import hr.fer.zemris.ppj.util.Streamer;
+import hr.fer.zemris.ppj.util.input.LexicalInputParser;
+
 /**
- * Helper class used for testing
+ * Helper class used for testing. A test can have a file with options of the
+ * generator ({@value #OPTIONS}), separated by white space. Lexical tests are
+ * run with every kind of automatons (see {@link LexBackend}), and once more
+ * with automatons that are too big for the generator, which are then built
+ * while analyzing. Tokens are also written in the binary format and read back
+ * like the syntax analyzer reads them, and syntax tests are run again with
+ * symbols in the binary format. Generated Java lexers are compiled, without
+ * warnings, and run on lexical tests too.
  * 
  * @author fhrenic
  */
 public abstract class Tester {
 
+    private static final String OPTIONS = "test.opt";
+
     public static void main(String[] args) throws IOException {
         lexTester.generateAnalyzeCompare(false);
+        lazyTester.generateAnalyzeCompare(false);
+        nfaTester.generateAnalyzeCompare(false);
+        fallbackTester.generateAnalyzeCompare(false);
+        binaryTester.generateAnalyzeCompare(false);
+        javaTester.generateAnalyzeCompare(false);
         sinTester.generateAnalyzeCompare(false);
+        sinBinaryTester.generateAnalyzeCompare(false);
     }
 
+    private String name;
     private Path dir;
     private String gen_in;
     private String ana_in;
@@ -27,7 +63,9 @@ public abstract class Tester {
     private String my_out;
     private boolean verbose;
 
-    public Tester(String dir, String gen_in, String ana_in, String ana_out, String my_out) {
+    public Tester(String name, String dir, String gen_in, String ana_in, String ana_out,
+            String my_out) {
+        this.name = name;
         this.dir = Paths.get(dir);
         this.gen_in = gen_in;
         this.ana_in = ana_in;
@@ -64,7 +102,7 @@ public abstract class Tester {
 
             maybe("\tGenerating...");
             t1 = System.currentTimeMillis();
-            generate(gfis);
+            generate(gfis, readOptions(test));
             t2 = System.currentTimeMillis();
             maybe(String.format("\tTook %.2f seconds", (t2 - t1) / 1000.0));
 
@@ -83,7 +121,8 @@ public abstract class Tester {
 
         long end = System.currentTimeMillis();
 
-        output(String.format("Total time for %d tests: %.2f seconds", n, (end - start) / 1000.0));
+        output(String.format("Total time for %d tests (%s): %.2f seconds", n, name,
+                (end - start) / 1000.0));
         output("All ok: " + allGood);
     }
 
@@ -91,31 +130,67 @@ public abstract class Tester {
         return Files.readAllLines(get_path(folder_name, file_name), StandardCharsets.UTF_8);
     }
 
+    private List<String> readOptions(File test_folder) throws IOException {
+        Path path = get_path(test_folder, OPTIONS);
+        if (!Files.exists(path)) {
+            return Collections.emptyList();
+        }
+        String options = new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim();
+        return options.isEmpty() ? Collections.<String> emptyList()
+                : Arrays.asList(options.split("\\s+"));
+    }
+
     private Path get_path(File test_folder, String file_name) {
         return dir.resolve(test_folder.getName()).resolve(file_name);
     }
 
-    public abstract void generate(FileInputStream in);
+    public abstract void generate(FileInputStream in, List<String> options);
 
     public abstract void analyze(FileInputStream in, FileOutputStream out);
 
-    private static final Tester lexTester = new Tester("tests_lexical", "test.lan", "test.in",
-            "test.out", "my.out") {
+    private static final Tester lexTester = new LexTester("generated", LexBackend.GENERATED,
+            LexicalInputParser.DEFAULT_MAX_DFA_STATES);
+
+    private static final Tester lazyTester = new LexTester("lazy", LexBackend.LAZY_DFA,
+            LexicalInputParser.DEFAULT_MAX_DFA_STATES);
+
+    private static final Tester nfaTester = new LexTester("nfa", LexBackend.BIT_PARALLEL_NFA,
+            LexicalInputParser.DEFAULT_MAX_DFA_STATES);
+
+    // generator gives up on every automaton with more than one state
+    private static final Tester fallbackTester = new LexTester("lazy fallback",
+            LexBackend.GENERATED, 1);
+
+    private static final Tester binaryTester = new LexTester("binary", LexBackend.GENERATED,
+            LexicalInputParser.DEFAULT_MAX_DFA_STATES) {
         @Override
-        public void generate(FileInputStream in) {
-            new GLA(in).generateLA();
+        public void analyze(FileInputStream in, FileOutputStream out) {
+            ByteArrayOutputStream tokens = new ByteArrayOutputStream();
+            new LA(in, tokens, true).lexicalAnalysis();
+            writeSymbols(tokens.toByteArray(), out);
+        }
+    };
+
+    private static final Tester javaTester = new Tester("java", "tests_lexical", "test.lan",
+            "test.in", "test.out", "my.out") {
+        @Override
+        public void generate(FileInputStream in, List<String> options) {
+            // generated lexer can't build automatons while analyzing
+            new GLA(in, true, Integer.MAX_VALUE, options.contains("-x"))
+                    .generateJavaLA(GLA.DEFAULT_CLASS_NAME);
+            compileJava(GLA.DEFAULT_CLASS_NAME);
         }
 
         @Override
         public void analyze(FileInputStream in, FileOutputStream out) {
-            new LA(in, out).lexicalAnalysis();
+            runJava(GLA.DEFAULT_CLASS_NAME, in, out);
         }
     };
 
-    private static final Tester sinTester = new Tester("tests_syntax", "test.san", "test.in",
+    private static final Tester sinTester = new Tester("syntax", "tests_syntax", "test.san", "test.in",
             "test.out", "my.out") {
         @Override
-        public void generate(FileInputStream in) {
+        public void generate(FileInputStream in, List<String> options) {
             new GSA(in).generateSA();
         }
 
@@ -125,4 +200,135 @@ public abstract class Tester {
         }
     };
 
+    private static final Tester sinBinaryTester = new Tester("syntax, binary",
+            "tests_syntax", "test.san", "test.in", "test.out", "my.out") {
+        @Override
+        public void generate(FileInputStream in, List<String> options) {
+            new GSA(in).generateSA();
+        }
+
+        @Override
+        public void analyze(FileInputStream in, FileOutputStream out) {
+            List<LRSymbol> symbols = LRSymbol.readSymbolsFrom(in,
+                    Collections.<String> emptyList());
+            ByteArrayOutputStream tokens = new ByteArrayOutputStream();
+            // small buffer, so it's written out many times
+            BinaryTokenSink sink = new BinaryTokenSink(tokens, 16);
+            try {
+                for (LRSymbol symbol : symbols) {
+                    if (symbol.getSymbol() != Symbol.STREAM_END) {
+                        String text = symbol.getOriginalText();
+                        sink.addToken(symbol.getSymbol().toString(), symbol.getLineNumber(),
+                                new EditableInput(text), 0, text.length());
+                    }
+                }
+                sink.flush();
+            } catch (IOException ex) {
+                System.err.println("Error in Tester: " + ex.getMessage());
+            }
+            new SA(new ByteArrayInputStream(tokens.toByteArray()), out).syntaxAnalysis();
+        }
+    };
+
+    /**
+     * Compiles the generated lexer into the analyzer folder, warnings are
+     * errors.
+     */
+    private static void compileJava(String className) {
+        try {
+            Files.deleteIfExists(Paths.get(Streamer.getFilename4Generator(className
+                    + ".class")));
+        } catch (IOException ex) {
+            System.err.println("Error in Tester: " + ex.getMessage());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            System.err.println("Error in Tester: there is no Java compiler");
+            return;
+        }
+        int result = compiler.run(null, null, null, "-Xlint:all", "-Werror", "-d",
+                Streamer.FOLDER, Streamer.getFilename4Generator(className + ".java"));
+        if (result != 0) {
+            System.err.println("Error in Tester: generated lexer doesn't compile");
+        }
+    }
+
+    /**
+     * Runs the compiled lexer, like it's run from the command line, with the
+     * given standard input and output.
+     */
+    private static void runJava(String className, InputStream in, OutputStream out) {
+        InputStream stdin = System.in;
+        PrintStream stdout = System.out;
+        // new loader for every test, lexers of all languages have the same name
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { Paths.get(Streamer.FOLDER)
+                .toUri().toURL() }, null)) {
+            PrintStream output = new PrintStream(out);
+            System.setIn(in);
+            System.setOut(output);
+            loader.loadClass(className).getMethod("main", String[].class).invoke(null,
+                    (Object) new String[0]);
+            output.flush();
+        } catch (IOException | ReflectiveOperationException ex) {
+            System.err.println("Error in Tester: " + ex);
+        } finally {
+            System.setIn(stdin);
+            System.setOut(stdout);
+        }
+    }
+
+    /**
+     * Reads tokens in the binary format like the syntax analyzer does and
+     * writes them in the text format. Nothing is written if tokens aren't in
+     * the binary format.
+     */
+    private static void writeSymbols(byte[] tokens, OutputStream out) {
+        byte[] header = Streamer.BINARY_TOKENS_HEADER;
+        if (tokens.length < header.length
+                || !Arrays.equals(Arrays.copyOf(tokens, header.length), header)) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (LRSymbol symbol : LRSymbol.readSymbolsFrom(new ByteArrayInputStream(tokens),
+                Collections.<String> emptyList())) {
+            if (symbol.getSymbol() != Symbol.STREAM_END) {
+                sb.append(symbol.getSymbol()).append(' ').append(symbol.getLineNumber())
+                        .append(' ').append(symbol.getOriginalText()).append('\n');
+            }
+        }
+        try {
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            System.err.println("Error in Tester: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Tests the lexical analyzer with the given kind of automatons.
+     */
+    private static class LexTester extends Tester {
+
+        private LexBackend backend;
+        private int maxDFAStates;
+
+        public LexTester(String name, LexBackend backend, int maxDFAStates) {
+            super(name, "tests_lexical", "test.lan", "test.in", "test.out", "my.out");
+            this.backend = backend;
+            this.maxDFAStates = maxDFAStates;
+        }
+
+        @Override
+        public void generate(FileInputStream in, List<String> options) {
+            boolean extendedSyntax = options.contains("-x");
+            new GLA(in, true, maxDFAStates, extendedSyntax).generateLA();
+        }
+
+        @Override
+        public void analyze(FileInputStream in, FileOutputStream out) {
+            LA la = new LA(in, out);
+            la.setBackend(backend);
+            la.lexicalAnalysis();
+        }
+    }
+
 }
@@ -0,0 +1,40 @@
+package hr.fer.zemris.ppj.automaton;
+
+import java.io.Serializable;
+
+/**
+ * Finite state automaton that consumes <code>char</code> symbols. It's the
+ * same as {@link Automaton}<code>&lt;Character&gt;</code>, but symbols aren't
+ * boxed, so implementations can consume a symbol without creating objects.
+ * 
+ * @author fhrenic
+ */
+public interface CharAutomaton extends Serializable {
+
+    /**
+     * Applies transition based on the given symbol.
+     * 
+     * @param symbol transition symbol
+     */
+    public void consume(char symbol);
+
+    /**
+     * Puts the automaton in the starting position.
+     */
+    public void reset();
+
+    /**
+     * Tests if the automaton is in an acceptable state.
+     * 
+     * @return <code>true</code> if automaton accepts
+     */
+    public boolean accepts();
+
+    /**
+     * Automaton is dead if there is no current state.
+     * 
+     * @return <code>true</code> if automaton is dead
+     */
+    public boolean isDead();
+
+}
@@ -40,6 +40,20 @@ public class DFA<St, Sym> implements Automaton<Sym> {
         return transitions;
     }
 
+    /**
+     * @return the starting state
+     */
+    public St getStartState() {
+        return startState;
+    }
+
+    /**
+     * @return acceptable states
+     */
+    public Set<St> getAcceptableStates() {
+        return acceptableStates;
+    }
+
     @Override
     public void consume(Sym symbol) {
         if (currentState == null) {
@@ -0,0 +1,378 @@
+package hr.fer.zemris.ppj.automaton;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * This class minimizes deterministic finite state automatons with Hopcroft's
+ * partition refinement algorithm. Acceptable states can be labeled, states
+ * with different labels are never merged. States from which no acceptable
+ * state can be reached are removed, transitions to them are left out.
+ *
+ * @author fhrenic
+ */
+public class DFAMinimizer {
+
+    /**
+     * Can't be instantiated
+     */
+    private DFAMinimizer() {
+    }
+
+    /**
+     * Minimizes the given dfa. Acceptable states that aren't labeled are all
+     * treated as having the same label. States of the minimal dfa are numbered
+     * from zero up, starting state is zero. Aliases of every state are states
+     * of the given dfa that were merged into it.
+     *
+     * @param dfa dfa to minimize
+     * @param labels acceptable state => label, can be empty
+     * @return minimal dfa
+     */
+    public static <Sym, L> DFAExtended<Integer, Sym> minimize(DFA<Integer, Sym> dfa,
+            Map<Integer, L> labels) {
+        Map<Integer, Map<Sym, Integer>> transitions = dfa.getTransitions();
+        Set<Integer> acceptableStates = dfa.getAcceptableStates();
+
+        // states and symbols to indices, the last state is a sink state that
+        // completes the dfa
+        Set<Integer> allStates = new LinkedHashSet<>();
+        Set<Sym> allSymbols = new LinkedHashSet<>();
+        allStates.add(dfa.getStartState());
+        for (Map.Entry<Integer, Map<Sym, Integer>> e : transitions.entrySet()) {
+            allStates.add(e.getKey());
+            allStates.addAll(e.getValue().values());
+            allSymbols.addAll(e.getValue().keySet());
+        }
+        Mapper<Integer> states = new Mapper<>(allStates);
+        Mapper<Sym> symbols = new Mapper<>(allSymbols);
+        int n = allStates.size() + 1;
+        int sink = n - 1;
+        int k = allSymbols.size();
+
+        int[][] delta = new int[n][k];
+        for (int q = 0; q < n; q++) {
+            Map<Sym, Integer> trans = q == sink ? null : transitions.get(states.getForIndex(q));
+            for (int a = 0; a < k; a++) {
+                Integer to = trans == null ? null : trans.get(symbols.getForIndex(a));
+                delta[q][a] = to == null ? sink : states.getForValue(to);
+            }
+        }
+
+        Partition partition = new Partition(n, initialBlocks(states, n, acceptableStates, labels));
+        refine(partition, inverse(delta, n, k), k);
+        return build(dfa, partition, states, symbols, delta, sink);
+    }
+
+    /**
+     * Returns labels of the minimized dfa's states.
+     *
+     * @param minimal minimal dfa, created by
+     *            {@link #minimize(DFA, Map)}
+     * @param labels labels of the original dfa's states
+     * @return labels of the minimal dfa's states
+     */
+    public static <L> Map<Integer, L> minimizeLabels(DFAExtended<Integer, ?> minimal,
+            Map<Integer, L> labels) {
+        Map<Integer, L> minimalLabels = new HashMap<>();
+        for (Map.Entry<Integer, Set<Integer>> e : minimal.getAliases().entrySet()) {
+            L label = labels.get(e.getValue().iterator().next());
+            if (label != null) {
+                minimalLabels.put(e.getKey(), label);
+            }
+        }
+        return minimalLabels;
+    }
+
+    /**
+     * Splits states into blocks by their labels.
+     *
+     * @return state => initial block
+     */
+    private static <L> int[] initialBlocks(Mapper<Integer> states, int n,
+            Set<Integer> acceptableStates, Map<Integer, L> labels) {
+        // unlabeled acceptable states share a label, block numbers are given
+        // in order so no block is empty
+        Object acceptable = new Object();
+        Map<Object, Integer> blocks = new HashMap<>();
+        blocks.put(null, 0); // not acceptable, the sink state is here
+
+        int[] blockOf = new int[n];
+        for (int q = 0; q < n - 1; q++) {
+            Integer state = states.getForIndex(q);
+            Object label = labels.get(state);
+            if (label == null && acceptableStates.contains(state)) {
+                label = acceptable;
+            }
+            Integer block = blocks.get(label);
+            if (block == null) {
+                block = blocks.size();
+                blocks.put(label, block);
+            }
+            blockOf[q] = block;
+        }
+        return blockOf;
+    }
+
+    /**
+     * Inverse transition function, for every symbol and state it gives all
+     * states that go to that state via the symbol.
+     *
+     * @return symbol => state => previous states
+     */
+    private static int[][][] inverse(int[][] delta, int n, int k) {
+        int[][] counts = new int[k][n];
+        for (int q = 0; q < n; q++) {
+            for (int a = 0; a < k; a++) {
+                counts[a][delta[q][a]]++;
+            }
+        }
+        int[][][] inverse = new int[k][n][];
+        for (int a = 0; a < k; a++) {
+            for (int q = 0; q < n; q++) {
+                inverse[a][q] = new int[counts[a][q]];
+                counts[a][q] = 0;
+            }
+        }
+        for (int q = 0; q < n; q++) {
+            for (int a = 0; a < k; a++) {
+                int to = delta[q][a];
+                inverse[a][to][counts[a][to]++] = q;
+            }
+        }
+        return inverse;
+    }
+
+    /**
+     * Hopcroft's algorithm. Every block taken from the waiting queue is used as
+     * a splitter for all symbols.
+     */
+    private static void refine(Partition partition, int[][][] inverse, int k) {
+        Queue<Integer> waiting = new LinkedList<>();
+        boolean[] isWaiting = new boolean[partition.capacity()];
+
+        // all initial blocks except the largest one
+        int largest = 0;
+        for (int b = 1; b < partition.blocks(); b++) {
+            if (partition.size(b) > partition.size(largest)) {
+                largest = b;
+            }
+        }
+        for (int b = 0; b < partition.blocks(); b++) {
+            if (b != largest) {
+                waiting.add(b);
+                isWaiting[b] = true;
+            }
+        }
+
+        List<Integer> touched = new ArrayList<>();
+        while (!waiting.isEmpty()) {
+            int splitter = waiting.poll();
+            isWaiting[splitter] = false;
+            int[] splitterStates = partition.states(splitter);
+
+            for (int a = 0; a < k; a++) {
+                touched.clear();
+                for (int q : splitterStates) {
+                    for (int p : inverse[a][q]) {
+                        if (partition.mark(p)) {
+                            touched.add(partition.blockOf(p));
+                        }
+                    }
+                }
+                for (int b : touched) {
+                    int split = partition.split(b);
+                    if (split < 0) {
+                        continue;
+                    }
+                    if (isWaiting[b] || partition.size(split) <= partition.size(b)) {
+                        waiting.add(split);
+                        isWaiting[split] = true;
+                    } else {
+                        waiting.add(b);
+                        isWaiting[b] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the minimal dfa from the refined partition.
+     */
+    private static <Sym> DFAExtended<Integer, Sym> build(DFA<Integer, Sym> dfa,
+            Partition partition, Mapper<Integer> states, Mapper<Sym> symbols, int[][] delta,
+            int sink) {
+        int sinkBlock = partition.blockOf(sink);
+        int start = states.getForValue(dfa.getStartState());
+        int[] newState = new int[partition.blocks()];
+        for (int b = 0; b < newState.length; b++) {
+            newState[b] = -1;
+        }
+
+        Set<Integer> acceptableStates = new LinkedHashSet<>();
+        Map<Integer, Map<Sym, Integer>> transitions = new HashMap<>();
+        Map<Integer, Set<Integer>> aliases = new HashMap<>();
+
+        // numbered in the order they are reached from the starting state
+        Queue<Integer> queue = new LinkedList<>();
+        int numStates = 0;
+        newState[partition.blockOf(start)] = numStates++;
+        queue.add(partition.blockOf(start));
+
+        while (!queue.isEmpty()) {
+            int block = queue.poll();
+            int alias = newState[block];
+            int[] blockStates = partition.states(block);
+
+            Set<Integer> blockAliases = new LinkedHashSet<>();
+            for (int q : blockStates) {
+                if (q != sink) {
+                    blockAliases.add(states.getForIndex(q));
+                }
+            }
+            aliases.put(alias, blockAliases);
+
+            Map<Sym, Integer> transitions4State = new HashMap<>();
+            transitions.put(alias, transitions4State);
+            if (block == sinkBlock) {
+                continue; // only if nothing is accepted
+            }
+            if (dfa.getAcceptableStates().contains(states.getForIndex(blockStates[0]))) {
+                acceptableStates.add(alias);
+            }
+
+            int[] row = delta[blockStates[0]];
+            for (int a = 0; a < row.length; a++) {
+                int toBlock = partition.blockOf(row[a]);
+                if (toBlock == sinkBlock) {
+                    continue;
+                }
+                if (newState[toBlock] < 0) {
+                    newState[toBlock] = numStates++;
+                    queue.add(toBlock);
+                }
+                transitions4State.put(symbols.getForIndex(a), newState[toBlock]);
+            }
+        }
+
+        return new DFAExtended<>(new DFA<>(0, acceptableStates, transitions), aliases);
+    }
+
+    /**
+     * Partition of states into blocks. States of a block are kept together in
+     * an array, marked states of a block are at the block's beginning.
+     */
+    private static class Partition {
+
+        private int[] elements; // states, grouped by blocks
+        private int[] location; // state -> index in elements
+        private int[] blockOf; // state -> block
+        private int[] first; // block -> first index in elements
+        private int[] end; // block -> index after the last in elements
+        private int[] marked; // block -> number of marked states
+        private int blocks;
+
+        Partition(int n, int[] initialBlocks) {
+            elements = new int[n];
+            location = new int[n];
+            blockOf = new int[n];
+            first = new int[n];
+            end = new int[n];
+            marked = new int[n];
+
+            for (int q = 0; q < n; q++) {
+                blocks = Math.max(blocks, initialBlocks[q] + 1);
+            }
+            int[] counts = new int[blocks + 1];
+            for (int q = 0; q < n; q++) {
+                counts[initialBlocks[q] + 1]++;
+            }
+            for (int b = 0; b < blocks; b++) {
+                counts[b + 1] += counts[b];
+                first[b] = counts[b];
+                end[b] = counts[b];
+            }
+            for (int q = 0; q < n; q++) {
+                int b = initialBlocks[q];
+                blockOf[q] = b;
+                location[q] = end[b];
+                elements[end[b]++] = q;
+            }
+
+        }
+
+        int capacity() {
+            return elements.length;
+        }
+
+        int blocks() {
+            return blocks;
+        }
+
+        int size(int block) {
+            return end[block] - first[block];
+        }
+
+        int blockOf(int state) {
+            return blockOf[state];
+        }
+
+        int[] states(int block) {
+            int[] states = new int[size(block)];
+            System.arraycopy(elements, first[block], states, 0, states.length);
+            return states;
+        }
+
+        /**
+         * Marks a state.
+         *
+         * @return <code>true</code> if this is the first marked state of it's
+         *         block
+         */
+        boolean mark(int state) {
+            int b = blockOf[state];
+            int loc = location[state];
+            int markedEnd = first[b] + marked[b];
+            if (loc < markedEnd) {
+                return false; // already marked
+            }
+            // swap with the first unmarked state
+            int other = elements[markedEnd];
+            elements[markedEnd] = state;
+            location[state] = markedEnd;
+            elements[loc] = other;
+            location[other] = loc;
+            return marked[b]++ == 0;
+        }
+
+        /**
+         * Splits marked states of the block into a new block and removes the
+         * marks.
+         *
+         * @return new block, -1 if the block wasn't split
+         */
+        int split(int block) {
+            int markedEnd = first[block] + marked[block];
+            marked[block] = 0;
+            if (markedEnd == end[block]) {
+                return -1; // all states marked
+            }
+            int newBlock = blocks++;
+            first[newBlock] = first[block];
+            end[newBlock] = markedEnd;
+            first[block] = markedEnd;
+            for (int idx = first[newBlock]; idx < end[newBlock]; idx++) {
+                blockOf[elements[idx]] = newBlock;
+            }
+            return newBlock;
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+package hr.fer.zemris.ppj.automaton;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Deterministic finite state automaton whose states and symbols are numbers
+ * from zero up. Transitions are kept in a dense table with a row for every
+ * state and a column for every symbol, so a transition is a single array
+ * lookup and nothing is boxed. Automaton doesn't keep a current state, the
+ * caller does, so it never changes and can be shared.
+ * 
+ * @author fhrenic
+ */
+public class IntDFA implements Serializable {
+
+    private static final long serialVersionUID = 5032479104662235017L;
+
+    /**
+     * State the automaton ends up in if there is no transition.
+     */
+    public static final int DEAD = -1;
+
+    private int startState;
+    private int numSymbols;
+    // state * numSymbols + symbol -> state
+    private int[] transitions;
+    private boolean[] acceptable;
+
+    /**
+     * Creates a new automaton from the given table.
+     * 
+     * @param startState starting state
+     * @param numSymbols number of symbols
+     * @param transitions state * numSymbols + symbol -> state, {@link #DEAD}
+     *            if there is no transition
+     * @param acceptable state -> <code>true</code> if it's acceptable
+     */
+    public IntDFA(int startState, int numSymbols, int[] transitions, boolean[] acceptable) {
+        if (transitions.length != acceptable.length * numSymbols) {
+            throw new IllegalArgumentException("Table has " + transitions.length
+                    + " transitions, expected " + acceptable.length * numSymbols);
+        }
+        this.startState = startState;
+        this.numSymbols = numSymbols;
+        this.transitions = transitions;
+        this.acceptable = acceptable;
+    }
+
+    /**
+     * Converts a dfa whose states are numbered from zero up and whose symbols
+     * are numbers from zero to <code>numSymbols - 1</code>. States keep their
+     * numbers.
+     * 
+     * @param dfa dfa to convert
+     * @param numSymbols number of symbols
+     * @return equivalent automaton
+     */
+    public static IntDFA of(DFA<Integer, Integer> dfa, int numSymbols) {
+        Map<Integer, Map<Integer, Integer>> dfaTransitions = dfa.getTransitions();
+        int numStates = dfaTransitions.size();
+        int[] transitions = new int[numStates * numSymbols];
+        boolean[] acceptable = new boolean[numStates];
+        Arrays.fill(transitions, DEAD);
+        for (int state = 0; state < numStates; state++) {
+            int row = state * numSymbols;
+            for (Map.Entry<Integer, Integer> e : dfaTransitions.get(state).entrySet()) {
+                transitions[row + e.getKey()] = e.getValue();
+            }
+            acceptable[state] = dfa.getAcceptableStates().contains(state);
+        }
+        return new IntDFA(dfa.getStartState(), numSymbols, transitions, acceptable);
+    }
+
+    /**
+     * Converts any dfa, states and symbols are numbered by the given mappers.
+     * Mappers have to have all states and all symbols of the dfa.
+     * 
+     * @param dfa dfa to convert
+     * @param states numbers of states
+     * @param symbols numbers of symbols
+     * @return equivalent automaton
+     */
+    public static <St, Sym> IntDFA of(DFA<St, Sym> dfa, Mapper<St> states, Mapper<Sym> symbols) {
+        int numStates = states.size();
+        int numSymbols = symbols.size();
+        int[] transitions = new int[numStates * numSymbols];
+        boolean[] acceptable = new boolean[numStates];
+        Arrays.fill(transitions, DEAD);
+        for (Map.Entry<St, Map<Sym, St>> e : dfa.getTransitions().entrySet()) {
+            int row = states.getForValue(e.getKey()) * numSymbols;
+            for (Map.Entry<Sym, St> t : e.getValue().entrySet()) {
+                transitions[row + symbols.getForValue(t.getKey())] = states
+                        .getForValue(t.getValue());
+            }
+        }
+        for (St state : dfa.getAcceptableStates()) {
+            acceptable[states.getForValue(state)] = true;
+        }
+        return new IntDFA(states.getForValue(dfa.getStartState()), numSymbols, transitions,
+                acceptable);
+    }
+
+    /**
+     * @return the starting state
+     */
+    public int startState() {
+        return startState;
+    }
+
+    /**
+     * Returns the state the automaton goes to from the given state via given
+     * symbol.
+     * 
+     * @param state current state
+     * @param symbol transition symbol
+     * @return next state, {@link #DEAD} if there is no transition
+     */
+    public int next(int state, int symbol) {
+        return transitions[state * numSymbols + symbol];
+    }
+
+    /**
+     * @param state state of interest
+     * @return <code>true</code> if the state is acceptable
+     */
+    public boolean isAcceptable(int state) {
+        return acceptable[state];
+    }
+
+    /**
+     * @return number of states
+     */
+    public int numberOfStates() {
+        return acceptable.length;
+    }
+
+    /**
+     * @return number of symbols
+     */
+    public int numberOfSymbols() {
+        return numSymbols;
+    }
+
+    /**
+     * @return state * numSymbols + symbol -> state, {@link #DEAD} if there is
+     *         no transition
+     */
+    public int[] getTransitions() {
+        return transitions.clone();
+    }
+
+    @Override
+    public String toString() {
+        int numTransitions = 0;
+        for (int next : transitions) {
+            if (next != DEAD) {
+                numTransitions++;
+            }
+        }
+        return "IntDFA:[states=" + numberOfStates() + "; transitions=" + numTransitions
+                + "; symbols=" + numSymbols + "]";
+    }
+
+}
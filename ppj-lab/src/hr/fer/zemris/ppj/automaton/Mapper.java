@@ -36,4 +36,8 @@ public class Mapper<T> {
         return map.get(value);
     }
 
+    public int size() {
+        return index;
+    }
+
 }
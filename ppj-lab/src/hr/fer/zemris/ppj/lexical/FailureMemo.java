@@ -0,0 +1,131 @@
+package hr.fer.zemris.ppj.lexical;
+
+import java.util.Arrays;
+
+/**
+ * Remembers pairs (automaton state, input position) from which no rule can
+ * accept anymore, for one automaton. Lexer stops reading as soon as it reaches
+ * such a pair instead of reading the same symbols again, so every pair is read
+ * only a constant number of times and the analysis is linear in the input
+ * length, no matter how the lexer recovers from errors (Reps' memoized
+ * maximal munch).
+ * 
+ * Lexer never goes back before the start of the current token, so pairs
+ * before it are forgotten.
+ * 
+ * @author fhrenic
+ */
+public class FailureMemo {
+
+    private static final long EMPTY = -1L;
+    private static final int INITIAL_CAPACITY = 1 << 4;
+
+    // open addressing, state << 32 | position
+    private long[] pairs;
+    private int size;
+    private int maxPosition;
+
+    /**
+     * Creates a new, empty memo.
+     */
+    public FailureMemo() {
+        pairs = new long[INITIAL_CAPACITY];
+        Arrays.fill(pairs, EMPTY);
+        size = 0;
+        maxPosition = -1;
+    }
+
+    /**
+     * Remembers that no rule accepts after the given position if the
+     * automaton is in the given state before reading the symbol at it.
+     * 
+     * @param state automaton state
+     * @param position input position
+     */
+    public void add(int state, int position) {
+        if ((size + 1) * 2 > pairs.length) {
+            rehash(pairs.length * 2);
+        }
+        if (insert(pairs, key(state, position))) {
+            size++;
+            maxPosition = Math.max(maxPosition, position);
+        }
+    }
+
+    /**
+     * Tests if the pair was remembered.
+     * 
+     * @param state automaton state
+     * @param position input position
+     * @return <code>true</code> if no rule accepts from the pair
+     */
+    public boolean contains(int state, int position) {
+        if (size == 0) {
+            return false;
+        }
+        long key = key(state, position);
+        int mask = pairs.length - 1;
+        for (int idx = hash(key) & mask;; idx = (idx + 1) & mask) {
+            if (pairs[idx] == key) {
+                return true;
+            }
+            if (pairs[idx] == EMPTY) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Forgets pairs that won't be needed, all pairs are forgotten once the
+     * lexer doesn't need any of them.
+     * 
+     * @param position first position the lexer can still check
+     */
+    public void forgetBefore(int position) {
+        if (size > 0 && maxPosition < position) {
+            if (pairs.length > INITIAL_CAPACITY << 4) {
+                pairs = new long[INITIAL_CAPACITY];
+            }
+            Arrays.fill(pairs, EMPTY);
+            size = 0;
+            maxPosition = -1;
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] newPairs = new long[capacity];
+        Arrays.fill(newPairs, EMPTY);
+        for (long key : pairs) {
+            if (key != EMPTY) {
+                insert(newPairs, key);
+            }
+        }
+        pairs = newPairs;
+    }
+
+    /**
+     * @return <code>true</code> if the key wasn't already in the table
+     */
+    private static boolean insert(long[] table, long key) {
+        int mask = table.length - 1;
+        for (int idx = hash(key) & mask;; idx = (idx + 1) & mask) {
+            if (table[idx] == key) {
+                return false;
+            }
+            if (table[idx] == EMPTY) {
+                table[idx] = key;
+                return true;
+            }
+        }
+    }
+
+    private static long key(int state, int position) {
+        return ((long) state << 32) | (position & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+}
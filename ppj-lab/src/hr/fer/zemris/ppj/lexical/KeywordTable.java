@@ -0,0 +1,264 @@
+package hr.fer.zemris.ppj.lexical;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import hr.fer.zemris.ppj.lexical.input.LexInput;
+
+/**
+ * Keywords that a more general rule (like the one for identifiers) also
+ * matches. Keyword rules aren't in the automaton of the state, the general rule
+ * accepts keywords too, and the accepted text is then looked up in this
+ * table, once per token.
+ *
+ * Table is a minimal perfect hash (hash and displace): keywords are split into
+ * buckets by their hash, and every bucket has a seed that puts it's keywords
+ * into free slots, so every keyword has it's own slot and there are as many
+ * slots as there are keywords. Lookup hashes the text once and compares it
+ * with the only keyword that can be equal to it.
+ *
+ * @author fhrenic
+ */
+public class KeywordTable implements Serializable {
+
+    private static final long serialVersionUID = 6018735279420652093L;
+
+    private static final int FNV_BASIS = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+    private static final int GOLDEN = 0x9E3779B9;
+    private static final int MAX_SEED = 1 << 16;
+
+    private int basis;
+    // bucket -> seed of it's keywords
+    private int[] seeds;
+    // slot -> keyword and it's rule
+    private String[] keywords;
+    private LexRule[] rules;
+    private int minLength;
+    private int maxLength;
+
+    /**
+     * Creates a new table.
+     *
+     * @param keywords keyword -> rule of the keyword, mustn't be empty
+     */
+    public KeywordTable(Map<String, LexRule> keywords) {
+        int size = keywords.size();
+        this.keywords = new String[size];
+        rules = new LexRule[size];
+        minLength = Integer.MAX_VALUE;
+        maxLength = 0;
+        for (String keyword : keywords.keySet()) {
+            minLength = Math.min(minLength, keyword.length());
+            maxLength = Math.max(maxLength, keyword.length());
+        }
+
+        // keywords with equal hashes can't be separated, another basis helps
+        for (basis = FNV_BASIS; !place(keywords.keySet()); basis += GOLDEN) {
+            Arrays.fill(this.keywords, null);
+        }
+        for (int slot = 0; slot < size; slot++) {
+            rules[slot] = keywords.get(this.keywords[slot]);
+        }
+    }
+
+    /**
+     * Creates a table that is already placed, from values returned by
+     * {@link #getBasis()}, {@link #getSeeds()}, {@link #getKeywords()} and
+     * {@link #getRules()}.
+     *
+     * @param basis basis of the hash
+     * @param seeds bucket -> seed of it's keywords
+     * @param keywords slot -> keyword
+     * @param rules slot -> rule of the keyword
+     */
+    public KeywordTable(int basis, int[] seeds, String[] keywords, LexRule[] rules) {
+        this.basis = basis;
+        this.seeds = seeds;
+        this.keywords = keywords;
+        this.rules = rules;
+        minLength = Integer.MAX_VALUE;
+        maxLength = 0;
+        for (String keyword : keywords) {
+            minLength = Math.min(minLength, keyword.length());
+            maxLength = Math.max(maxLength, keyword.length());
+        }
+    }
+
+    /**
+     * Puts keywords into slots, bigger buckets first.
+     *
+     * @return <code>false</code> if some bucket has no seed that works
+     */
+    private boolean place(Iterable<String> all) {
+        int size = this.keywords.length;
+        seeds = new int[Math.max(1, size / 2)];
+        final List<List<String>> buckets = new ArrayList<>();
+        for (int idx = 0; idx < seeds.length; idx++) {
+            buckets.add(new ArrayList<String>());
+        }
+        for (String keyword : all) {
+            buckets.get(bucket(seeds.length, hash(basis, keyword))).add(keyword);
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int idx = 0; idx < seeds.length; idx++) {
+            order.add(idx);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer first, Integer second) {
+                return buckets.get(second).size() - buckets.get(first).size();
+            }
+        });
+
+        int[] slots = new int[size];
+        for (int bucket : order) {
+            List<String> bucketKeywords = buckets.get(bucket);
+            int seed = 0;
+            for (; seed < MAX_SEED; seed++) {
+                if (fits(bucketKeywords, seed, slots)) {
+                    break;
+                }
+            }
+            if (seed == MAX_SEED) {
+                return false;
+            }
+            seeds[bucket] = seed;
+            for (int idx = 0; idx < bucketKeywords.size(); idx++) {
+                this.keywords[slots[idx]] = bucketKeywords.get(idx);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests if the seed puts keywords of a bucket into different free slots,
+     * slots are written into the given array.
+     */
+    private boolean fits(List<String> bucketKeywords, int seed, int[] slots) {
+        for (int idx = 0; idx < bucketKeywords.size(); idx++) {
+            int slot = slot(hash(basis, bucketKeywords.get(idx)), seed, keywords.length);
+            if (keywords[slot] != null) {
+                return false;
+            }
+            for (int prev = 0; prev < idx; prev++) {
+                if (slots[prev] == slot) {
+                    return false;
+                }
+            }
+            slots[idx] = slot;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the keyword rule for the text from the start index (inclusive) to
+     * the end index (exclusive) of the input.
+     *
+     * @param input input
+     * @param start start index
+     * @param end end index
+     * @return rule of the keyword, <code>null</code> if the text isn't a
+     *         keyword
+     */
+    public LexRule find(LexInput input, int start, int end) {
+        int length = end - start;
+        if (length < minLength || length > maxLength) {
+            return null;
+        }
+        int hash = basis;
+        for (int idx = start; idx < end; idx++) {
+            hash = step(hash, input.symbolAt(idx));
+        }
+        int slot = slot(hash, seeds[bucket(seeds.length, hash)], keywords.length);
+        String keyword = keywords[slot];
+        if (keyword.length() != length) {
+            return null;
+        }
+        for (int idx = 0; idx < length; idx++) {
+            if (keyword.charAt(idx) != input.symbolAt(start + idx)) {
+                return null;
+            }
+        }
+        return rules[slot];
+    }
+
+    /**
+     * @return basis of the hash
+     */
+    public int getBasis() {
+        return basis;
+    }
+
+    /**
+     * @return bucket -> seed of it's keywords
+     */
+    public int[] getSeeds() {
+        return seeds.clone();
+    }
+
+    /**
+     * @return slot -> keyword
+     */
+    public String[] getKeywords() {
+        return keywords.clone();
+    }
+
+    /**
+     * @return slot -> rule of the keyword
+     */
+    public LexRule[] getRules() {
+        return rules.clone();
+    }
+
+    /**
+     * Hashes the text (FNV-1a).
+     *
+     * @param basis starting value
+     * @param text text
+     * @return hash
+     */
+    public static int hash(int basis, String text) {
+        int hash = basis;
+        for (int idx = 0; idx < text.length(); idx++) {
+            hash = step(hash, text.charAt(idx));
+        }
+        return hash;
+    }
+
+    /**
+     * @return hash after the symbol
+     */
+    public static int step(int hash, char symbol) {
+        return (hash ^ symbol) * FNV_PRIME;
+    }
+
+    /**
+     * @return bucket of the hash
+     */
+    public static int bucket(int numBuckets, int hash) {
+        return (hash & Integer.MAX_VALUE) % numBuckets;
+    }
+
+    /**
+     * Mixes the hash with the seed of it's bucket (finalizer of MurmurHash3).
+     *
+     * @return slot of the hash
+     */
+    public static int slot(int hash, int seed, int numSlots) {
+        int mixed = hash + seed * GOLDEN;
+        mixed ^= mixed >>> 16;
+        mixed *= 0x85EBCA6B;
+        mixed ^= mixed >>> 13;
+        mixed *= 0xC2B2AE35;
+        mixed ^= mixed >>> 16;
+        return (mixed & Integer.MAX_VALUE) % numSlots;
+    }
+
+}
@@ -3,54 +3,140 @@ package hr.fer.zemris.ppj.lexical;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import hr.fer.zemris.ppj.automaton.Automaton;
-import hr.fer.zemris.ppj.lexical.automaton.LexAutomaton;
 import hr.fer.zemris.ppj.lexical.automaton.LexAutomatonHandler;
-import hr.fer.zemris.ppj.util.Streamer;
+import hr.fer.zemris.ppj.lexical.automaton.LexMachine;
+import hr.fer.zemris.ppj.lexical.input.LexInput;
+import hr.fer.zemris.ppj.lexical.input.LineIndex;
+import hr.fer.zemris.ppj.lexical.input.MappedInput;
+import hr.fer.zemris.ppj.lexical.input.SkipRun;
+import hr.fer.zemris.ppj.lexical.input.StreamInput;
+import hr.fer.zemris.ppj.lexical.output.TextTokenSink;
+import hr.fer.zemris.ppj.lexical.output.TokenSink;
 
 /**
  * This class performs lexical analysis of the given input stream. It uses
- * automatons that were generated by GLA class.
+ * automatons that were generated by GLA class (see {@link LexTables}), a lexer
+ * keeps only it's own position in the input, so lexers on different threads
+ * can share the same tables.
+ * 
+ * Input is read while it's being analyzed, tokens are given to a token sink as
+ * soon as they are recognized, and symbols before the current token are
+ * released, so the whole input is never in memory at once.
+ * 
+ * Pairs of automaton state and input position from which no rule can accept
+ * are remembered (see {@link FailureMemo}), so input is read in linear time
+ * even when no rule accepts a long part of it.
+ * 
+ * Runs of symbols that the current state skips one at a time, like white
+ * space, are skipped at once by the input (see {@link SkipRun}).
+ * 
+ * If rules count exactly the new lines, line numbers can be taken from an
+ * index of lines instead (see {@link #setLineIndex(LineIndex)}), then they
+ * don't depend on what the lexer read before.
  * 
  * @author fhrenic
  */
 public class Lex {
 
-    private String input;
-    private OutputStream output;
+    private LexInput input;
+    private TokenSink sink;
 
-    private HashMap<String, List<LexRule>> states;
+    private Map<String, List<LexRule>> states;
+    private HashMap<String, LexMachine> automatons;
     private String currentState;
     private List<LexRule> currentRules;
+    private LexMachine currentAutomaton;
+    private int automatonState;
+
+    private Map<String, SkipRun> skipRuns;
+    private SkipRun currentSkipRun;
+
+    // state -> memo of it's automaton, if the automaton's states are stable
+    private HashMap<String, FailureMemo> failures;
+    private FailureMemo currentFailures;
+    // automaton states after every symbol read for the current token
+    private int[] trail;
 
     private int startIndex;
     private int endIndex;
     private int lastIndex;
     private int lineNumber;
+    private boolean newLineLines;
+    // null if line numbers are counted by actions
+    private LineIndex.Cursor lines;
+    // index of the furthest symbol looked at
+    private int lookahead;
+
+    private TokenBoundaryListener listener;
 
     /**
      * Creates a new Lexical Analyzer. It has a starting state. For every state
-     * there is a list of rules that are considered when lex is in that state.
-     * Handler has the transitions for the automatons.
+     * there is a list of rules that are considered when lex is in that state,
+     * and an automaton that recognizes all of those rules at once. Handler has
+     * the transitions for the automatons of single rules.
      * 
      * @param startState starting state
      * @param states mapping from state to list of rules
+     * @param automatons mapping from state to automaton of all it's rules
      * @param handler has automaton transitions
      * @param output output stream that is used for printing results
      */
-    public Lex(String startState, HashMap<String, List<LexRule>> states, LexAutomatonHandler handler, OutputStream output) {
-        LexAutomaton.setHandler(handler); // don't change this
-        this.output = output;
-        this.states = states;
-        changeState(startState);
+    public Lex(String startState, HashMap<String, List<LexRule>> states,
+            HashMap<String, LexMachine> automatons, LexAutomatonHandler handler,
+            OutputStream output) {
+        this(startState, states, automatons, handler, new TextTokenSink(output));
+    }
+
+    /**
+     * Creates a new Lexical Analyzer that gives recognized tokens to the given
+     * sink.
+     * 
+     * @param startState starting state
+     * @param states mapping from state to list of rules
+     * @param automatons mapping from state to automaton of all it's rules
+     * @param handler has automaton transitions
+     * @param sink sink that receives tokens
+     */
+    public Lex(String startState, HashMap<String, List<LexRule>> states,
+            HashMap<String, LexMachine> automatons, LexAutomatonHandler handler, TokenSink sink) {
+        this(new LexTables(startState, states, automatons, handler), sink);
+    }
+
+    /**
+     * Creates a new Lexical Analyzer that uses the given tables and gives
+     * recognized tokens to the given sink. Lexers don't change the tables, so
+     * any number of them can use the same tables at the same time.
+     * 
+     * @param tables tables of the language
+     * @param sink sink that receives tokens
+     */
+    public Lex(LexTables tables, TokenSink sink) {
+        this.sink = sink;
+        states = tables.getStates();
+        skipRuns = tables.getSkipRuns();
+        newLineLines = tables.hasNewLineLines();
+        automatons = new HashMap<>();
+        failures = new HashMap<>();
+        for (Map.Entry<String, LexMachine> e : tables.getAutomatons().entrySet()) {
+            automatons.put(e.getKey(), e.getValue().copy());
+            if (e.getValue().hasStableStates()) {
+                failures.put(e.getKey(), new FailureMemo());
+            }
+        }
+        trail = new int[1 << 8];
+        changeState(tables.getStartState());
 
         startIndex = 0;
         endIndex = -1;
         lastIndex = -1;
         lineNumber = 1;
+        lookahead = -1;
     }
 
     /**
@@ -60,28 +146,77 @@ public class Lex {
      * @throws IOException
      */
     public void analyzeInput(InputStream stream) throws IOException {
-        input = Streamer.readFromStream(stream);
-        int len = input.length();
+        analyzeInput(new StreamInput(stream));
+    }
+
+    /**
+     * Consumes symbols from the file with the given path and performs lexical
+     * analysis. File is mapped into memory instead of being read.
+     * 
+     * @param path path to the file
+     * @throws IOException
+     */
+    public void analyzeInput(Path path) throws IOException {
+        analyzeInput(new MappedInput(path));
+    }
+
+    /**
+     * Consumes symbols from the input and performs lexical analysis. Sink is
+     * flushed at the end.
+     * 
+     * @param input input
+     * @throws IOException
+     */
+    public void analyzeInput(LexInput input) throws IOException {
+        this.input = input;
         LexRule lastRule = null;
 
-        while (endIndex < len - 1) {
-            boolean alive = true;
-            while (alive && endIndex < len - 1) {
-                alive = false;
-                boolean accepted = false;
-                char symbol = input.charAt(++endIndex);
-                for (LexRule rule : currentRules) {
-                    Automaton<Character> cur = rule.getAutomaton();
-                    if (cur.isDead()) {
-                        continue;
-                    }
-                    alive = true;
-                    cur.consume(symbol);
-                    if (cur.accepts() && !accepted) {
-                        accepted = true;
-                        lastRule = rule;
-                        lastIndex = endIndex;
+        while (input.hasSymbol(endIndex + 1)) {
+            if (lines != null) {
+                lineNumber = lines.lineOf(startIndex);
+            }
+            if (listener != null && !listener.atBoundary(startIndex, currentState, lineNumber)) {
+                break;
+            }
+            FailureMemo memo = currentFailures;
+            if (memo != null) {
+                memo.forgetBefore(startIndex + 1);
+            }
+            if (currentSkipRun != null && skipRun()) {
+                continue;
+            }
+            boolean stopped = false;
+
+            // one automaton for all rules, label of the state is the rule with
+            // the highest priority so the first accepting rule is remembered
+            while (input.hasSymbol(endIndex + 1)) {
+                automatonState = currentAutomaton.next(automatonState, input.symbolAt(++endIndex));
+                if (automatonState == LexMachine.DEAD) {
+                    break;
+                }
+                int rule = currentAutomaton.acceptedRule(automatonState);
+                if (rule != LexMachine.NO_RULE) {
+                    lastRule = currentRules.get(rule);
+                    lastIndex = endIndex;
+                }
+                if (memo != null) {
+                    if (memo.contains(automatonState, endIndex + 1)) {
+                        stopped = true;
+                        break; // no rule accepts after this
                     }
+                    addToTrail(endIndex - startIndex, automatonState);
+                }
+            }
+            // end of the input counts as a symbol that was looked at
+            int looked = stopped || automatonState == LexMachine.DEAD ? endIndex : endIndex + 1;
+            if (looked > lookahead) {
+                lookahead = looked;
+            }
+            if (memo != null) {
+                // no rule accepted after the last accepted symbol
+                int from = lastRule == null ? startIndex : lastIndex;
+                for (int idx = from; idx < endIndex; idx++) {
+                    memo.add(trail[idx - startIndex], idx + 1);
                 }
             }
 
@@ -90,6 +225,7 @@ public class Lex {
                 endIndex = startIndex++;
             } else {// it got accepted
                 endIndex = lastIndex;
+                lastRule = lastRule.accepting(input, startIndex, lastIndex + 1);
                 lastRule.execute(this);
                 if (lastRule.hasLexClass()) {
                     addLexClass(lastRule.lexClass());
@@ -98,57 +234,171 @@ public class Lex {
                 }
             }
             lastRule = null;
-            resetCurrentAutomatons();
+            input.release(startIndex);
+            resetCurrentAutomaton();
         }
+        if (lines != null) {
+            lineNumber = lines.lineOf(startIndex);
+        }
+        sink.flush();
     }
 
     /**
-     * Resets the automatons that belong to the current state.
+     * Skips the run of symbols the current state skips one at a time, if the
+     * current token starts with one. Lexer ends up where it would be after
+     * skipping them one by one.
+     * 
+     * @return <code>true</code> if any symbols were skipped
      */
-    private void resetCurrentAutomatons() {
-        for (LexRule rule : currentRules) {
-            rule.getAutomaton().reset();
+    private boolean skipRun() throws IOException {
+        long skipped = input.skipRun(startIndex, currentSkipRun);
+        int end = SkipRun.end(skipped);
+        if (end == startIndex) {
+            return false;
+        }
+        lineNumber += SkipRun.lines(skipped);
+        // the symbol after the last skipped one was looked at
+        if (end > lookahead) {
+            lookahead = end;
         }
+        startIndex = end;
+        endIndex = end - 1;
+        lastIndex = end - 1;
+        input.release(startIndex);
+        return true;
     }
 
     /**
-     * Increments line number by one.
+     * Remembers the automaton state after the symbol at the given offset from
+     * the start of the token.
+     */
+    private void addToTrail(int offset, int state) {
+        if (offset == trail.length) {
+            trail = Arrays.copyOf(trail, trail.length * 2);
+        }
+        trail[offset] = state;
+    }
+
+    /**
+     * Sets the listener that is told when the lexer starts reading a token.
+     * 
+     * @param listener listener, <code>null</code> if there is none
+     */
+    public void setBoundaryListener(TokenBoundaryListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Makes the lexer take line numbers from the given index of lines of the
+     * input, instead of counting them with actions. It's only possible if the
+     * rules count exactly the new lines (see
+     * {@link LexTables#hasNewLineLines()}), otherwise the lexer keeps
+     * counting.
+     * 
+     * @param index index of lines of the input
+     * @return <code>true</code> if the index is used
+     */
+    public boolean setLineIndex(LineIndex index) {
+        if (!newLineLines) {
+            return false;
+        }
+        lines = index.cursor();
+        lineNumber = lines.lineOf(startIndex);
+        return true;
+    }
+
+    /**
+     * Makes the lexer start reading from the given index of the input, in the
+     * given state and line, as if the input before it was already analyzed.
+     * 
+     * @param index index of the first symbol to read
+     * @param state state the lexer is in
+     * @param lineNumber current line number, ignored if the lexer has an
+     *            index of lines
+     */
+    public void startAt(int index, String state, int lineNumber) {
+        startIndex = index;
+        endIndex = index - 1;
+        lastIndex = index - 1;
+        this.lineNumber = lines != null ? lines.lineOf(index) : lineNumber;
+        lookahead = index - 1;
+        changeState(state);
+    }
+
+    /**
+     * @return index of the first symbol of the current token
+     */
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    /**
+     * @return current state
+     */
+    public String getCurrentState() {
+        return currentState;
+    }
+
+    /**
+     * @return current line number
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the index of the furthest symbol the lexer looked at since it
+     * started. What it did so far doesn't depend on symbols after it. If
+     * the lexer looked at the end of the input, it's the input's length.
+     * 
+     * @return index of the furthest symbol looked at
+     */
+    public int getLookahead() {
+        return lookahead;
+    }
+
+    /**
+     * Resets the automaton that belongs to the current state.
+     */
+    private void resetCurrentAutomaton() {
+        automatonState = currentAutomaton.startState();
+    }
+
+    /**
+     * Increments line number by one, unless line numbers are taken from an
+     * index of lines.
      */
     public void incrementLineNumber() {
-        lineNumber++;
+        if (lines == null) {
+            lineNumber++;
+        }
     }
 
     /**
-     * Prints current lex class to the stream.
+     * Gives the current token to the sink.
      * 
      * @param lexClass name of the lex class
      */
     public void addLexClass(String lexClass) {
-        String sub = input.substring(startIndex, lastIndex + 1);
-        String output = lexClass + " " + lineNumber + " " + sub + '\n';
-        startIndex = lastIndex + 1;
         try {
-            Streamer.writeToStream(output, this.output);
+            // rules can count new lines of the token before it's added
+            int line = lines != null ? lines.lineOf(lastIndex + 1) : lineNumber;
+            sink.addToken(lexClass, line, input, startIndex, lastIndex + 1);
         } catch (IOException e) {
         }
+        startIndex = lastIndex + 1;
     }
 
     /**
-     * Moves the reading index back to the startIndex + toIdx
+     * Moves the reading index back to the startIndex + toIdx. Automaton is
+     * reset after every token, so it's state isn't restored.
      * 
      * @param toIdx index to move
      */
     public void goBack(int toIdx) {
-        resetCurrentAutomatons();
         int idx = startIndex + toIdx - 1;
         endIndex = idx;
         lastIndex = idx;
-        char[] feed = input.substring(startIndex, lastIndex + 1).toCharArray();
-        for (LexRule rule : currentRules) {
-            for (char symbol : feed)
-                rule.getAutomaton().consume(symbol);
-        }
-
     }
 
     /**
@@ -159,7 +409,10 @@ public class Lex {
     public void changeState(String state) {
         currentState = state;
         currentRules = states.get(currentState);
-        resetCurrentAutomatons();
+        currentAutomaton = automatons.get(currentState);
+        currentFailures = failures.get(currentState);
+        currentSkipRun = skipRuns.get(currentState);
+        resetCurrentAutomaton();
     }
 
     /**
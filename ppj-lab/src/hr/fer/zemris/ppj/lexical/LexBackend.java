@@ -0,0 +1,79 @@
+package hr.fer.zemris.ppj.lexical;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import hr.fer.zemris.ppj.lexical.automaton.BitParallelLexNFA;
+import hr.fer.zemris.ppj.lexical.automaton.CharClasses;
+import hr.fer.zemris.ppj.lexical.automaton.LazyLexDFA;
+import hr.fer.zemris.ppj.lexical.automaton.LexAutomaton;
+import hr.fer.zemris.ppj.lexical.automaton.LexAutomatonHandler;
+import hr.fer.zemris.ppj.lexical.automaton.LexMachine;
+import hr.fer.zemris.ppj.lexical.automaton.SymbolTransition;
+
+/**
+ * Kinds of automatons the lexer can use to recognize rules of a state.
+ * Automatons other than the generated ones are created by the lexical analyzer
+ * from the automatons of single rules.
+ * 
+ * @author fhrenic
+ */
+public enum LexBackend {
+
+    /**
+     * Automatons created by the generator.
+     */
+    GENERATED,
+
+    /**
+     * Deterministic automatons that are built while analyzing, see
+     * {@link LazyLexDFA}.
+     */
+    LAZY_DFA,
+
+    /**
+     * Nondeterministic automatons simulated with bit vectors, see
+     * {@link BitParallelLexNFA}.
+     */
+    BIT_PARALLEL_NFA;
+
+    /**
+     * Returns automatons of this kind for all states.
+     * 
+     * @param generated automatons created by the generator
+     * @param states mapping from state to list of rules
+     * @param handler has automaton transitions
+     * @return mapping from state to automaton of all it's rules
+     */
+    public HashMap<String, LexMachine> automatons(HashMap<String, LexMachine> generated,
+            HashMap<String, List<LexRule>> states, LexAutomatonHandler handler) {
+        if (this == GENERATED) {
+            return generated;
+        }
+
+        Map<String, List<LexAutomaton>> ruleAutomatons = new HashMap<>();
+        List<SymbolTransition> transitions = new ArrayList<>();
+        for (Map.Entry<String, List<LexRule>> e : states.entrySet()) {
+            List<LexAutomaton> automatons = new ArrayList<>();
+            for (LexRule rule : e.getValue()) {
+                automatons.add(rule.getAutomaton());
+            }
+            ruleAutomatons.put(e.getKey(), automatons);
+            transitions.addAll(handler.symbolTransitions(automatons));
+        }
+
+        HashMap<String, LexMachine> automatons = new HashMap<>();
+        CharClasses classes = this == LAZY_DFA ? new CharClasses(transitions) : null;
+        for (Map.Entry<String, List<LexAutomaton>> e : ruleAutomatons.entrySet()) {
+            if (this == LAZY_DFA) {
+                automatons.put(e.getKey(), new LazyLexDFA(handler, e.getValue(), classes));
+            } else {
+                automatons.put(e.getKey(), new BitParallelLexNFA(handler, e.getValue()));
+            }
+        }
+        return automatons;
+    }
+
+}
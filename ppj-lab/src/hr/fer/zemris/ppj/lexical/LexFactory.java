@@ -0,0 +1,21 @@
+package hr.fer.zemris.ppj.lexical;
+
+import hr.fer.zemris.ppj.lexical.output.TokenSink;
+
+/**
+ * Creates lexers that analyze the same language, for analyzers that need more
+ * than one lexer. Lexers mustn't share anything that changes while analyzing.
+ * 
+ * @author fhrenic
+ */
+public interface LexFactory {
+
+    /**
+     * Creates a new lexer in it's starting state.
+     * 
+     * @param sink sink that receives tokens
+     * @return lexer
+     */
+    public Lex createLex(TokenSink sink);
+
+}
@@ -3,12 +3,14 @@ package hr.fer.zemris.ppj.lexical;
 import java.io.Serializable;
 import java.util.List;
 
-import hr.fer.zemris.ppj.automaton.Automaton;
 import hr.fer.zemris.ppj.lexical.actions.LexAction;
+import hr.fer.zemris.ppj.lexical.automaton.LexAutomaton;
+import hr.fer.zemris.ppj.lexical.input.LexInput;
 
 /**
  * This class represent a rule that is executed when this rule's regex matches a
- * part of the input.
+ * part of the input. Rules don't change while analyzing, so lexers can share
+ * them.
  * 
  * @author fhrenic
  */
@@ -17,8 +19,9 @@ public class LexRule implements Serializable {
     private static final long serialVersionUID = -3606885506411201521L;
 
     private String lexClass;
-    private Automaton<Character> automaton;
+    private LexAutomaton automaton;
     private List<LexAction> actions;
+    private KeywordTable keywords;
 
     /**
      * Creates a new rule from a given automaton (regex), and a list of actions
@@ -27,7 +30,7 @@ public class LexRule implements Serializable {
      * @param automaton regex
      * @param actions list of actions that are executeds
      */
-    public LexRule(String lexClass, Automaton<Character> automaton, List<LexAction> actions) {
+    public LexRule(String lexClass, LexAutomaton automaton, List<LexAction> actions) {
         this.lexClass = lexClass;
         this.automaton = automaton;
         this.actions = actions;
@@ -57,10 +60,56 @@ public class LexRule implements Serializable {
      * 
      * @return automaton that matches regex
      */
-    public Automaton<Character> getAutomaton() {
+    public LexAutomaton getAutomaton() {
         return automaton;
     }
 
+    /**
+     * Returns actions of this rule, in the order they are executed.
+     * 
+     * @return actions of this rule
+     */
+    public List<LexAction> getActions() {
+        return actions;
+    }
+
+    /**
+     * Sets keywords that this rule accepts in place of their own rules, see
+     * {@link KeywordTable}. Only the generator calls this, before the rule is
+     * used.
+     * 
+     * @param keywords keywords, <code>null</code> if there are none
+     */
+    public void setKeywords(KeywordTable keywords) {
+        this.keywords = keywords;
+    }
+
+    /**
+     * @return keywords this rule accepts in place of their own rules,
+     *         <code>null</code> if there are none
+     */
+    public KeywordTable getKeywords() {
+        return keywords;
+    }
+
+    /**
+     * Returns the rule that accepts the given text of the input, if this rule
+     * accepted it: rule of the keyword if the text is a keyword, otherwise
+     * this rule.
+     * 
+     * @param input input
+     * @param start index of the first symbol of the text
+     * @param end index after the last symbol of the text
+     * @return rule that accepts the text
+     */
+    public LexRule accepting(LexInput input, int start, int end) {
+        if (keywords == null) {
+            return this;
+        }
+        LexRule keyword = keywords.find(input, start, end);
+        return keyword != null ? keyword : this;
+    }
+
     /**
      * Executes all actions for this rule.
      * 
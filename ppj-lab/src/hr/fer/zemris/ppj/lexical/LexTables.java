@@ -0,0 +1,458 @@
+package hr.fer.zemris.ppj.lexical;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import hr.fer.zemris.ppj.automaton.IntDFA;
+import hr.fer.zemris.ppj.lexical.actions.ChangeStateAction;
+import hr.fer.zemris.ppj.lexical.actions.GoBackAction;
+import hr.fer.zemris.ppj.lexical.actions.LexAction;
+import hr.fer.zemris.ppj.lexical.actions.NewLineAction;
+import hr.fer.zemris.ppj.lexical.actions.SkipAction;
+import hr.fer.zemris.ppj.lexical.automaton.CharClasses;
+import hr.fer.zemris.ppj.lexical.automaton.LexAutomatonHandler;
+import hr.fer.zemris.ppj.lexical.automaton.LexDFA;
+import hr.fer.zemris.ppj.lexical.automaton.LexMachine;
+import hr.fer.zemris.ppj.lexical.input.LineIndex;
+import hr.fer.zemris.ppj.lexical.input.SkipRun;
+import hr.fer.zemris.ppj.lexical.output.TokenSink;
+import hr.fer.zemris.ppj.util.FlatTables;
+
+/**
+ * Everything the generator creates for a language: starting state, rules of
+ * every state, automatons of states and the handler with transitions of rule
+ * automatons. Tables never change once they are created, so one object can be
+ * shared by any number of lexers on any number of threads. Every lexer keeps
+ * it's own position, state and copies of automatons that change while
+ * analyzing (see {@link LexMachine#copy()}).
+ *
+ * Tables are written as objects, or as {@link FlatTables} if all automatons
+ * are generated dfas. Flat tables have only what generated automatons need,
+ * rules read from them have no automatons of their own, so they can't be used
+ * with other backends.
+ *
+ * @author fhrenic
+ */
+public class LexTables implements LexFactory {
+
+    // codes of actions in flat tables
+    private static final int NEW_LINE = 0;
+    private static final int SKIP = 1;
+    private static final int GO_BACK = 2;
+    private static final int CHANGE_STATE = 3;
+
+    private final String startState;
+    private final HashMap<String, List<LexRule>> states;
+    private final HashMap<String, LexMachine> automatons;
+    private final LexAutomatonHandler handler;
+    private final HashMap<String, SkipRun> skipRuns;
+    private final boolean newLineLines;
+
+    /**
+     * Creates new tables without skip runs. Given maps mustn't be changed
+     * after this.
+     *
+     * @param startState starting state
+     * @param states mapping from state to list of rules
+     * @param automatons mapping from state to automaton of all it's rules
+     * @param handler has automaton transitions
+     */
+    public LexTables(String startState, HashMap<String, List<LexRule>> states,
+            HashMap<String, LexMachine> automatons, LexAutomatonHandler handler) {
+        this(startState, states, automatons, handler, new HashMap<String, SkipRun>(), false);
+    }
+
+    /**
+     * Creates new tables. Given maps mustn't be changed after this.
+     *
+     * @param startState starting state
+     * @param states mapping from state to list of rules
+     * @param automatons mapping from state to automaton of all it's rules
+     * @param handler has automaton transitions
+     * @param skipRuns mapping from state to symbols it skips one at a time
+     * @param newLineLines <code>true</code> if rules count exactly the new
+     *            lines, see {@link #hasNewLineLines()}
+     */
+    public LexTables(String startState, HashMap<String, List<LexRule>> states,
+            HashMap<String, LexMachine> automatons, LexAutomatonHandler handler,
+            HashMap<String, SkipRun> skipRuns, boolean newLineLines) {
+        this.startState = startState;
+        this.states = states;
+        this.automatons = automatons;
+        this.handler = handler;
+        this.skipRuns = skipRuns;
+        this.newLineLines = newLineLines;
+    }
+
+    /**
+     * Reads tables written by {@link #write(ObjectOutputStream)}.
+     *
+     * @param stream stream to read from
+     * @return tables
+     * @throws IOException if reading fails
+     * @throws ClassNotFoundException if the stream has unknown objects
+     */
+    @SuppressWarnings("unchecked")
+    public static LexTables read(ObjectInputStream stream)
+            throws IOException, ClassNotFoundException {
+        String startState = (String) stream.readObject();
+        HashMap<String, List<LexRule>> states = (HashMap<String, List<LexRule>>) stream
+                .readObject();
+        HashMap<String, LexMachine> automatons = (HashMap<String, LexMachine>) stream
+                .readObject();
+        LexAutomatonHandler handler = (LexAutomatonHandler) stream.readObject();
+        HashMap<String, SkipRun> skipRuns = (HashMap<String, SkipRun>) stream.readObject();
+        boolean newLineLines = (Boolean) stream.readObject();
+        return new LexTables(startState, states, automatons, handler, skipRuns, newLineLines);
+    }
+
+    /**
+     * Writes the tables to the stream.
+     *
+     * @param stream stream to write to
+     * @throws IOException if writing fails
+     */
+    public void write(ObjectOutputStream stream) throws IOException {
+        stream.writeObject(startState);
+        stream.writeObject(states);
+        stream.writeObject(automatons);
+        stream.writeObject(handler);
+        stream.writeObject(skipRuns);
+        stream.writeObject(newLineLines);
+    }
+
+    /**
+     * Reads tables written by {@link #write(FlatTables)}, rules don't have
+     * automatons.
+     *
+     * @param flat flat tables
+     * @return tables
+     * @throws IOException if tables are invalid
+     */
+    public static LexTables read(FlatTables flat) throws IOException {
+        try {
+            IntBuffer header = flat.getSection(0);
+            String startState = flat.getString(header.get(0));
+            boolean newLineLines = header.get(1) != 0;
+            int section = 1;
+            List<CharClasses> classSets = new ArrayList<>();
+            for (int idx = header.get(2); idx > 0; idx--) {
+                int[] values = flat.getInts(section++);
+                int numBounds = values[1];
+                int[] bounds = new int[numBounds];
+                int[] boundClasses = new int[numBounds];
+                System.arraycopy(values, 2, bounds, 0, numBounds);
+                System.arraycopy(values, 2 + numBounds, boundClasses, 0, numBounds);
+                classSets.add(new CharClasses(values[0], bounds, boundClasses));
+            }
+
+            HashMap<String, List<LexRule>> states = new HashMap<>();
+            HashMap<String, LexMachine> automatons = new HashMap<>();
+            HashMap<String, SkipRun> skipRuns = new HashMap<>();
+            for (int idx = header.get(3); idx > 0; idx--) {
+                IntBuffer stateHeader = flat.getSection(section++);
+                String state = flat.getString(stateHeader.get(0));
+                CharClasses classes = classSets.get(stateHeader.get(1));
+                int[] transitions = flat.getInts(section++);
+                int[] acceptedRules = flat.getInts(section++);
+                boolean[] acceptable = new boolean[acceptedRules.length];
+                for (int st = 0; st < acceptable.length; st++) {
+                    acceptable[st] = acceptedRules[st] != LexMachine.NO_RULE;
+                }
+                IntDFA dfa = new IntDFA(stateHeader.get(2), classes.count(), transitions,
+                        acceptable);
+                automatons.put(state, new LexDFA(dfa, acceptedRules, classes));
+                states.put(state, readRules(flat, flat.getSection(section++)));
+                if (stateHeader.get(3) != 0) {
+                    int[] lines = flat.getInts(section++);
+                    byte[] classLines = new byte[lines.length];
+                    for (int cls = 0; cls < lines.length; cls++) {
+                        classLines[cls] = (byte) lines[cls];
+                    }
+                    skipRuns.put(state, new SkipRun(classes, classLines));
+                }
+            }
+            return new LexTables(startState, states, automatons, null, skipRuns, newLineLines);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException
+                | IllegalArgumentException ex) {
+            throw new IOException("Invalid lexical tables: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Reads rules of a state, every rule is it's lex class, actions and
+     * keywords.
+     */
+    private static List<LexRule> readRules(FlatTables flat, IntBuffer values) {
+        List<LexRule> rules = new ArrayList<>();
+        List<Integer> keywordStarts = new ArrayList<>();
+        while (values.hasRemaining()) {
+            String lexClass = flat.getString(values.get());
+            List<LexAction> actions = new ArrayList<>();
+            for (int idx = values.get(); idx > 0; idx--) {
+                int code = values.get();
+                if (code == NEW_LINE) {
+                    actions.add(new NewLineAction());
+                } else if (code == SKIP) {
+                    actions.add(new SkipAction());
+                } else if (code == GO_BACK) {
+                    actions.add(new GoBackAction(values.get()));
+                } else if (code == CHANGE_STATE) {
+                    actions.add(new ChangeStateAction(flat.getString(values.get())));
+                } else {
+                    throw new IllegalArgumentException("unknown action " + code);
+                }
+            }
+            rules.add(new LexRule(lexClass, null, actions));
+            // keywords point to rules that may come later
+            keywordStarts.add(values.position());
+            int numKeywords = values.get();
+            if (numKeywords > 0) {
+                values.get(); // basis
+                int numSeeds = values.get();
+                values.position(values.position() + numSeeds + 2 * numKeywords);
+            }
+        }
+
+        for (int rule = 0; rule < rules.size(); rule++) {
+            values.position(keywordStarts.get(rule));
+            int numKeywords = values.get();
+            if (numKeywords == 0) {
+                continue;
+            }
+            int basis = values.get();
+            int[] seeds = new int[values.get()];
+            values.get(seeds);
+            String[] keywords = new String[numKeywords];
+            LexRule[] keywordRules = new LexRule[numKeywords];
+            for (int slot = 0; slot < numKeywords; slot++) {
+                keywords[slot] = flat.getString(values.get());
+                keywordRules[slot] = rules.get(values.get());
+            }
+            rules.get(rule).setKeywords(new KeywordTable(basis, seeds, keywords, keywordRules));
+        }
+        return rules;
+    }
+
+    /**
+     * Tells if tables can be written as {@link FlatTables}: automatons of all
+     * states have to be generated dfas.
+     *
+     * @return <code>true</code> if tables can be written as flat tables
+     */
+    public boolean hasFlatForm() {
+        for (LexMachine automaton : automatons.values()) {
+            if (!(automaton instanceof LexDFA)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the tables to flat tables, see {@link #hasFlatForm()}.
+     *
+     * @param flat flat tables to write to
+     */
+    public void write(FlatTables flat) {
+        if (!hasFlatForm()) {
+            throw new IllegalStateException("Only generated dfas can be written to flat tables");
+        }
+        int[] header = new int[4];
+        flat.addSection(header);
+        header[0] = flat.addString(startState);
+        header[1] = newLineLines ? 1 : 0;
+
+        Map<CharClasses, Integer> classSets = new IdentityHashMap<>();
+        for (LexMachine automaton : automatons.values()) {
+            CharClasses classes = ((LexDFA) automaton).getClasses();
+            if (!classSets.containsKey(classes)) {
+                classSets.put(classes, classSets.size());
+                int[] bounds = classes.getBounds();
+                int[] values = new int[2 + 2 * bounds.length];
+                values[0] = classes.count();
+                values[1] = bounds.length;
+                System.arraycopy(bounds, 0, values, 2, bounds.length);
+                System.arraycopy(classes.getBoundClasses(), 0, values, 2 + bounds.length,
+                        bounds.length);
+                flat.addSection(values);
+            }
+        }
+        header[2] = classSets.size();
+        header[3] = states.size();
+
+        for (Map.Entry<String, List<LexRule>> e : states.entrySet()) {
+            String state = e.getKey();
+            LexDFA automaton = (LexDFA) automatons.get(state);
+            SkipRun run = skipRuns.get(state);
+            flat.addSection(new int[] { flat.addString(state),
+                    classSets.get(automaton.getClasses()), automaton.startState(),
+                    run != null ? 1 : 0 });
+            flat.addSection(automaton.getDFA().getTransitions());
+            int[] acceptedRules = new int[automaton.numberOfStates()];
+            for (int st = 0; st < acceptedRules.length; st++) {
+                acceptedRules[st] = automaton.acceptedRule(st);
+            }
+            flat.addSection(acceptedRules);
+            flat.addSection(writeRules(flat, e.getValue()));
+            if (run != null) {
+                byte[] classLines = run.getClassLines();
+                int[] lines = new int[classLines.length];
+                for (int cls = 0; cls < lines.length; cls++) {
+                    lines[cls] = classLines[cls];
+                }
+                flat.addSection(lines);
+            }
+        }
+    }
+
+    /**
+     * Writes rules of a state as read by {@link #readRules(FlatTables, IntBuffer)}.
+     */
+    private static int[] writeRules(FlatTables flat, List<LexRule> rules) {
+        List<Integer> values = new ArrayList<>();
+        for (LexRule rule : rules) {
+            values.add(flat.addString(rule.lexClass()));
+            values.add(rule.getActions().size());
+            for (LexAction action : rule.getActions()) {
+                if (action instanceof NewLineAction) {
+                    values.add(NEW_LINE);
+                } else if (action instanceof SkipAction) {
+                    values.add(SKIP);
+                } else if (action instanceof GoBackAction) {
+                    values.add(GO_BACK);
+                    values.add(((GoBackAction) action).getGoBack());
+                } else if (action instanceof ChangeStateAction) {
+                    values.add(CHANGE_STATE);
+                    values.add(flat.addString(((ChangeStateAction) action).getState()));
+                } else {
+                    throw new IllegalStateException("Unknown action: " + action);
+                }
+            }
+
+            KeywordTable keywords = rule.getKeywords();
+            if (keywords == null) {
+                values.add(0);
+                continue;
+            }
+            String[] keywordStrings = keywords.getKeywords();
+            LexRule[] keywordRules = keywords.getRules();
+            int[] seeds = keywords.getSeeds();
+            values.add(keywordStrings.length);
+            values.add(keywords.getBasis());
+            values.add(seeds.length);
+            for (int seed : seeds) {
+                values.add(seed);
+            }
+            for (int slot = 0; slot < keywordStrings.length; slot++) {
+                values.add(flat.addString(keywordStrings[slot]));
+                values.add(rules.indexOf(keywordRules[slot]));
+            }
+        }
+
+        int[] array = new int[values.size()];
+        for (int idx = 0; idx < array.length; idx++) {
+            array[idx] = values.get(idx);
+        }
+        return array;
+    }
+
+    /**
+     * Returns tables with the same rules and automatons of the given kind.
+     *
+     * @param backend kind of automatons
+     * @return tables with automatons of the given kind
+     */
+    public LexTables withBackend(LexBackend backend) {
+        if (backend == LexBackend.GENERATED) {
+            return this;
+        }
+        if (handler == null) {
+            throw new IllegalStateException("Tables have only generated automatons");
+        }
+        return new LexTables(startState, states, backend.automatons(automatons, states, handler),
+                handler, skipRuns, newLineLines);
+    }
+
+    /**
+     * @return <code>true</code> if automatons of all states keep all of their
+     *         states, so lexers can remember them
+     */
+    public boolean hasStableStates() {
+        for (LexMachine automaton : automatons.values()) {
+            if (!automaton.hasStableStates()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells if the line number the rules count is always the number of new
+     * lines before the token, plus one. Then lexers can take line numbers from
+     * a {@link LineIndex} instead of counting them (see
+     * {@link Lex#setLineIndex(LineIndex)}).
+     * 
+     * @return <code>true</code> if rules count exactly the new lines
+     */
+    public boolean hasNewLineLines() {
+        return newLineLines;
+    }
+
+    /**
+     * Creates a new lexer in the starting state, it can be used at the same
+     * time as other lexers of these tables.
+     */
+    @Override
+    public Lex createLex(TokenSink sink) {
+        return new Lex(this, sink);
+    }
+
+    /**
+     * @return starting state
+     */
+    public String getStartState() {
+        return startState;
+    }
+
+    /**
+     * @return mapping from state to list of rules
+     */
+    public Map<String, List<LexRule>> getStates() {
+        return Collections.unmodifiableMap(states);
+    }
+
+    /**
+     * @return mapping from state to automaton of all it's rules, automatons
+     *         have to be copied before they are used
+     */
+    public Map<String, LexMachine> getAutomatons() {
+        return Collections.unmodifiableMap(automatons);
+    }
+
+    /**
+     * @return handler with transitions of rule automatons, <code>null</code>
+     *         if tables were read from flat tables
+     */
+    public LexAutomatonHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * @return mapping from state to symbols it skips one at a time, states
+     *         that don't skip any aren't in it
+     */
+    public Map<String, SkipRun> getSkipRuns() {
+        return Collections.unmodifiableMap(skipRuns);
+    }
+
+}
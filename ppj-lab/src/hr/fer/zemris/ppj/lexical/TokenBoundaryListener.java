@@ -0,0 +1,22 @@
+package hr.fer.zemris.ppj.lexical;
+
+/**
+ * Listener that is told every time the lexer starts reading a new token. What
+ * the lexer does from that point on depends only on the position and the state
+ * it's in, so these points are where two runs of the lexer can be joined.
+ * 
+ * @author fhrenic
+ */
+public interface TokenBoundaryListener {
+
+    /**
+     * Called before the lexer starts reading a token.
+     * 
+     * @param index index of the token's first symbol
+     * @param state state the lexer is in
+     * @param lineNumber current line number
+     * @return <code>false</code> if the lexer should stop
+     */
+    public boolean atBoundary(int index, String state, int lineNumber);
+
+}
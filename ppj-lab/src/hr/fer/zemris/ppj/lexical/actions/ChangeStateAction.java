@@ -22,6 +22,13 @@ public class ChangeStateAction implements LexAction {
         this.state = state;
     }
 
+    /**
+     * @return new state
+     */
+    public String getState() {
+        return state;
+    }
+
     @Override
     public void execute(Lex lex) {
         lex.changeState(state);
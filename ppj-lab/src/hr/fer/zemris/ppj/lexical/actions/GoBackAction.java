@@ -23,6 +23,13 @@ public class GoBackAction implements LexAction {
         this.goBack = goBack;
     }
 
+    /**
+     * @return number of symbols that aren't returned
+     */
+    public int getGoBack() {
+        return goBack;
+    }
+
     @Override
     public void execute(Lex lex) {
         lex.goBack(goBack);
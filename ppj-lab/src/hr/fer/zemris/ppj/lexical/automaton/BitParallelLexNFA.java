@@ -0,0 +1,279 @@
+package hr.fer.zemris.ppj.lexical.automaton;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Stack;
+
+/**
+ * Simulates the nondeterministic automaton of all rules of one lexer state with
+ * bit vectors, nothing is built ahead or cached.
+ *
+ * Only states that have a symbol transition or accept are simulated, they are
+ * numbered from zero up and a set of them is a <code>long[]</code> bit vector.
+ * Epsilon closures are computed once, when the machine is created: every
+ * state's follow set is the closure of the state it goes to via a symbol. A
+ * step via a symbol keeps the states that have a transition for the symbol's
+ * class (one AND per word) and joins their follow sets. Follow sets are joined
+ * eight states at a time, with a table that holds the union for every
+ * combination of eight states, if the table isn't too big.
+ *
+ * Machine keeps only the set of the last state it returned, so the lexer can
+ * use only the starting state and the last state it got. This class isn't
+ * thread safe, lexers on other threads use copies that share the tables.
+ *
+ * @author fhrenic
+ */
+public class BitParallelLexNFA implements LexMachine {
+
+    private static final int START = 0;
+    private static final int CURRENT = 1;
+    private static final int MAX_TABLE_BYTES = 1 << 24;
+
+    private CharClasses classes;
+    private int numStates;
+    private int words;
+
+    // class * words + word -> states that have a transition for the class
+    private long[] classMasks;
+    // state * words + word -> follow set of the state
+    private long[] follow;
+    // ((state / 8) * 256 + byte) * words + word -> union of follow sets of
+    // states that are set in the byte, null if it's too big
+    private long[] followTable;
+    private long[] finalMask;
+    private int[] rules; // state -> accepted rule
+
+    private long[] startSet;
+    private int startRule;
+    private long[] current;
+    private long[] next;
+    private int currentRule;
+
+    /**
+     * Creates a new machine from the given automatons of single rules.
+     *
+     * @param handler has automaton transitions
+     * @param automatons automatons of rules, ordered by priority
+     */
+    public BitParallelLexNFA(LexAutomatonHandler handler, List<LexAutomaton> automatons) {
+        classes = new CharClasses(handler.symbolTransitions(automatons));
+        int numClasses = classes.count();
+
+        // rule -> final state
+        int[] finalStates = new int[automatons.size()];
+        BitSet finals = new BitSet();
+        for (int rule = 0; rule < finalStates.length; rule++) {
+            finalStates[rule] = automatons.get(rule).rightState();
+            finals.set(finalStates[rule]);
+        }
+
+        // states that are simulated are numbered from zero up
+        BitSet reachable = handler.reachableStates(automatons);
+        int[] index = new int[reachable.length()];
+        Arrays.fill(index, -1);
+        for (int st = reachable.nextSetBit(0); st >= 0; st = reachable.nextSetBit(st + 1)) {
+            if (handler.getSymbolTransition(st) != null || finals.get(st)) {
+                index[st] = numStates++;
+            }
+        }
+        words = Math.max(1, (numStates + 63) / 64);
+
+        classMasks = new long[numClasses * words];
+        follow = new long[words * 64 * words];
+        finalMask = new long[words];
+        rules = new int[numStates];
+        Arrays.fill(rules, NO_RULE);
+        for (int rule = finalStates.length - 1; rule >= 0; rule--) {
+            int s = index[finalStates[rule]];
+            rules[s] = rule;
+            finalMask[s >>> 6] |= 1L << s;
+        }
+
+        for (int st = reachable.nextSetBit(0); st >= 0; st = reachable.nextSetBit(st + 1)) {
+            int s = index[st];
+            SymbolTransition transition = handler.getSymbolTransition(st);
+            if (s < 0 || transition == null) {
+                continue;
+            }
+            for (int cls : classes.classesOf(transition.getSymbols())) {
+                classMasks[cls * words + (s >>> 6)] |= 1L << s;
+            }
+            closure(handler, index, new int[] { transition.getNext() }, follow, s * words);
+        }
+
+        startSet = new long[words];
+        int[] startStates = new int[automatons.size()];
+        for (int rule = 0; rule < startStates.length; rule++) {
+            startStates[rule] = automatons.get(rule).leftState();
+        }
+        closure(handler, index, startStates, startSet, 0);
+        startRule = acceptedRule(startSet);
+
+        if (8L * 8 * 256 * words * words <= MAX_TABLE_BYTES) {
+            createFollowTable();
+        }
+        current = new long[words];
+        next = new long[words];
+    }
+
+    /**
+     * Creates a machine that shares tables with the given one.
+     */
+    private BitParallelLexNFA(BitParallelLexNFA other) {
+        classes = other.classes;
+        numStates = other.numStates;
+        words = other.words;
+        classMasks = other.classMasks;
+        follow = other.follow;
+        followTable = other.followTable;
+        finalMask = other.finalMask;
+        rules = other.rules;
+        startSet = other.startSet;
+        startRule = other.startRule;
+        current = new long[words];
+        next = new long[words];
+    }
+
+    /**
+     * Adds states that are reachable from the given states via epsilon
+     * transitions to the bit vector, only states that are simulated are added.
+     */
+    private static void closure(LexAutomatonHandler handler, int[] index, int[] states,
+            long[] set, int offset) {
+        BitSet visited = new BitSet();
+        Stack<Integer> stack = new Stack<>();
+        for (int st : states) {
+            visited.set(st);
+            stack.push(st);
+        }
+        while (!stack.isEmpty()) {
+            int st = stack.pop();
+            int s = index[st];
+            if (s >= 0) {
+                set[offset + (s >>> 6)] |= 1L << s;
+            }
+            Set<Integer> epsilonStates = handler.getEpsilonStates(st);
+            for (int to : epsilonStates) {
+                if (!visited.get(to)) {
+                    visited.set(to);
+                    stack.push(to);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the table of unions of follow sets, every union is the union of
+     * a smaller one and a follow set of a single state.
+     */
+    private void createFollowTable() {
+        int chunks = words * 8;
+        followTable = new long[chunks * 256 * words];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            for (int b = 1; b < 256; b++) {
+                int row = (chunk * 256 + b) * words;
+                int smaller = (chunk * 256 + (b & (b - 1))) * words;
+                int state = (chunk * 8 + Integer.numberOfTrailingZeros(b)) * words;
+                for (int w = 0; w < words; w++) {
+                    followTable[row + w] = followTable[smaller + w] | follow[state + w];
+                }
+            }
+        }
+    }
+
+    @Override
+    public int startState() {
+        return START;
+    }
+
+    @Override
+    public int next(int state, char symbol) {
+        long[] from = state == START ? startSet : current;
+        int mask = classes.classOf(symbol) * words;
+        Arrays.fill(next, 0);
+
+        for (int w = 0; w < words; w++) {
+            long active = from[w] & classMasks[mask + w];
+            if (active == 0) {
+                continue;
+            }
+            if (followTable != null) {
+                for (int b = 0; active != 0; b++, active >>>= 8) {
+                    int bits = (int) active & 0xFF;
+                    if (bits != 0) {
+                        orInto(followTable, ((w * 8 + b) * 256 + bits) * words);
+                    }
+                }
+            } else {
+                while (active != 0) {
+                    int s = w * 64 + Long.numberOfTrailingZeros(active);
+                    orInto(follow, s * words);
+                    active &= active - 1;
+                }
+            }
+        }
+
+        long[] tmp = current;
+        current = next;
+        next = tmp;
+        currentRule = acceptedRule(current);
+
+        for (long word : current) {
+            if (word != 0) {
+                return CURRENT;
+            }
+        }
+        return DEAD;
+    }
+
+    @Override
+    public int acceptedRule(int state) {
+        return state == START ? startRule : currentRule;
+    }
+
+    @Override
+    public boolean hasStableStates() {
+        return false;
+    }
+
+    @Override
+    public LexMachine copy() {
+        return new BitParallelLexNFA(this);
+    }
+
+    /**
+     * Joins the set at the given offset into the next set.
+     */
+    private void orInto(long[] sets, int offset) {
+        for (int w = 0; w < words; w++) {
+            next[w] |= sets[offset + w];
+        }
+    }
+
+    /**
+     * @return rule with the highest priority that accepts in the given set
+     */
+    private int acceptedRule(long[] set) {
+        int rule = NO_RULE;
+        for (int w = 0; w < words; w++) {
+            long accepting = set[w] & finalMask[w];
+            while (accepting != 0) {
+                int s = w * 64 + Long.numberOfTrailingZeros(accepting);
+                if (rule == NO_RULE || rules[s] < rule) {
+                    rule = rules[s];
+                }
+                accepting &= accepting - 1;
+            }
+        }
+        return rule;
+    }
+
+    @Override
+    public String toString() {
+        return "BitParallelLexNFA:[states=" + numStates + "; words=" + words + "; classes="
+                + classes.count() + "; table=" + (followTable != null) + "]";
+    }
+
+}
@@ -0,0 +1,213 @@
+package hr.fer.zemris.ppj.lexical.automaton;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import hr.fer.zemris.ppj.lexical.regex.SymbolSet;
+
+/**
+ * Partition of the alphabet into equivalence classes. Two symbols are in the
+ * same class if every automaton goes to the same state with both of them, so
+ * automatons can have transitions for classes instead of symbols. Symbols that
+ * aren't used by any automaton are all in class zero.
+ * 
+ * Partition is created from transitions of nondeterministic states, every
+ * state goes to at most one state via a set of symbols. Sets are ranges of
+ * symbols, so the alphabet is first cut into intervals at the ends of all
+ * ranges, and only the intervals are split into classes. A class like
+ * <code>[^"]</code> costs two intervals, not a symbol for every character.
+ *
+ * Symbol is mapped to it's class with a single array lookup.
+ *
+ * @author fhrenic
+ */
+public class CharClasses implements Serializable {
+
+    private static final long serialVersionUID = -1968209219186416361L;
+
+    private static final int ALPHABET_SIZE = Character.MAX_VALUE + 1;
+
+    // symbol -> class, char is used as an unsigned short
+    private char[] classes;
+    private int count;
+    // first symbol of every interval, sorted, and class of the interval
+    private int[] bounds;
+    private int[] boundClasses;
+
+    /**
+     * Creates a partition of the alphabet that is valid for all given state
+     * transitions.
+     *
+     * @param transitions transitions of states
+     */
+    public CharClasses(List<SymbolTransition> transitions) {
+        TreeSet<Integer> cuts = new TreeSet<>();
+        cuts.add(0);
+        for (SymbolTransition transition : transitions) {
+            SymbolSet symbols = transition.getSymbols();
+            for (int range = 0; range < symbols.rangeCount(); range++) {
+                cuts.add((int) symbols.first(range));
+                if (symbols.last(range) < Character.MAX_VALUE) {
+                    cuts.add(symbols.last(range) + 1);
+                }
+            }
+        }
+        bounds = new int[cuts.size()];
+        int size = 0;
+        for (int cut : cuts) {
+            bounds[size++] = cut;
+        }
+
+        // used intervals start in class one, every state splits classes by the
+        // state it's symbols go to, unused intervals stay in class zero
+        boundClasses = new int[bounds.length];
+        BitSet covered = new BitSet(bounds.length);
+        for (SymbolTransition transition : transitions) {
+            cover(transition.getSymbols(), covered);
+        }
+        for (int idx = covered.nextSetBit(0); idx >= 0; idx = covered.nextSetBit(idx + 1)) {
+            boundClasses[idx] = 1;
+        }
+        count = covered.isEmpty() ? 1 : 2;
+
+        for (SymbolTransition transition : transitions) {
+            covered.clear();
+            cover(transition.getSymbols(), covered);
+            // (old class, next state) -> new class
+            Map<Long, Integer> split = new HashMap<>();
+            for (int idx = 0; idx < bounds.length; idx++) {
+                if (boundClasses[idx] == 0) {
+                    continue;
+                }
+                int next = covered.get(idx) ? transition.getNext() : LexMachine.DEAD;
+                long key = ((long) boundClasses[idx] << 32) | (next & 0xFFFFFFFFL);
+                Integer newClass = split.get(key);
+                if (newClass == null) {
+                    newClass = split.size() + 1;
+                    split.put(key, newClass);
+                }
+                boundClasses[idx] = newClass;
+            }
+            count = split.size() + 1;
+        }
+
+        fill();
+    }
+
+    /**
+     * Creates a partition from intervals of symbols, as returned by
+     * {@link #getBounds()} and {@link #getBoundClasses()}.
+     *
+     * @param count number of classes
+     * @param bounds first symbol of every interval, sorted, the first one is
+     *            zero
+     * @param boundClasses class of every interval
+     */
+    public CharClasses(int count, int[] bounds, int[] boundClasses) {
+        if (bounds.length != boundClasses.length || bounds.length == 0 || bounds[0] != 0) {
+            throw new IllegalArgumentException("Invalid intervals of symbol classes");
+        }
+        this.count = count;
+        this.bounds = bounds;
+        this.boundClasses = boundClasses;
+        fill();
+    }
+
+    /**
+     * Maps every symbol to the class of it's interval.
+     */
+    private void fill() {
+        classes = new char[ALPHABET_SIZE];
+        for (int idx = 0; idx < bounds.length; idx++) {
+            int end = idx + 1 < bounds.length ? bounds[idx + 1] : ALPHABET_SIZE;
+            Arrays.fill(classes, bounds[idx], end, (char) boundClasses[idx]);
+        }
+    }
+
+    /**
+     * Marks intervals that have symbols of the given set.
+     */
+    private void cover(SymbolSet symbols, BitSet covered) {
+        for (int range = 0; range < symbols.rangeCount(); range++) {
+            int last = symbols.last(range);
+            for (int idx = interval(symbols.first(range)); idx < bounds.length
+                    && bounds[idx] <= last; idx++) {
+                covered.set(idx);
+            }
+        }
+    }
+
+    /**
+     * @return index of the interval that has the symbol
+     */
+    private int interval(char symbol) {
+        int idx = Arrays.binarySearch(bounds, symbol);
+        return idx >= 0 ? idx : -idx - 2;
+    }
+
+    /**
+     * Returns the class of the given symbol.
+     *
+     * @param symbol symbol
+     * @return class of the symbol
+     */
+    public int classOf(char symbol) {
+        return classes[symbol];
+    }
+
+    /**
+     * Returns classes of the symbols of a set, the set has to be one of the
+     * sets the partition was created from.
+     *
+     * @param symbols set of symbols
+     * @return classes of the symbols, sorted
+     */
+    public int[] classesOf(SymbolSet symbols) {
+        BitSet found = new BitSet(count);
+        for (int range = 0; range < symbols.rangeCount(); range++) {
+            int last = symbols.last(range);
+            for (int idx = interval(symbols.first(range)); idx < bounds.length
+                    && bounds[idx] <= last; idx++) {
+                found.set(boundClasses[idx]);
+            }
+        }
+        int[] result = new int[found.cardinality()];
+        int size = 0;
+        for (int cls = found.nextSetBit(0); cls >= 0; cls = found.nextSetBit(cls + 1)) {
+            result[size++] = cls;
+        }
+        return result;
+    }
+
+    /**
+     * @return number of classes
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return first symbol of every interval, sorted
+     */
+    public int[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * @return class of every interval
+     */
+    public int[] getBoundClasses() {
+        return boundClasses.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "CharClasses:[classes=" + count + "; intervals=" + bounds.length + "]";
+    }
+
+}
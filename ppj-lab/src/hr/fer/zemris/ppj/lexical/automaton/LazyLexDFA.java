@@ -0,0 +1,412 @@
+package hr.fer.zemris.ppj.lexical.automaton;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deterministic automaton of one lexer state that is built while the input is
+ * analyzed. Generator keeps only the nondeterministic automaton of all rules,
+ * a deterministic state (a set of nondeterministic states) is created the first
+ * time the input reaches it, and a transition is computed the first time it's
+ * taken. After that, a transition is a table lookup, same as in
+ * {@link LexDFA}.
+ *
+ * Created states are kept in a cache with a memory budget. When a new state
+ * doesn't fit in the budget, the whole cache is flushed and states are created
+ * again as they are reached. States the lexer got before a flush aren't valid
+ * after it, but the lexer only keeps the last state it got, which is always
+ * valid.
+ *
+ * Only the states of the set that have symbol transitions or accept are used
+ * to identify a deterministic state, the others don't change how the
+ * automaton behaves. This class isn't thread safe, lexers on other threads use
+ * copies that share the nondeterministic automaton.
+ *
+ * @author fhrenic
+ */
+public class LazyLexDFA implements LexMachine, Serializable {
+
+    private static final long serialVersionUID = 2610826310717553048L;
+
+    /**
+     * Default memory budget of the state cache, in bytes.
+     */
+    public static final int DEFAULT_MEMORY_BUDGET = 1 << 22;
+
+    private static final int UNKNOWN = -2;
+    // rough number of bytes a cached state takes besides it's row and it's set
+    private static final int STATE_OVERHEAD = 64;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private CharClasses classes;
+    private int numClasses;
+    private int memoryBudget;
+
+    // nondeterministic automaton, states are numbered from zero up, transitions
+    // of state s are at indices first[s] to first[s + 1] - 1
+    private int[] startStates;
+    private int[] symbolFirst;
+    private int[] symbolClass;
+    private int[] symbolNext;
+    private int[] epsilonFirst;
+    private int[] epsilonNext;
+    private int[] finalRules;
+
+    // cache, state * numClasses + class -> state
+    private transient int[] transitions;
+    private transient int[] acceptedRules;
+    private transient int[][] sets;
+    private transient Map<StateSet, Integer> ids;
+    private transient int numStates;
+    private transient long usedMemory;
+    private transient int flushes;
+
+    // helpers for computing sets of states
+    private transient int[] marks;
+    private transient int generation;
+    private transient int[] stack;
+    private transient int[] found;
+
+    /**
+     * Creates a new automaton from the given automatons of single rules, with
+     * the default memory budget.
+     *
+     * @param handler has automaton transitions
+     * @param automatons automatons of rules, ordered by priority
+     * @param classes symbol classes, valid for the given automatons
+     */
+    public LazyLexDFA(LexAutomatonHandler handler, List<LexAutomaton> automatons,
+            CharClasses classes) {
+        this(handler, automatons, classes, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Creates a new automaton from the given automatons of single rules.
+     *
+     * @param handler has automaton transitions
+     * @param automatons automatons of rules, ordered by priority
+     * @param classes symbol classes, valid for the given automatons
+     * @param memoryBudget memory budget of the state cache, in bytes
+     */
+    public LazyLexDFA(LexAutomatonHandler handler, List<LexAutomaton> automatons,
+            CharClasses classes, int memoryBudget) {
+        this.classes = classes;
+        this.memoryBudget = memoryBudget;
+        numClasses = classes.count();
+
+        // only states reachable from the rules are kept, they are renumbered
+        BitSet reachable = handler.reachableStates(automatons);
+        int numNfaStates = reachable.cardinality();
+        int[] index = new int[reachable.length()];
+        int[][] stateClasses = new int[reachable.length()][];
+        int next = 0;
+        int numSymbols = 0;
+        int numEpsilons = 0;
+        for (int st = reachable.nextSetBit(0); st >= 0; st = reachable.nextSetBit(st + 1)) {
+            index[st] = next++;
+            SymbolTransition transition = handler.getSymbolTransition(st);
+            stateClasses[st] = transition == null ? new int[0]
+                    : classes.classesOf(transition.getSymbols());
+            numSymbols += stateClasses[st].length;
+            numEpsilons += handler.getEpsilonStates(st).size();
+        }
+
+        symbolFirst = new int[numNfaStates + 1];
+        symbolClass = new int[numSymbols];
+        symbolNext = new int[numSymbols];
+        epsilonFirst = new int[numNfaStates + 1];
+        epsilonNext = new int[numEpsilons];
+        numSymbols = 0;
+        numEpsilons = 0;
+        for (int st = reachable.nextSetBit(0); st >= 0; st = reachable.nextSetBit(st + 1)) {
+            int s = index[st];
+            symbolFirst[s] = numSymbols;
+            for (int cls : stateClasses[st]) {
+                symbolClass[numSymbols] = cls;
+                symbolNext[numSymbols++] = index[handler.getSymbolTransition(st).getNext()];
+            }
+            epsilonFirst[s] = numEpsilons;
+            for (int to : handler.getEpsilonStates(st)) {
+                epsilonNext[numEpsilons++] = index[to];
+            }
+        }
+        symbolFirst[numNfaStates] = numSymbols;
+        epsilonFirst[numNfaStates] = numEpsilons;
+
+        startStates = new int[automatons.size()];
+        finalRules = new int[numNfaStates];
+        Arrays.fill(finalRules, NO_RULE);
+        for (int rule = automatons.size() - 1; rule >= 0; rule--) {
+            LexAutomaton automaton = automatons.get(rule);
+            startStates[rule] = index[automaton.leftState()];
+            if (reachable.get(automaton.rightState())) {
+                finalRules[index[automaton.rightState()]] = rule;
+            }
+        }
+
+        initCache();
+    }
+
+    /**
+     * Creates an automaton that shares the nondeterministic automaton with the
+     * given one, and has it's own empty cache.
+     */
+    private LazyLexDFA(LazyLexDFA other) {
+        classes = other.classes;
+        memoryBudget = other.memoryBudget;
+        numClasses = other.numClasses;
+        startStates = other.startStates;
+        symbolFirst = other.symbolFirst;
+        symbolClass = other.symbolClass;
+        symbolNext = other.symbolNext;
+        epsilonFirst = other.epsilonFirst;
+        epsilonNext = other.epsilonNext;
+        finalRules = other.finalRules;
+        initCache();
+    }
+
+    @Override
+    public int startState() {
+        return 0; // it's the first state after every flush
+    }
+
+    @Override
+    public int next(int state, char symbol) {
+        int cls = classes.classOf(symbol);
+        int next = transitions[state * numClasses + cls];
+        return next != UNKNOWN ? next : computeNext(state, cls);
+    }
+
+    @Override
+    public int acceptedRule(int state) {
+        return acceptedRules[state];
+    }
+
+    @Override
+    public boolean hasStableStates() {
+        return false;
+    }
+
+    @Override
+    public LexMachine copy() {
+        return new LazyLexDFA(this);
+    }
+
+    /**
+     * Computes the transition from the given state via the given symbol class
+     * and remembers it, unless the cache was flushed.
+     *
+     * @param state current state
+     * @param cls symbol class
+     * @return next state
+     */
+    private int computeNext(int state, int cls) {
+        int size = step(sets[state], cls);
+        int next = DEAD;
+        if (size > 0) {
+            StateSet set = new StateSet(Arrays.copyOf(found, size));
+            Integer id = ids.get(set);
+            if (id == null) {
+                if (usedMemory + memoryOf(size) > memoryBudget) {
+                    // current state is forgotten too, so the transition isn't
+                    // remembered
+                    flush();
+                    id = ids.get(set);
+                    return id != null ? id : addState(set);
+                }
+                id = addState(set);
+            }
+            next = id;
+        }
+        transitions[state * numClasses + cls] = next;
+        return next;
+    }
+
+    /**
+     * Finds states reachable from the given set via the given symbol class and
+     * then via epsilon transitions.
+     *
+     * @param set set of states
+     * @param cls symbol class
+     * @return number of found states, they are in <code>found</code>
+     */
+    private int step(int[] set, int cls) {
+        nextGeneration();
+        int top = 0;
+        for (int s : set) {
+            for (int idx = symbolFirst[s]; idx < symbolFirst[s + 1]; idx++) {
+                if (symbolClass[idx] == cls) {
+                    top = push(symbolNext[idx], top);
+                }
+            }
+        }
+        return closure(top);
+    }
+
+    /**
+     * Finds states reachable via epsilon transitions from states on the stack.
+     * Only states that have symbol transitions or accept are kept.
+     *
+     * @param top number of states on the stack
+     * @return number of found states, they are sorted in <code>found</code>
+     */
+    private int closure(int top) {
+        int size = 0;
+        while (top > 0) {
+            int s = stack[--top];
+            if (symbolFirst[s] < symbolFirst[s + 1] || finalRules[s] != NO_RULE) {
+                found[size++] = s;
+            }
+            for (int idx = epsilonFirst[s]; idx < epsilonFirst[s + 1]; idx++) {
+                top = push(epsilonNext[idx], top);
+            }
+        }
+        Arrays.sort(found, 0, size);
+        return size;
+    }
+
+    /**
+     * Pushes the state to the stack if it wasn't pushed in this generation.
+     *
+     * @return new number of states on the stack
+     */
+    private int push(int s, int top) {
+        if (marks[s] != generation) {
+            marks[s] = generation;
+            stack[top++] = s;
+        }
+        return top;
+    }
+
+    private void nextGeneration() {
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            generation = 0;
+        }
+        generation++;
+    }
+
+    /**
+     * Adds a new state to the cache.
+     *
+     * @param set set of states it represents
+     * @return new state
+     */
+    private int addState(StateSet set) {
+        if (numStates == sets.length) {
+            int capacity = sets.length * 2;
+            sets = Arrays.copyOf(sets, capacity);
+            acceptedRules = Arrays.copyOf(acceptedRules, capacity);
+            transitions = Arrays.copyOf(transitions, capacity * numClasses);
+        }
+
+        int row = numStates * numClasses;
+        Arrays.fill(transitions, row, row + numClasses, UNKNOWN);
+        transitions[row] = DEAD; // class of unused symbols
+
+        int rule = NO_RULE;
+        for (int s : set.states) {
+            int finalRule = finalRules[s];
+            if (finalRule != NO_RULE && (rule == NO_RULE || finalRule < rule)) {
+                rule = finalRule;
+            }
+        }
+        acceptedRules[numStates] = rule;
+        sets[numStates] = set.states;
+        ids.put(set, numStates);
+        usedMemory += memoryOf(set.states.length);
+        return numStates++;
+    }
+
+    /**
+     * @return estimated number of bytes a state with a set of the given size
+     *         takes
+     */
+    private long memoryOf(int size) {
+        return STATE_OVERHEAD + 4L * (numClasses + size);
+    }
+
+    /**
+     * Forgets all states, except the starting state.
+     */
+    private void flush() {
+        ids.clear();
+        numStates = 0;
+        usedMemory = 0;
+        flushes++;
+        addStartState();
+    }
+
+    private void addStartState() {
+        nextGeneration();
+        int top = 0;
+        for (int s : startStates) {
+            top = push(s, top);
+        }
+        addState(new StateSet(Arrays.copyOf(found, closure(top))));
+    }
+
+    /**
+     * Creates an empty cache with only the starting state.
+     */
+    private void initCache() {
+        int numNfaStates = finalRules.length;
+        transitions = new int[INITIAL_CAPACITY * numClasses];
+        acceptedRules = new int[INITIAL_CAPACITY];
+        sets = new int[INITIAL_CAPACITY][];
+        ids = new HashMap<>();
+        numStates = 0;
+        usedMemory = 0;
+        flushes = 0;
+        marks = new int[numNfaStates];
+        generation = 0;
+        stack = new int[numNfaStates];
+        found = new int[numNfaStates];
+        addStartState();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        initCache();
+    }
+
+    @Override
+    public String toString() {
+        return "LazyLexDFA:[nfaStates=" + finalRules.length + "; cachedStates=" + numStates
+                + "; classes=" + numClasses + "; flushes=" + flushes + "]";
+    }
+
+    /**
+     * Sorted set of nondeterministic states, used as a key of the cache.
+     */
+    private static class StateSet {
+
+        private int[] states;
+        private int hash;
+
+        StateSet(int[] states) {
+            this.states = states;
+            hash = Arrays.hashCode(states);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof StateSet)) {
+                return false;
+            }
+            return Arrays.equals(states, ((StateSet) obj).states);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
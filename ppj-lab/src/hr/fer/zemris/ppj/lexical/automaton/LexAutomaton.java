@@ -1,20 +1,22 @@
 package hr.fer.zemris.ppj.lexical.automaton;
 
 import java.io.Serializable;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 
-import hr.fer.zemris.ppj.automaton.Automaton;
+import hr.fer.zemris.ppj.automaton.CharAutomaton;
+import hr.fer.zemris.ppj.lexical.regex.SymbolSet;
 
 /**
- * This class represents an epsilon non deterministic finite automaton.
+ * This class represents an epsilon non deterministic finite automaton of a
+ * single rule. It's only a starting and a final state in the handler that
+ * created it, so it never changes and can be shared. Input is consumed by
+ * automatons created with {@link #newAutomaton()}.
  * 
  * @author fhrenic
  */
-public class LexAutomaton implements Serializable, Automaton<Character> {
-
-    // if speed optimization needed:
-    //  - consider optimizing what times is the updateStates() called
+public class LexAutomaton implements Serializable {
 
     private static final long serialVersionUID = -173462860031922118L;
 
@@ -22,95 +24,33 @@ public class LexAutomaton implements Serializable, Automaton<Character> {
      * This object is used for providing and storing transitions. Automatons can
      * use transitions via this object.
      */
-    private static LexAutomatonHandler handler = new LexAutomatonHandler();
-
-    /**
-     * Sets a new handler. This method should be called when you have an
-     * existing handler (generated and read from a file).
-     * 
-     * @param handler new handler
-     */
-    public static void setHandler(LexAutomatonHandler handler) {
-        LexAutomaton.handler = handler;
-    }
-
-    /**
-     * Get the used handler. This method should be called right after all
-     * automatons have been created.
-     * 
-     * @return automaton handler
-     */
-    public static LexAutomatonHandler getHandler() {
-        return handler;
-    }
-
+    private LexAutomatonHandler handler;
     private int leftState;
     private int rightState; // this state is the only final state
-    private Set<Integer> currentStates;
-    private boolean accepts;
 
     /**
      * Creates a new automaton with given left and right state. This should be
      * called only after you have added the transitions to the handler. If it's
      * done the other way around, it may not work properly.
      * 
+     * @param handler handler that has the transitions
      * @param leftState starting state
      * @param rightState final state
      */
-    protected LexAutomaton(int leftState, int rightState) {
+    protected LexAutomaton(LexAutomatonHandler handler, int leftState, int rightState) {
+        this.handler = handler;
         this.leftState = leftState;
         this.rightState = rightState;
-        currentStates = new TreeSet<Integer>();
-        currentStates.add(leftState);
-        updateCurrentStates();
-    }
-
-    /**
-     * Returns <code>true</code> if automaton is in acceptable state.
-     * 
-     * @return <code>true</code> if automaton accepts a string
-     */
-    @Override
-    public boolean accepts() {
-        return accepts;
-    }
-
-    /**
-     * Automaton is dead if the current state set is empty
-     * 
-     * @return <code>true</code> if automaton is dead
-     */
-    @Override
-    public boolean isDead() {
-        return currentStates.isEmpty();
-    }
-
-    /**
-     * Puts the automaton in the starting position.
-     */
-    @Override
-    public void reset() {
-        currentStates = new TreeSet<>();
-        currentStates.add(leftState);
-        updateCurrentStates();
     }
 
     /**
-     * Applies transitions based on the given symbol.
+     * Creates an automaton that consumes input, it's in the starting position.
+     * Every call creates a new one, so they can be used independently.
      * 
-     * @param symbol transition symbol
+     * @return new automaton
      */
-    @Override
-    public void consume(Character symbol) {
-        Set<Integer> states = new TreeSet<>();
-        for (Integer state : currentStates) {
-            Integer transitionState = handler.getNormalStates(state).get(symbol);
-            if (transitionState != null) {
-                states.add(transitionState);
-            }
-        }
-        currentStates = states;
-        updateCurrentStates();
+    public CharAutomaton newAutomaton() {
+        return new Simulation();
     }
 
     /**
@@ -128,32 +68,133 @@ public class LexAutomaton implements Serializable, Automaton<Character> {
     }
 
     /**
-     * @return the currentStates
+     * Simulates the automaton with arrays. States reachable from the starting
+     * state are numbered from zero up when it's created, so consuming a
+     * symbol doesn't create any objects.
      */
-    protected Set<Integer> getCurrentStates() {
-        return currentStates;
-    }
+    private class Simulation implements CharAutomaton {
+
+        private static final long serialVersionUID = 1917453427312086498L;
+
+        private int start;
+        private int end;
+        // state -> transition via symbols, null if it has none
+        private SymbolSet[] symbols;
+        private int[] symbolNext;
+        // epsilon transitions of state s are at indices first[s] to
+        // first[s + 1] - 1
+        private int[] epsilonFirst;
+        private int[] epsilonNext;
+
+        private int[] current;
+        private int size;
+        private int[] stack;
+        private int[] marks;
+        private int generation;
+        private boolean accepts;
+
+        Simulation() {
+            BitSet reachable = handler.reachableStates(Collections.singletonList(
+                    LexAutomaton.this));
+            int numStates = reachable.cardinality();
+            int[] index = new int[reachable.length()];
+            int numEpsilons = 0;
+            int next = 0;
+            for (int st = reachable.nextSetBit(0); st >= 0; st = reachable.nextSetBit(st + 1)) {
+                index[st] = next++;
+                numEpsilons += handler.getEpsilonStates(st).size();
+            }
 
-    /**
-     * Updates the current states to the epilon environment of those states.
-     */
-    private void updateCurrentStates() {
-        // epsilon environment
-        accepts = false;
-        Set<Integer> states;
-        do {
-            states = new TreeSet<>();
-            for (Integer state : currentStates) {
-                if (state == rightState) {
-                    accepts = true;
+            symbols = new SymbolSet[numStates];
+            symbolNext = new int[numStates];
+            epsilonFirst = new int[numStates + 1];
+            epsilonNext = new int[numEpsilons];
+            numEpsilons = 0;
+            for (int st = reachable.nextSetBit(0); st >= 0; st = reachable.nextSetBit(st + 1)) {
+                int s = index[st];
+                SymbolTransition transition = handler.getSymbolTransition(st);
+                if (transition != null) {
+                    symbols[s] = transition.getSymbols();
+                    symbolNext[s] = index[transition.getNext()];
+                }
+                epsilonFirst[s] = numEpsilons;
+                for (int to : handler.getEpsilonStates(st)) {
+                    epsilonNext[numEpsilons++] = index[to];
+                }
+            }
+            epsilonFirst[numStates] = numEpsilons;
+            start = index[leftState];
+            end = reachable.get(rightState) ? index[rightState] : -1;
+
+            current = new int[numStates];
+            stack = new int[numStates];
+            marks = new int[numStates];
+            reset();
+        }
+
+        @Override
+        public boolean accepts() {
+            return accepts;
+        }
+
+        @Override
+        public boolean isDead() {
+            return size == 0;
+        }
+
+        @Override
+        public void reset() {
+            nextGeneration();
+            stack[0] = start;
+            marks[start] = generation;
+            closure(1);
+        }
+
+        @Override
+        public void consume(char symbol) {
+            nextGeneration();
+            int top = 0;
+            for (int idx = 0; idx < size; idx++) {
+                int s = current[idx];
+                if (symbols[s] != null && symbols[s].contains(symbol)) {
+                    top = push(symbolNext[s], top);
                 }
-                states.addAll(handler.getEpsilonStates(state));
             }
-        } while (currentStates.addAll(states));
+            closure(top);
+        }
 
-        if (!accepts && currentStates.contains(rightState)) {
-            accepts = true;
+        /**
+         * Current states become the states reachable via epsilon transitions
+         * from states on the stack.
+         */
+        private void closure(int top) {
+            size = 0;
+            accepts = false;
+            while (top > 0) {
+                int s = stack[--top];
+                current[size++] = s;
+                accepts |= s == end;
+                for (int idx = epsilonFirst[s]; idx < epsilonFirst[s + 1]; idx++) {
+                    top = push(epsilonNext[idx], top);
+                }
+            }
+        }
+
+        private int push(int s, int top) {
+            if (marks[s] != generation) {
+                marks[s] = generation;
+                stack[top++] = s;
+            }
+            return top;
+        }
+
+        private void nextGeneration() {
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 0;
+            }
+            generation++;
         }
     }
 
-}
\ No newline at end of file
+}
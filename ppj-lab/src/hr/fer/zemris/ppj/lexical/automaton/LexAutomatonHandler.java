@@ -1,13 +1,23 @@
 package hr.fer.zemris.ppj.lexical.automaton;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.Stack;
 import java.util.TreeSet;
 
-import hr.fer.zemris.ppj.automaton.AutomatonUtility;
-import hr.fer.zemris.ppj.util.Util;
+import hr.fer.zemris.ppj.automaton.DFA;
+import hr.fer.zemris.ppj.lexical.regex.NFABuilder;
+import hr.fer.zemris.ppj.lexical.regex.Regex;
+import hr.fer.zemris.ppj.lexical.regex.RegexParser;
+import hr.fer.zemris.ppj.lexical.regex.SymbolSet;
 
 /**
  * This class is used primarily to store transitions for all automates. It
@@ -15,23 +25,26 @@ import hr.fer.zemris.ppj.util.Util;
  * graph). That way we don't get duplicate edges or nodes.
  * 
  * The only methods this class provides are used for creating automatons from
- * regexes and adding choices to automatons.
+ * regexes and adding choices to automatons. Regexes are parsed into trees (see
+ * {@link RegexParser}), a state has at most one transition via symbols and
+ * it's via a whole set of them, so a class like <code>[a-z]</code> is a single
+ * transition.
  * 
  * @author fhrenic
  */
 public class LexAutomatonHandler implements Serializable {
 
     private static final long serialVersionUID = -3143699593378714639L;
-    private static final char EPS = '$';
 
     // main automaton representation, all automatons are in these maps
     private int state;
-    // state -> ( symbol -> set of states )
-    private HashMap<Integer, HashMap<Character, Integer>> transitions;
+    // state -> transition via symbols
+    private HashMap<Integer, SymbolTransition> transitions;
     // state -> set of states
     private HashMap<Integer, Set<Integer>> epsilonTransitions;
-    // regular definition -> regex
-    private HashMap<String, String> regularDefinitions;
+    // regular definition -> parsed regex, only needed by the generator
+    private transient HashMap<String, Regex> regularDefinitions;
+    private transient boolean extendedSyntax;
 
     /**
      * Creates a new, empty automaton handler.
@@ -52,15 +65,26 @@ public class LexAutomatonHandler implements Serializable {
         return state++;
     }
 
+    /**
+     * Sets the syntax of regular expressions that are added after this, see
+     * {@link RegexParser}. Basic syntax is used by default.
+     * 
+     * @param extendedSyntax if <code>true</code> the extended syntax is used
+     */
+    public void setExtendedSyntax(boolean extendedSyntax) {
+        this.extendedSyntax = extendedSyntax;
+    }
+
     /**
      * Adds a regular definition to the handler so it can insert it into a
-     * regex.
+     * regex. Definition is parsed once, regexes that use it share it's tree.
      * 
      * @param regDefName it's name
      * @param regex regex it represents
      */
     public void addRegularDefinition(String regDefName, String regex) {
-        regularDefinitions.put(regDefName, prepareRegex(regex));
+        Regex tree = parser().parse(regex);
+        regularDefinitions.put(regDefName, tree);
     }
 
     /**
@@ -69,113 +93,231 @@ public class LexAutomatonHandler implements Serializable {
      * @param regex regular expression used to create an automaton
      */
     public LexAutomaton fromString(String regex) {
-        return transform(prepareRegex(regex));
+        Regex tree = parser().parse(regex);
+        int leftState = getNewState();
+        int rightState = getNewState();
+        tree.build(new NFABuilder() {
+
+            @Override
+            public int newState() {
+                return getNewState();
+            }
+
+            @Override
+            public void addEpsilonTransition(int from, int to) {
+                LexAutomatonHandler.this.addEpsilonTransition(from, to);
+            }
+
+            @Override
+            public void addTransition(int from, int to, SymbolSet symbols) {
+                LexAutomatonHandler.this.addTransition(from, to, symbols);
+            }
+        }, leftState, rightState);
+        return new LexAutomaton(this, leftState, rightState);
     }
 
     /**
-     * Removes regular definitions from regex, swaps them with real regular
-     * expressions.
+     * Returns the only string the given regex matches, if it's a plain
+     * sequence of symbols.
      * 
      * @param regex regular expression
-     * @return adjusted regular expression
+     * @return matched string, <code>null</code> if the regex matches more
+     *         strings
      */
-    private String prepareRegex(String regex) {
-        StringBuilder sb = new StringBuilder();
-        int len = regex.length();
-        for (int idx = 0; idx < len; idx++) {
-            if (regex.charAt(idx) == '{' && AutomatonUtility.isOperator(regex, idx)) {
-                int cidx = AutomatonUtility.findCloser(regex, '{', '}', idx);
-                String regdef = regex.substring(idx + 1, cidx);
-                String reg = regularDefinitions.get(regdef);
-                sb.append('(');
-                sb.append(reg);
-                sb.append(')');
-                idx = cidx;
-            } else {
-                sb.append(regex.charAt(idx));
-            }
+    public String literal(String regex) {
+        return parser().parse(regex).literal();
+    }
+
+    private RegexParser parser() {
+        if (regularDefinitions == null) { // handler was read from a file
+            regularDefinitions = new HashMap<>();
         }
-        return sb.toString();
+        return new RegexParser(regularDefinitions, extendedSyntax);
     }
 
     /**
-     * Transforms the given regular expression into an {@link Automaton}
-     * 
-     * @param regex regular expression
-     * @return automaton
+     * Creates one deterministic automaton that recognizes what all of the given
+     * automatons recognize (subset construction). Automatons are ordered by
+     * priority, so if more of them accept in the same state, that state is
+     * labeled with the index of the first one. Transitions are via symbol
+     * classes.
+     *
+     * @param automatons automatons ordered by priority
+     * @param labels map that is filled with labels of acceptable states
+     * @param classes symbol classes, valid for the given automatons
+     * @return deterministic automaton, states are numbered from zero up
      */
-    private LexAutomaton transform(String regex) {
-        // System.out.println("REGEX -> " + regex);
-        List<String> choices = AutomatonUtility.splitChoices(regex);
-        int leftState = getNewState();
-        int rightState = getNewState();
+    public DFA<Integer, Integer> createDFA(List<LexAutomaton> automatons,
+            Map<Integer, Integer> labels, CharClasses classes) {
+        return createDFA(automatons, labels, classes, Integer.MAX_VALUE);
+    }
 
-        if (choices.size() > 1) {
-            for (String choice : choices) {
-                LexAutomaton tmp = transform(choice);
-                addEpsilonTransition(leftState, tmp.leftState());
-                addEpsilonTransition(tmp.rightState(), rightState);
-            }
-        } else {
-
-            boolean prefixed = false;
-            int len = regex.length();
-            int lastState = leftState;
-
-            for (int idx = 0; idx < len; idx++) {
-                int state1, state2;
-                char symbol = regex.charAt(idx);
-                if (prefixed) {
-                    prefixed = false;
-                    char escape = Util.unescape(symbol);
-                    state1 = getNewState();
-                    state2 = getNewState();
-                    addTransition(state1, state2, escape);
-                } else {
-                    if (symbol == '\\') {
-                        prefixed = true;
-                        continue;
+    /**
+     * Creates one deterministic automaton that recognizes what all of the given
+     * automatons recognize, unless it has more than the given number of states.
+     *
+     * @param automatons automatons ordered by priority
+     * @param labels map that is filled with labels of acceptable states
+     * @param classes symbol classes, valid for the given automatons
+     * @param maxStates maximum number of states
+     * @return deterministic automaton, <code>null</code> if it would have more
+     *         than <code>maxStates</code> states
+     * @see #createDFA(List, Map, CharClasses)
+     */
+    public DFA<Integer, Integer> createDFA(List<LexAutomaton> automatons,
+            Map<Integer, Integer> labels, CharClasses classes, int maxStates) {
+        // final state -> index of the automaton
+        Map<Integer, Integer> finalStates = new HashMap<>();
+        BitSet startStates = new BitSet(state);
+        for (int idx = automatons.size() - 1; idx >= 0; idx--) {
+            LexAutomaton automaton = automatons.get(idx);
+            finalStates.put(automaton.rightState(), idx);
+            startStates.set(automaton.leftState());
+        }
+
+        int dfaState = 0;
+        Set<Integer> acceptableStates = new LinkedHashSet<>();
+        Map<Integer, Map<Integer, Integer>> dfaTransitions = new HashMap<>();
+        // state -> classes of it's transition
+        Map<Integer, int[]> stateClasses = new HashMap<>();
+
+        // helper : set of states -> alias state
+        Map<BitSet, Integer> aliases = new HashMap<>();
+        Queue<BitSet> queue = new LinkedList<>();
+
+        BitSet states = epsilonClosure(startStates);
+        aliases.put(states, dfaState++);
+        queue.add(states);
+
+        while (!queue.isEmpty()) {
+            states = queue.poll();
+            int alias = aliases.get(states);
+
+            int rule = Integer.MAX_VALUE;
+            Map<Integer, BitSet> next = new HashMap<>();
+            for (int st = states.nextSetBit(0); st >= 0; st = states.nextSetBit(st + 1)) {
+                Integer finalOf = finalStates.get(st);
+                if (finalOf != null) {
+                    rule = Math.min(rule, finalOf);
+                }
+                SymbolTransition transition = transitions.get(st);
+                if (transition == null) {
+                    continue;
+                }
+                int[] transitionClasses = stateClasses.get(st);
+                if (transitionClasses == null) {
+                    transitionClasses = classes.classesOf(transition.getSymbols());
+                    stateClasses.put(st, transitionClasses);
+                }
+                for (int cls : transitionClasses) {
+                    BitSet to = next.get(cls);
+                    if (to == null) {
+                        to = new BitSet(state);
+                        next.put(cls, to);
                     }
-                    if (symbol == '(') {
-                        // (regex) or {regDef}
-                        int closing = AutomatonUtility.findCloser(regex, '(', ')', idx);
-                        String subs = regex.substring(idx + 1, closing);
-                        LexAutomaton tmp = transform(subs);
-                        state1 = tmp.leftState();
-                        state2 = tmp.rightState();
-                        idx = closing;
-                    } else {
-                        state1 = getNewState();
-                        state2 = getNewState();
-                        if (symbol == EPS) {
-                            addEpsilonTransition(state1, state2);
-                        } else {
-                            addTransition(state1, state2, symbol);
-                        }
+                    to.set(transition.getNext());
+                }
+            }
+            if (rule != Integer.MAX_VALUE) {
+                acceptableStates.add(alias);
+                labels.put(alias, rule);
+            }
+
+            Map<Integer, Integer> transitions4State = new HashMap<>();
+            for (Map.Entry<Integer, BitSet> e : next.entrySet()) {
+                BitSet transitionStates = epsilonClosure(e.getValue());
+                Integer transAlias = aliases.get(transitionStates);
+                if (transAlias == null) {
+                    if (dfaState >= maxStates) {
+                        return null;
                     }
+                    transAlias = dfaState++;
+                    aliases.put(transitionStates, transAlias);
+                    queue.add(transitionStates);
                 }
+                transitions4State.put(e.getKey(), transAlias);
+            }
+            dfaTransitions.put(alias, transitions4State);
+        }
+
+        return new DFA<>(0, acceptableStates, dfaTransitions);
+    }
 
-                // KLEENE
-                if (idx + 1 < len && regex.charAt(idx + 1) == '*') {
-                    int stateTmp1 = state1;
-                    int stateTmp2 = state2;
-                    state1 = getNewState();
-                    state2 = getNewState();
-                    addEpsilonTransition(state1, stateTmp1);
-                    addEpsilonTransition(state1, state2);
-                    addEpsilonTransition(stateTmp2, stateTmp1);
-                    addEpsilonTransition(stateTmp2, state2);
-                    idx++;
+    /**
+     * Returns all states that can be reached from starting states of the given
+     * automatons.
+     *
+     * @param automatons automatons
+     * @return reachable states
+     */
+    public BitSet reachableStates(List<LexAutomaton> automatons) {
+        BitSet reachable = new BitSet(state);
+        Stack<Integer> stack = new Stack<>();
+        for (LexAutomaton automaton : automatons) {
+            reachable.set(automaton.leftState());
+            stack.push(automaton.leftState());
+        }
+        while (!stack.isEmpty()) {
+            int st = stack.pop();
+            Set<Integer> next = new TreeSet<>(getEpsilonStates(st));
+            SymbolTransition transition = getSymbolTransition(st);
+            if (transition != null) {
+                next.add(transition.getNext());
+            }
+            for (Integer to : next) {
+                if (!reachable.get(to)) {
+                    reachable.set(to);
+                    stack.push(to);
                 }
+            }
+        }
+        return reachable;
+    }
 
-                // CONNECT TO AUTOMATON
-                addEpsilonTransition(lastState, state1);
-                lastState = state2;
+    /**
+     * Returns symbol transitions of all states that can be reached from
+     * starting states of the given automatons.
+     *
+     * @param automatons automatons
+     * @return transitions of reachable states
+     */
+    public List<SymbolTransition> symbolTransitions(List<LexAutomaton> automatons) {
+        List<SymbolTransition> symbolTransitions = new ArrayList<>();
+        BitSet reachable = reachableStates(automatons);
+        for (int st = reachable.nextSetBit(0); st >= 0; st = reachable.nextSetBit(st + 1)) {
+            SymbolTransition transition = transitions.get(st);
+            if (transition != null) {
+                symbolTransitions.add(transition);
             }
-            // CONNECT TO LAST STATE
-            addEpsilonTransition(lastState, rightState);
         }
-        return new LexAutomaton(leftState, rightState);
+        return symbolTransitions;
+    }
+
+    /**
+     * Extends the given set of states with all states that are accessible via
+     * epsilon transitions.
+     *
+     * @param states set of states, it is modified
+     * @return the same set of states
+     */
+    private BitSet epsilonClosure(BitSet states) {
+        Stack<Integer> stack = new Stack<>();
+        for (int st = states.nextSetBit(0); st >= 0; st = states.nextSetBit(st + 1)) {
+            stack.push(st);
+        }
+        while (!stack.isEmpty()) {
+            Set<Integer> epsilonStates = epsilonTransitions.get(stack.pop());
+            if (epsilonStates == null) {
+                continue;
+            }
+            for (Integer st : epsilonStates) {
+                if (!states.get(st)) {
+                    states.set(st);
+                    stack.push(st);
+                }
+            }
+        }
+        return states;
     }
 
     // ############################################################################
@@ -209,33 +351,31 @@ public class LexAutomatonHandler implements Serializable {
     }
 
     /**
-     * Adds a transition via given symbol from one state (left) to another
-     * (right).
+     * Adds a transition via given symbols from one state (left) to another
+     * (right). State can have only one such transition.
      * 
      * @param leftState left state
      * @param rightState right state
-     * @param symbol transition symbol
+     * @param symbols transition symbols
+     * @throws IllegalStateException if the left state already has a
+     *             transition via symbols
      */
-    protected void addTransition(int leftState, int rightState, char symbol) {
-        HashMap<Character, Integer> transition = getNormalStates(leftState);
-        transition.put(symbol, rightState);
-        transitions.put(leftState, transition);
+    protected void addTransition(int leftState, int rightState, SymbolSet symbols) {
+        if (transitions.containsKey(leftState)) {
+            throw new IllegalStateException("State " + leftState
+                    + " already has a transition via symbols");
+        }
+        transitions.put(leftState, new SymbolTransition(symbols, rightState));
     }
 
     /**
-     * This is a helper method. If there are some states that are accessible via
-     * symbol transitions from a given state, then they are returned. Otherwise,
-     * an empty set is returned.
+     * Returns the transition via symbols of the given state.
      * 
      * @param state state of interest
-     * @return states that are accessible via symbol transitions
+     * @return transition via symbols, <code>null</code> if the state has none
      */
-    protected HashMap<Character, Integer> getNormalStates(int state) {
-        HashMap<Character, Integer> transition = transitions.get(state);
-        if (transition == null) {
-            transition = new HashMap<>();
-        }
-        return transition;
+    protected SymbolTransition getSymbolTransition(int state) {
+        return transitions.get(state);
     }
 
-}
\ No newline at end of file
+}
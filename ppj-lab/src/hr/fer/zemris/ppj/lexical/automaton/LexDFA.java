@@ -0,0 +1,139 @@
+package hr.fer.zemris.ppj.lexical.automaton;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import hr.fer.zemris.ppj.automaton.DFA;
+import hr.fer.zemris.ppj.automaton.IntDFA;
+
+/**
+ * This class represents a deterministic automaton that recognizes all rules of
+ * one lexer state at once, built completely by the generator. Lexer needs only
+ * one transition per consumed symbol, no matter how many rules there are.
+ *
+ * Transitions are kept in an {@link IntDFA} with a column for every symbol
+ * class (see {@link CharClasses}), so a transition is two array lookups.
+ *
+ * @author fhrenic
+ */
+public class LexDFA implements LexMachine, Serializable {
+
+    private static final long serialVersionUID = 4325719370985426630L;
+
+    private IntDFA dfa;
+    private CharClasses classes;
+    private int[] acceptedRules;
+
+    /**
+     * Creates a new automaton from the given dfa. States of the dfa have to be
+     * numbered from zero up, it's transitions are via symbol classes.
+     *
+     * @param dfa underlying dfa
+     * @param labels acceptable state => index of the accepted rule
+     * @param classes symbol classes of the dfa
+     */
+    public LexDFA(DFA<Integer, Integer> dfa, Map<Integer, Integer> labels,
+            CharClasses classes) {
+        this(IntDFA.of(dfa, classes.count()), labels, classes);
+    }
+
+    /**
+     * Creates a new automaton from the given dfa, it's symbols are symbol
+     * classes.
+     *
+     * @param dfa underlying dfa
+     * @param labels acceptable state => index of the accepted rule
+     * @param classes symbol classes of the dfa
+     */
+    public LexDFA(IntDFA dfa, Map<Integer, Integer> labels, CharClasses classes) {
+        this.dfa = dfa;
+        this.classes = classes;
+        acceptedRules = new int[dfa.numberOfStates()];
+        for (int state = 0; state < acceptedRules.length; state++) {
+            Integer rule = labels.get(state);
+            acceptedRules[state] = rule == null ? NO_RULE : rule;
+        }
+    }
+
+    /**
+     * Creates a new automaton from the given dfa, it's symbols are symbol
+     * classes.
+     *
+     * @param dfa underlying dfa
+     * @param acceptedRules state -> index of the accepted rule,
+     *            {@link #NO_RULE} if the state isn't acceptable
+     * @param classes symbol classes of the dfa
+     */
+    public LexDFA(IntDFA dfa, int[] acceptedRules, CharClasses classes) {
+        if (acceptedRules.length != dfa.numberOfStates()) {
+            throw new IllegalArgumentException("Automaton has " + dfa.numberOfStates()
+                    + " states, " + acceptedRules.length + " accepted rules given");
+        }
+        this.dfa = dfa;
+        this.classes = classes;
+        this.acceptedRules = acceptedRules;
+    }
+
+    @Override
+    public int startState() {
+        return dfa.startState();
+    }
+
+    @Override
+    public int next(int state, char symbol) {
+        return dfa.next(state, classes.classOf(symbol));
+    }
+
+    @Override
+    public int acceptedRule(int state) {
+        return acceptedRules[state];
+    }
+
+    @Override
+    public boolean hasStableStates() {
+        return true;
+    }
+
+    @Override
+    public LexMachine copy() {
+        return this; // never changes
+    }
+
+    /**
+     * Returns the next state via a symbol class.
+     *
+     * @param state current state
+     * @param cls symbol class
+     * @return next state, {@link #DEAD} if there is none
+     */
+    public int transition(int state, int cls) {
+        return dfa.next(state, cls);
+    }
+
+    /**
+     * @return symbol classes of the automaton
+     */
+    public CharClasses getClasses() {
+        return classes;
+    }
+
+    /**
+     * @return number of states
+     */
+    public int numberOfStates() {
+        return acceptedRules.length;
+    }
+
+    /**
+     * @return underlying dfa
+     */
+    public IntDFA getDFA() {
+        return dfa;
+    }
+
+    @Override
+    public String toString() {
+        return "LexDFA:[" + dfa + "]";
+    }
+
+}
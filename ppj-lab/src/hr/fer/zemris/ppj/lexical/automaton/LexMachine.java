@@ -0,0 +1,69 @@
+package hr.fer.zemris.ppj.lexical.automaton;
+
+/**
+ * Deterministic automaton that recognizes all rules of one lexer state at
+ * once. States are integers, the lexer keeps the current state. Every
+ * acceptable state is labeled with the index of the rule that has the highest
+ * priority among the rules that accept in that state.
+ * 
+ * Only the starting state and the last state returned by
+ * {@link #next(int, char)} have to be valid, so a machine doesn't have to keep
+ * all of it's states. A machine is used by one lexer at a time, other lexers
+ * use copies (see {@link #copy()}).
+ * 
+ * @author fhrenic
+ */
+public interface LexMachine {
+
+    /**
+     * State the automaton ends up in if there is no transition.
+     */
+    public static final int DEAD = -1;
+
+    /**
+     * Label of states in which no rule accepts.
+     */
+    public static final int NO_RULE = -1;
+
+    /**
+     * @return the starting state
+     */
+    public int startState();
+
+    /**
+     * Returns the state the automaton goes to from the given state via given
+     * symbol.
+     * 
+     * @param state current state
+     * @param symbol transition symbol
+     * @return next state, {@link #DEAD} if there is no transition
+     */
+    public int next(int state, char symbol);
+
+    /**
+     * Returns the index of the rule that is accepted in the given state.
+     * 
+     * @param state state of interest
+     * @return rule index, {@link #NO_RULE} if state isn't acceptable
+     */
+    public int acceptedRule(int state);
+
+    /**
+     * Tells if the machine keeps all of it's states, so a state number always
+     * means the same state and the lexer can remember states.
+     * 
+     * @return <code>true</code> if all states are always valid
+     */
+    public boolean hasStableStates();
+
+    /**
+     * Returns a machine that recognizes the same rules and can be used by
+     * another lexer while this one is used. Parts that don't change while
+     * analyzing are shared, so machines that don't change at all return
+     * themselves.
+     * 
+     * @return machine for another lexer
+     */
+    public LexMachine copy();
+
+}
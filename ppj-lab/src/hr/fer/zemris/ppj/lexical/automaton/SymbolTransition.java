@@ -0,0 +1,48 @@
+package hr.fer.zemris.ppj.lexical.automaton;
+
+import java.io.Serializable;
+
+import hr.fer.zemris.ppj.lexical.regex.SymbolSet;
+
+/**
+ * Transition of a nondeterministic state via symbols. A state has at most one
+ * of them, all it's symbols go to the same state.
+ * 
+ * @author fhrenic
+ */
+public class SymbolTransition implements Serializable {
+
+    private static final long serialVersionUID = -4471629436418730519L;
+
+    private SymbolSet symbols;
+    private int next;
+
+    /**
+     * @param symbols symbols of the transition
+     * @param next state the symbols go to
+     */
+    public SymbolTransition(SymbolSet symbols, int next) {
+        this.symbols = symbols;
+        this.next = next;
+    }
+
+    /**
+     * @return symbols of the transition
+     */
+    public SymbolSet getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * @return state the symbols go to
+     */
+    public int getNext() {
+        return next;
+    }
+
+    @Override
+    public String toString() {
+        return symbols + " -> " + next;
+    }
+
+}
@@ -0,0 +1,578 @@
+package hr.fer.zemris.ppj.lexical.codegen;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import hr.fer.zemris.ppj.lexical.KeywordTable;
+import hr.fer.zemris.ppj.lexical.LexRule;
+import hr.fer.zemris.ppj.lexical.actions.ChangeStateAction;
+import hr.fer.zemris.ppj.lexical.actions.GoBackAction;
+import hr.fer.zemris.ppj.lexical.actions.LexAction;
+import hr.fer.zemris.ppj.lexical.actions.NewLineAction;
+import hr.fer.zemris.ppj.lexical.actions.SkipAction;
+import hr.fer.zemris.ppj.lexical.automaton.CharClasses;
+import hr.fer.zemris.ppj.lexical.automaton.LexDFA;
+import hr.fer.zemris.ppj.lexical.automaton.LexMachine;
+import hr.fer.zemris.ppj.lexical.output.TextTokenSink;
+
+/**
+ * Writes the source of a Java class that is a lexical analyzer for one
+ * language, it doesn't need anything else to run. Automatons of all states
+ * are joined into one transition table, with a row for every automaton state
+ * and a column for every symbol class. Actions of rules are written as a
+ * switch over rules, so nothing is interpreted while analyzing. Keywords that
+ * a general rule accepts (see {@link KeywordTable}) are written as the same
+ * perfect hash tables and looked up once per token. Generated
+ * analyzer reads the standard input, or a file given as an argument, and
+ * writes tokens in the same text format as the lexical analyzer (see
+ * {@link TextTokenSink}).
+ *
+ * Tables are written as run length encoded strings and unpacked into
+ * <code>char[]</code> arrays when the class is loaded. A static initializer
+ * that fills an array element by element would be over the size limit of a
+ * method even for small languages.
+ *
+ * @author fhrenic
+ */
+public class JavaLexerWriter {
+
+    // a string constant can have at most 65535 bytes, a symbol takes at most
+    // three
+    private static final int MAX_STRING_LENGTH = 1 << 14;
+    private static final int ALPHABET_SIZE = Character.MAX_VALUE + 1;
+
+    private String className;
+    private List<String> stateNames;
+    private Map<String, Integer> stateIndices;
+    private String startState;
+    private HashMap<String, List<LexRule>> states;
+    private List<LexDFA> dfas;
+    private CharClasses classes;
+
+    // lex class -> index in the generated table of names
+    private Map<String, Integer> lexClasses;
+    private boolean hasKeywords;
+
+    private StringBuilder sb;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param className name of the generated class
+     * @param startState starting state
+     * @param stateNames names of states, in the order they were defined
+     * @param states mapping from state to list of rules
+     * @param automatons mapping from state to automaton of all it's rules
+     * @throws IllegalArgumentException if an automaton isn't built completely
+     *             or the automatons are too big
+     */
+    public JavaLexerWriter(String className, String startState, List<String> stateNames,
+            HashMap<String, List<LexRule>> states, HashMap<String, LexMachine> automatons) {
+        this.className = className;
+        this.startState = startState;
+        this.states = states;
+        this.stateNames = new ArrayList<>();
+        stateIndices = new HashMap<>();
+        dfas = new ArrayList<>();
+
+        int numStates = 0;
+        for (String state : stateNames) {
+            if (!states.containsKey(state)) {
+                continue; // state without rules
+            }
+            LexMachine automaton = automatons.get(state);
+            if (!(automaton instanceof LexDFA)) {
+                throw new IllegalArgumentException("Automaton of state " + state
+                        + " isn't built by the generator");
+            }
+            LexDFA dfa = (LexDFA) automaton;
+            if (classes == null) {
+                classes = dfa.getClasses();
+            } else if (classes != dfa.getClasses()) {
+                throw new IllegalArgumentException("Automatons don't share symbol classes");
+            }
+            stateIndices.put(state, this.stateNames.size());
+            this.stateNames.add(state);
+            dfas.add(dfa);
+            numStates += dfa.numberOfStates();
+        }
+        if (!stateIndices.containsKey(startState)) {
+            throw new IllegalArgumentException("Starting state " + startState + " has no rules");
+        }
+        // states are written as state + 1 into a char, zero is the dead state
+        if (numStates >= Character.MAX_VALUE) {
+            throw new IllegalArgumentException("Automatons have " + numStates
+                    + " states, a generated lexer can have at most " + (Character.MAX_VALUE - 1));
+        }
+    }
+
+    /**
+     * Writes the source of the class to the given stream, as UTF-8.
+     *
+     * @param output output stream
+     * @throws IOException if writing fails
+     */
+    public void write(OutputStream output) throws IOException {
+        output.write(toString().getBytes(StandardCharsets.UTF_8));
+        output.flush();
+    }
+
+    @Override
+    public String toString() {
+        sb = new StringBuilder();
+        writeHeader();
+        writeTables();
+        writeAnalyzer();
+        writeActions();
+        writeHelpers();
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private void writeHeader() {
+        line("import java.io.IOException;");
+        line("import java.io.InputStream;");
+        line("import java.io.InputStreamReader;");
+        line("import java.io.OutputStream;");
+        line("import java.io.Reader;");
+        line("import java.nio.charset.StandardCharsets;");
+        line("import java.nio.file.Files;");
+        line("import java.nio.file.Paths;");
+        line("import java.util.Arrays;");
+        line("");
+        line("/**");
+        line(" * Lexical analyzer generated by GLA, don't edit. It reads the standard input,");
+        line(" * or the file given as an argument, and writes tokens to the standard output.");
+        line(" */");
+        line("public class " + className + " {");
+        line("");
+        line("    public static void main(String[] args) throws IOException {");
+        line("        InputStream input = args.length > 0 ? Files.newInputStream(Paths.get(args[0]))");
+        line("                : System.in;");
+        line("        new " + className + "(read(input), System.out).analyze();");
+        line("    }");
+        line("");
+    }
+
+    private void writeTables() {
+        int numClasses = classes.count();
+        int numStates = 0;
+        int[] offsets = new int[dfas.size()];
+        for (int idx = 0; idx < dfas.size(); idx++) {
+            offsets[idx] = numStates;
+            numStates += dfas.get(idx).numberOfStates();
+        }
+
+        char[] symbolClasses = new char[ALPHABET_SIZE];
+        for (int symbol = 0; symbol < ALPHABET_SIZE; symbol++) {
+            symbolClasses[symbol] = (char) classes.classOf((char) symbol);
+        }
+        char[] transitions = new char[numStates * numClasses];
+        char[] accepts = new char[numStates];
+        // rules of all states are numbered in order
+        int numRules = 0;
+        for (int idx = 0; idx < dfas.size(); idx++) {
+            LexDFA dfa = dfas.get(idx);
+            for (int state = 0; state < dfa.numberOfStates(); state++) {
+                int row = (offsets[idx] + state) * numClasses;
+                for (int cls = 0; cls < numClasses; cls++) {
+                    int next = dfa.transition(state, cls);
+                    transitions[row + cls] = (char) (next == LexMachine.DEAD ? 0 : offsets[idx]
+                            + next + 1);
+                }
+                int rule = dfa.acceptedRule(state);
+                accepts[offsets[idx] + state] = (char) (rule == LexMachine.NO_RULE ? 0
+                        : numRules + rule + 1);
+            }
+            numRules += states.get(stateNames.get(idx)).size();
+        }
+
+        line("    private static final int START_STATE = " + stateIndices.get(startState) + ";");
+        line("    private static final int CLASSES = " + numClasses + ";");
+        line("");
+        line("    // state -> starting state of it's automaton");
+        sb.append("    private static final int[] STARTS = {");
+        for (int idx = 0; idx < dfas.size(); idx++) {
+            sb.append(idx > 0 ? ", " : " ").append(offsets[idx] + dfas.get(idx).startState());
+        }
+        line(" };");
+        lexClasses = new LinkedHashMap<>();
+        sb.append("    // names of lex classes followed by a space, UTF-8\n");
+        sb.append("    private static final byte[][] LEX_CLASSES = {");
+        for (String state : stateNames) {
+            for (LexRule rule : states.get(state)) {
+                if (rule.hasLexClass() && !lexClasses.containsKey(rule.lexClass())) {
+                    sb.append(lexClasses.isEmpty() ? "\n" : ",\n");
+                    sb.append("            bytes(").append(literal(rule.lexClass() + " "))
+                            .append(")");
+                    lexClasses.put(rule.lexClass(), lexClasses.size());
+                }
+            }
+        }
+        line(" };");
+        line("    // symbol -> symbol class");
+        packed("SYMBOL_CLASSES", symbolClasses);
+        line("    // automaton state * CLASSES + symbol class -> next state + 1, zero if there is");
+        line("    // none");
+        packed("TRANSITIONS", transitions);
+        line("    // automaton state -> accepted rule + 1, zero if it doesn't accept");
+        packed("ACCEPTS", accepts);
+        line("");
+        writeKeywords(numRules);
+    }
+
+    /**
+     * Writes keyword tables of rules, in the same form as {@link KeywordTable}.
+     */
+    private void writeKeywords(int numRules) {
+        char[] tables = new char[numRules];
+        List<KeywordTable> keywordTables = new ArrayList<>();
+        // keyword rules are in the same state as the rule with the table
+        List<Integer> ruleOffsets = new ArrayList<>();
+        List<List<LexRule>> tableStates = new ArrayList<>();
+        int offset = 0;
+        for (String state : stateNames) {
+            List<LexRule> rules = states.get(state);
+            for (int idx = 0; idx < rules.size(); idx++) {
+                KeywordTable table = rules.get(idx).getKeywords();
+                if (table != null) {
+                    keywordTables.add(table);
+                    ruleOffsets.add(offset);
+                    tableStates.add(rules);
+                    tables[offset + idx] = (char) keywordTables.size();
+                }
+            }
+            offset += rules.size();
+        }
+        hasKeywords = !keywordTables.isEmpty();
+        if (!hasKeywords) {
+            return;
+        }
+
+        line("    // rule -> index of it's keyword table + 1, zero if it has none");
+        packed("KEYWORD_TABLES", tables);
+        StringBuilder bases = new StringBuilder();
+        StringBuilder seeds = new StringBuilder();
+        StringBuilder keywords = new StringBuilder();
+        StringBuilder rules = new StringBuilder();
+        for (int idx = 0; idx < keywordTables.size(); idx++) {
+            KeywordTable table = keywordTables.get(idx);
+            String separator = idx > 0 ? ",\n            " : "\n            ";
+            bases.append(idx > 0 ? ", " : " ").append(table.getBasis());
+            seeds.append(separator).append("{");
+            for (int seed : table.getSeeds()) {
+                seeds.append(" ").append(seed).append(",");
+            }
+            seeds.append(" }");
+            keywords.append(separator).append("{");
+            rules.append(separator).append("{");
+            for (int slot = 0; slot < table.getKeywords().length; slot++) {
+                keywords.append(" ").append(literal(table.getKeywords()[slot])).append(",");
+                rules.append(" ").append(ruleOffsets.get(idx)
+                        + tableStates.get(idx).indexOf(table.getRules()[slot])).append(",");
+            }
+            keywords.append(" }");
+            rules.append(" }");
+        }
+        line("    private static final int[] KEYWORD_BASES = {" + bases + " };");
+        line("    // keyword table -> bucket -> seed");
+        line("    private static final int[][] KEYWORD_SEEDS = {" + seeds + " };");
+        line("    // keyword table -> slot -> keyword and it's rule");
+        line("    private static final String[][] KEYWORDS = {" + keywords + " };");
+        line("    private static final int[][] KEYWORD_RULES = {" + rules + " };");
+        line("");
+    }
+
+    private void writeAnalyzer() {
+        line("    private char[] input;");
+        line("    private OutputStream output;");
+        line("    private byte[] buffer;");
+        line("    private int size;");
+        line("    private int state;");
+        line("    private int lineNumber;");
+        line("    private int startIndex;");
+        line("    private int endIndex;");
+        line("    private int lastIndex;");
+        line("");
+        line("    public " + className + "(char[] input, OutputStream output) {");
+        line("        this.input = input;");
+        line("        this.output = output;");
+        line("        buffer = new byte[1 << 16];");
+        line("        state = START_STATE;");
+        line("        lineNumber = 1;");
+        line("    }");
+        line("");
+        line("    public void analyze() throws IOException {");
+        line("        char[] input = this.input;");
+        line("        int length = input.length;");
+        line("        while (startIndex < length) {");
+        line("            // longest prefix that some rule accepts, first rule if more do");
+        line("            int automatonState = STARTS[state];");
+        line("            int rule = -1;");
+        line("            int end = startIndex;");
+        line("            while (end < length) {");
+        line("                int next = TRANSITIONS[automatonState * CLASSES");
+        line("                        + SYMBOL_CLASSES[input[end]]];");
+        line("                if (next == 0) {");
+        line("                    break;");
+        line("                }");
+        line("                automatonState = next - 1;");
+        line("                int accepted = ACCEPTS[automatonState];");
+        line("                if (accepted != 0) {");
+        line("                    rule = accepted - 1;");
+        line("                    lastIndex = end;");
+        line("                }");
+        line("                end++;");
+        line("            }");
+        line("            if (rule < 0) {");
+        line("                startIndex++; // no rule accepts, symbol is dropped");
+        line("                continue;");
+        line("            }");
+        line("            endIndex = lastIndex;");
+        line(hasKeywords ? "            execute(keyword(rule));" : "            execute(rule);");
+        line("        }");
+        line("        output.write(buffer, 0, size);");
+        line("        output.flush();");
+        line("    }");
+        line("");
+    }
+
+    private void writeActions() {
+        line("    private void execute(int rule) throws IOException {");
+        line("        switch (rule) {");
+        int rule = 0;
+        for (String state : stateNames) {
+            for (LexRule lexRule : states.get(state)) {
+                line("        case " + rule++ + ": // " + state + " " + lexRule.lexClass());
+                for (LexAction action : lexRule.getActions()) {
+                    line("            " + statement(action));
+                }
+                if (lexRule.hasLexClass()) {
+                    line("            token(" + lexClasses.get(lexRule.lexClass()) + ");");
+                } else {
+                    line("            skip();");
+                }
+                line("            break;");
+            }
+        }
+        line("        default:");
+        line("            throw new IllegalStateException(\"No rule \" + rule);");
+        line("        }");
+        line("    }");
+        line("");
+    }
+
+    /**
+     * @return statement that does the same as the action
+     */
+    private String statement(LexAction action) {
+        if (action instanceof NewLineAction) {
+            return "lineNumber++;";
+        } else if (action instanceof SkipAction) {
+            return "skip();";
+        } else if (action instanceof GoBackAction) {
+            return "goBack(" + ((GoBackAction) action).getGoBack() + ");";
+        } else if (action instanceof ChangeStateAction) {
+            String state = ((ChangeStateAction) action).getState();
+            Integer index = stateIndices.get(state);
+            if (index == null) {
+                throw new IllegalArgumentException("State " + state + " has no rules");
+            }
+            return "state = " + index + "; // " + state;
+        }
+        throw new IllegalArgumentException("Unknown action: " + action.getClass().getName());
+    }
+
+    private void writeHelpers() {
+        if (hasKeywords) {
+            writeKeywordLookup();
+        }
+        line("    private void skip() {");
+        line("        startIndex = endIndex + 1;");
+        line("    }");
+        line("");
+        line("    private void goBack(int toIdx) {");
+        line("        endIndex = startIndex + toIdx - 1;");
+        line("        lastIndex = endIndex;");
+        line("    }");
+        line("");
+        line("    private void token(int lexClass) throws IOException {");
+        line("        byte[] name = LEX_CLASSES[lexClass];");
+        line("        int end = lastIndex + 1;");
+        line("        int needed = name.length + 12 + (end - startIndex) * 3;");
+        line("        if (size + needed > buffer.length) {");
+        line("            output.write(buffer, 0, size);");
+        line("            size = 0;");
+        line("            if (needed > buffer.length) {");
+        line("                buffer = new byte[Math.max(needed, buffer.length * 2)];");
+        line("            }");
+        line("        }");
+        line("        byte[] buffer = this.buffer;");
+        line("        int size = this.size;");
+        line("        System.arraycopy(name, 0, buffer, size, name.length);");
+        line("        size += name.length;");
+        line("        int digits = 1;");
+        line("        for (int rest = lineNumber / 10; rest > 0; rest /= 10) {");
+        line("            digits++;");
+        line("        }");
+        line("        size += digits;");
+        line("        for (int idx = size - 1, rest = lineNumber; idx >= size - digits; idx--) {");
+        line("            buffer[idx] = (byte) ('0' + rest % 10);");
+        line("            rest /= 10;");
+        line("        }");
+        line("        buffer[size++] = ' ';");
+        line("        for (int idx = startIndex; idx < end; idx++) {");
+        line("            char c = input[idx];");
+        line("            if (c < 0x80) {");
+        line("                buffer[size++] = (byte) c;");
+        line("            } else if (c < 0x800) {");
+        line("                buffer[size++] = (byte) (0xC0 | (c >> 6));");
+        line("                buffer[size++] = (byte) (0x80 | (c & 0x3F));");
+        line("            } else if (Character.isHighSurrogate(c) && idx + 1 < end");
+        line("                    && Character.isLowSurrogate(input[idx + 1])) {");
+        line("                int cp = Character.toCodePoint(c, input[++idx]);");
+        line("                buffer[size++] = (byte) (0xF0 | (cp >> 18));");
+        line("                buffer[size++] = (byte) (0x80 | ((cp >> 12) & 0x3F));");
+        line("                buffer[size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));");
+        line("                buffer[size++] = (byte) (0x80 | (cp & 0x3F));");
+        line("            } else if (Character.isSurrogate(c)) {");
+        line("                buffer[size++] = '?';");
+        line("            } else {");
+        line("                buffer[size++] = (byte) (0xE0 | (c >> 12));");
+        line("                buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));");
+        line("                buffer[size++] = (byte) (0x80 | (c & 0x3F));");
+        line("            }");
+        line("        }");
+        line("        buffer[size++] = '\\n';");
+        line("        this.size = size;");
+        line("        startIndex = end;");
+        line("    }");
+        line("");
+        line("    private static byte[] bytes(String name) {");
+        line("        return name.getBytes(StandardCharsets.UTF_8);");
+        line("    }");
+        line("");
+        line("    private static char[] read(InputStream stream) throws IOException {");
+        line("        Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);");
+        line("        char[] buffer = new char[1 << 16];");
+        line("        int length = 0;");
+        line("        int read;");
+        line("        while ((read = reader.read(buffer, length, buffer.length - length)) >= 0) {");
+        line("            length += read;");
+        line("            if (length == buffer.length) {");
+        line("                buffer = Arrays.copyOf(buffer, buffer.length * 2);");
+        line("            }");
+        line("        }");
+        line("        return Arrays.copyOf(buffer, length);");
+        line("    }");
+        line("");
+        line("    // pairs of (count, value)");
+        line("    private static char[] unpack(int length, String... parts) {");
+        line("        char[] values = new char[length];");
+        line("        int idx = 0;");
+        line("        for (String part : parts) {");
+        line("            for (int pos = 0; pos < part.length(); pos += 2) {");
+        line("                int count = part.charAt(pos);");
+        line("                Arrays.fill(values, idx, idx + count, part.charAt(pos + 1));");
+        line("                idx += count;");
+        line("            }");
+        line("        }");
+        line("        return values;");
+        line("    }");
+        line("");
+    }
+
+    /**
+     * Writes the lookup of the current token in keyword tables, hashes are the
+     * same as in {@link KeywordTable}.
+     */
+    private void writeKeywordLookup() {
+        line("    private int keyword(int rule) {");
+        line("        int table = KEYWORD_TABLES[rule] - 1;");
+        line("        if (table < 0) {");
+        line("            return rule;");
+        line("        }");
+        line("        int hash = KEYWORD_BASES[table];");
+        line("        for (int idx = startIndex; idx <= endIndex; idx++) {");
+        line("            hash = (hash ^ input[idx]) * 0x01000193;");
+        line("        }");
+        line("        int[] seeds = KEYWORD_SEEDS[table];");
+        line("        int mixed = hash + seeds[(hash & 0x7FFFFFFF) % seeds.length] * 0x9E3779B9;");
+        line("        mixed ^= mixed >>> 16;");
+        line("        mixed *= 0x85EBCA6B;");
+        line("        mixed ^= mixed >>> 13;");
+        line("        mixed *= 0xC2B2AE35;");
+        line("        mixed ^= mixed >>> 16;");
+        line("        String[] keywords = KEYWORDS[table];");
+        line("        int slot = (mixed & 0x7FFFFFFF) % keywords.length;");
+        line("        String keyword = keywords[slot];");
+        line("        if (keyword.length() != endIndex + 1 - startIndex) {");
+        line("            return rule;");
+        line("        }");
+        line("        for (int idx = 0; idx < keyword.length(); idx++) {");
+        line("            if (keyword.charAt(idx) != input[startIndex + idx]) {");
+        line("                return rule;");
+        line("            }");
+        line("        }");
+        line("        return KEYWORD_RULES[table][slot];");
+        line("    }");
+        line("");
+    }
+
+    /**
+     * Writes a constant that is unpacked from run length encoded strings.
+     */
+    private void packed(String name, char[] values) {
+        StringBuilder packed = new StringBuilder();
+        for (int idx = 0; idx < values.length;) {
+            int count = 1;
+            while (idx + count < values.length && values[idx + count] == values[idx]
+                    && count < Character.MAX_VALUE) {
+                count++;
+            }
+            packed.append((char) count).append(values[idx]);
+            idx += count;
+        }
+
+        sb.append("    private static final char[] ").append(name).append(" = unpack(")
+                .append(values.length);
+        for (int start = 0; start < packed.length(); start += MAX_STRING_LENGTH) {
+            int end = Math.min(packed.length(), start + MAX_STRING_LENGTH);
+            sb.append(",\n            ").append(literal(packed.substring(start, end)));
+        }
+        line(");");
+    }
+
+    /**
+     * @return Java string literal with the given value
+     */
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (int idx = 0; idx < value.length(); idx++) {
+            char c = value.charAt(idx);
+            if (c == '"' || c == '\\') {
+                literal.append('\\').append(c);
+            } else if (c >= ' ' && c < 0x7F) {
+                literal.append(c);
+            } else if (c < 0x100) {
+                // unicode escapes are replaced before the source is parsed, so
+                // a new line can't be written as one
+                literal.append(String.format("\\%03o", (int) c));
+            } else {
+                literal.append(String.format("\\u%04x", (int) c));
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private void line(String line) {
+        sb.append(line).append('\n');
+    }
+
+}
@@ -0,0 +1,389 @@
+package hr.fer.zemris.ppj.lexical.incremental;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import hr.fer.zemris.ppj.lexical.Lex;
+import hr.fer.zemris.ppj.lexical.LexFactory;
+import hr.fer.zemris.ppj.lexical.TokenBoundaryListener;
+import hr.fer.zemris.ppj.lexical.input.EditableInput;
+import hr.fer.zemris.ppj.lexical.input.LexInput;
+import hr.fer.zemris.ppj.lexical.output.TokenSink;
+
+/**
+ * Keeps tokens of a text that is edited and analyzes again only the part of
+ * the text an edit changed. Besides tokens, it keeps the lexer's state and
+ * line number when it started reading every token, and the furthest symbol
+ * the lexer looked at before it.
+ *
+ * After an edit, the lexer starts from the last token before which it didn't
+ * look at the edited symbols, in the state it was in there. It stops when it
+ * starts reading a token after the edit in the same state and at the same
+ * place as before (moved by the length change), because from there it would
+ * read the same tokens. New tokens are put in place of the old ones between
+ * those two points, tokens after them only get their line numbers moved.
+ *
+ * Tokens are kept in arrays with a gap at the last edit. Positions of tokens
+ * after the gap are kept relative to the text's length and their line numbers
+ * relative to the last line, so they don't have to be changed when the text
+ * before them changes. Time of an edit depends only on the number of tokens
+ * that are analyzed again and the distance from the last edit.
+ *
+ * @author fhrenic
+ */
+public class IncrementalLex {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private LexFactory factory;
+    private String startState;
+    private EditableInput input;
+
+    private String[] lexClasses;
+    private int[] starts;
+    private int[] ends;
+    private int[] lineNumbers;
+    // lexer's state and line number when it started reading the token
+    private String[] states;
+    private int[] startLines;
+    // furthest symbol the lexer looked at before it started reading the token
+    private int[] lookaheads;
+    private int gapStart;
+    private int gapEnd;
+    // line number at the end of the text
+    private int lastLine;
+
+    /**
+     * Creates a new incremental analyzer and analyzes the given text.
+     *
+     * @param factory creates lexers
+     * @param startState starting state of the lexer
+     * @param text text to analyze
+     * @throws IOException if the lexer fails
+     */
+    public IncrementalLex(LexFactory factory, String startState, CharSequence text)
+            throws IOException {
+        this.factory = factory;
+        this.startState = startState;
+        input = new EditableInput(text);
+
+        lexClasses = new String[INITIAL_CAPACITY];
+        starts = new int[INITIAL_CAPACITY];
+        ends = new int[INITIAL_CAPACITY];
+        lineNumbers = new int[INITIAL_CAPACITY];
+        states = new String[INITIAL_CAPACITY];
+        startLines = new int[INITIAL_CAPACITY];
+        lookaheads = new int[INITIAL_CAPACITY];
+        gapStart = 0;
+        gapEnd = INITIAL_CAPACITY;
+        lastLine = 1;
+
+        analyze(0, startState, 1, -1, 0);
+    }
+
+    /**
+     * Replaces symbols from the offset (inclusive) to the offset + removed
+     * (exclusive) with the inserted symbols and analyzes the changed part of
+     * the text.
+     *
+     * @param offset index of the first removed symbol
+     * @param removed number of removed symbols
+     * @param inserted inserted symbols
+     * @return changed tokens
+     * @throws IOException if the lexer fails
+     */
+    public TokenChange edit(int offset, int removed, CharSequence inserted) throws IOException {
+        if (offset < 0 || removed < 0 || offset + removed > input.length()) {
+            throw new IndexOutOfBoundsException("Can't remove " + removed + " symbols at "
+                    + offset + ", length is " + input.length());
+        }
+        // tokens before the first one didn't look at the edited symbols
+        int first = restartToken(offset) - 1;
+        int from = 0;
+        String state = startState;
+        int line = 1;
+        int lookahead = -1;
+        if (first >= 0) {
+            from = start(first);
+            state = states[physical(first)];
+            line = startLine(first);
+            lookahead = lookahead(first);
+        } else {
+            first = 0;
+        }
+
+        moveGap(first);
+        input.replace(offset, removed, inserted);
+        return analyze(from, state, line, lookahead, offset + inserted.length());
+    }
+
+    /**
+     * @return number of tokens the lexer looked only at symbols before the
+     *         given index before reading them
+     */
+    private int restartToken(int index) {
+        // lookaheads never decrease
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lookahead(mid) < index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Analyzes the text from the given point, puts new tokens before the gap
+     * and removes old tokens after the gap until the analysis meets them.
+     *
+     * @param from index where the analysis starts
+     * @param state lexer's state there
+     * @param line line number there
+     * @param lookahead furthest symbol looked at before that
+     * @param editEnd index after the last inserted symbol, old tokens before it
+     *            are never kept
+     * @return changed tokens
+     */
+    private TokenChange analyze(int from, String state, int line, int lookahead, int editEnd)
+            throws IOException {
+        Recorder recorder = new Recorder(lookahead, editEnd);
+        Lex lex = factory.createLex(recorder);
+        recorder.lex = lex;
+        lex.setBoundaryListener(recorder);
+        lex.startAt(from, state, line);
+        lex.analyzeInput(input);
+
+        int first = gapStart - recorder.inserted;
+        if (recorder.met) {
+            lastLine += recorder.lineOffset;
+            // old tokens can't have looked at less than the new ones did
+            int looked = Math.max(lookahead, lex.getLookahead()) - input.length();
+            for (int idx = gapEnd; idx < lookaheads.length && lookaheads[idx] < looked; idx++) {
+                lookaheads[idx] = looked;
+            }
+        } else {
+            recorder.removed += lookaheads.length - gapEnd;
+            gapEnd = lookaheads.length;
+            lastLine = lex.getLineNumber();
+        }
+        return new TokenChange(first, recorder.removed, recorder.inserted);
+    }
+
+    /**
+     * @return number of tokens
+     */
+    public int size() {
+        return gapStart + lookaheads.length - gapEnd;
+    }
+
+    /**
+     * @return lex class of the token
+     */
+    public String lexClass(int token) {
+        return lexClasses[physical(token)];
+    }
+
+    /**
+     * @return line number of the token
+     */
+    public int lineNumber(int token) {
+        int idx = physical(token);
+        return idx < gapStart ? lineNumbers[idx] : lineNumbers[idx] + lastLine;
+    }
+
+    /**
+     * @return index of the token's first symbol
+     */
+    public int start(int token) {
+        int idx = physical(token);
+        return idx < gapStart ? starts[idx] : starts[idx] + input.length();
+    }
+
+    /**
+     * @return index after the token's last symbol
+     */
+    public int end(int token) {
+        int idx = physical(token);
+        return idx < gapStart ? ends[idx] : ends[idx] + input.length();
+    }
+
+    /**
+     * @return text of the token
+     */
+    public String text(int token) {
+        return input.substring(start(token), end(token));
+    }
+
+    /**
+     * @return whole text
+     */
+    public String getText() {
+        return input.toString();
+    }
+
+    /**
+     * Gives all tokens to the sink, in order, and flushes it.
+     *
+     * @param sink sink that receives tokens
+     * @throws IOException if the sink fails
+     */
+    public void writeTo(TokenSink sink) throws IOException {
+        for (int token = 0, size = size(); token < size; token++) {
+            sink.addToken(lexClass(token), lineNumber(token), input, start(token), end(token));
+        }
+        sink.flush();
+    }
+
+    private int startLine(int token) {
+        int idx = physical(token);
+        return idx < gapStart ? startLines[idx] : startLines[idx] + lastLine;
+    }
+
+    private int lookahead(int token) {
+        int idx = physical(token);
+        return idx < gapStart ? lookaheads[idx] : lookaheads[idx] + input.length();
+    }
+
+    /**
+     * @return index of the token in the arrays
+     */
+    private int physical(int token) {
+        if (token < 0 || token >= size()) {
+            throw new IndexOutOfBoundsException("No token " + token + ", size is " + size());
+        }
+        return token < gapStart ? token : token + gapEnd - gapStart;
+    }
+
+    /**
+     * Moves the gap so it's before the given token.
+     */
+    private void moveGap(int token) {
+        int length = input.length();
+        while (gapStart > token) {
+            move(--gapStart, --gapEnd, -length, -lastLine);
+        }
+        while (gapStart < token) {
+            move(gapEnd++, gapStart++, length, lastLine);
+        }
+    }
+
+    /**
+     * Moves a token from one place in the arrays to another, positions and
+     * line numbers are moved by the given values.
+     */
+    private void move(int from, int to, int positionOffset, int lineOffset) {
+        lexClasses[to] = lexClasses[from];
+        starts[to] = starts[from] + positionOffset;
+        ends[to] = ends[from] + positionOffset;
+        lineNumbers[to] = lineNumbers[from] + lineOffset;
+        states[to] = states[from];
+        startLines[to] = startLines[from] + lineOffset;
+        lookaheads[to] = lookaheads[from] + positionOffset;
+        lexClasses[from] = null;
+        states[from] = null;
+    }
+
+    /**
+     * Doubles the capacity, tokens after the gap stay at the end.
+     */
+    private void grow() {
+        int capacity = lookaheads.length * 2;
+        int tail = lookaheads.length - gapEnd;
+        lexClasses = grow(lexClasses, capacity, tail);
+        states = grow(states, capacity, tail);
+        starts = grow(starts, capacity, tail);
+        ends = grow(ends, capacity, tail);
+        lineNumbers = grow(lineNumbers, capacity, tail);
+        startLines = grow(startLines, capacity, tail);
+        lookaheads = grow(lookaheads, capacity, tail);
+        gapEnd = capacity - tail;
+    }
+
+    private static int[] grow(int[] array, int capacity, int tail) {
+        int[] grown = Arrays.copyOf(array, capacity);
+        System.arraycopy(array, array.length - tail, grown, capacity - tail, tail);
+        return grown;
+    }
+
+    private static String[] grow(String[] array, int capacity, int tail) {
+        String[] grown = Arrays.copyOf(array, capacity);
+        System.arraycopy(array, array.length - tail, grown, capacity - tail, tail);
+        Arrays.fill(grown, array.length - tail, array.length, null);
+        return grown;
+    }
+
+    /**
+     * Puts tokens of the analysis before the gap and stops it when it meets the
+     * old tokens.
+     */
+    private class Recorder implements TokenSink, TokenBoundaryListener {
+
+        private Lex lex;
+        private int lookahead;
+        private int editEnd;
+
+        private int removed;
+        private int inserted;
+        private boolean met;
+        private int lineOffset;
+
+        // where the lexer started reading the current token
+        private String tokenState;
+        private int tokenLine;
+        private int tokenLookahead;
+
+        Recorder(int lookahead, int editEnd) {
+            this.lookahead = lookahead;
+            this.editEnd = editEnd;
+        }
+
+        @Override
+        public boolean atBoundary(int index, String state, int lineNumber) {
+            int length = input.length();
+            // old tokens the analysis passed are removed
+            int passed = Math.max(index, editEnd) - length;
+            while (gapEnd < starts.length && starts[gapEnd] < passed) {
+                lexClasses[gapEnd] = null;
+                states[gapEnd] = null;
+                gapEnd++;
+                removed++;
+            }
+            if (index >= editEnd && gapEnd < starts.length && starts[gapEnd] + length == index
+                    && states[gapEnd].equals(state)) {
+                met = true;
+                lineOffset = lineNumber - (startLines[gapEnd] + lastLine);
+                return false;
+            }
+            tokenState = state;
+            tokenLine = lineNumber;
+            tokenLookahead = Math.max(lookahead, lex.getLookahead());
+            return true;
+        }
+
+        @Override
+        public void addToken(String lexClass, int lineNumber, LexInput input, int start, int end) {
+            if (gapStart == gapEnd) {
+                grow();
+            }
+            lexClasses[gapStart] = lexClass;
+            starts[gapStart] = start;
+            ends[gapStart] = end;
+            lineNumbers[gapStart] = lineNumber;
+            states[gapStart] = tokenState;
+            startLines[gapStart] = tokenLine;
+            lookaheads[gapStart] = tokenLookahead;
+            gapStart++;
+            inserted++;
+        }
+
+        @Override
+        public void flush() {
+            // tokens are already in place
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package hr.fer.zemris.ppj.lexical.incremental;
+
+/**
+ * Tokens that were changed by an edit. Tokens from the first one were
+ * removed, new tokens were put in their place, tokens after them weren't
+ * changed except for their positions and line numbers.
+ * 
+ * @author fhrenic
+ */
+public class TokenChange {
+
+    private int first;
+    private int removed;
+    private int inserted;
+
+    /**
+     * Creates a new change.
+     * 
+     * @param first index of the first changed token
+     * @param removed number of removed tokens
+     * @param inserted number of inserted tokens
+     */
+    public TokenChange(int first, int removed, int inserted) {
+        this.first = first;
+        this.removed = removed;
+        this.inserted = inserted;
+    }
+
+    /**
+     * @return index of the first changed token
+     */
+    public int getFirst() {
+        return first;
+    }
+
+    /**
+     * @return number of removed tokens
+     */
+    public int getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return number of inserted tokens
+     */
+    public int getInserted() {
+        return inserted;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenChange:[first=" + first + "; removed=" + removed + "; inserted=" + inserted
+                + "]";
+    }
+
+}
@@ -0,0 +1,114 @@
+package hr.fer.zemris.ppj.lexical.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Input that holds all of it's symbols in an array. It is never changed while
+ * it's analyzed, so more analyzers can read it at the same time.
+ * 
+ * @author fhrenic
+ */
+public class ArrayInput implements LexInput {
+
+    private static final int BUFFER_CAPACITY = 1 << 16;
+
+    private char[] symbols;
+
+    /**
+     * Creates a new input with the given symbols.
+     * 
+     * @param symbols symbols, array isn't copied
+     */
+    public ArrayInput(char[] symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Reads the whole stream and decodes it as UTF-8.
+     * 
+     * @param stream input stream
+     * @return input with all symbols of the stream
+     * @throws IOException if reading fails
+     */
+    public static ArrayInput read(InputStream stream) throws IOException {
+        Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
+        char[] buffer = new char[BUFFER_CAPACITY];
+        int length = 0;
+        int read;
+        while ((read = reader.read(buffer, length, buffer.length - length)) >= 0) {
+            length += read;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        return new ArrayInput(Arrays.copyOf(buffer, length));
+    }
+
+    /**
+     * Reads the whole file and decodes it as UTF-8.
+     * 
+     * @param path path to the file
+     * @return input with all symbols of the file
+     * @throws IOException if reading fails
+     */
+    public static ArrayInput read(Path path) throws IOException {
+        CharBuffer chars = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(Files.readAllBytes(path)));
+        char[] symbols = new char[chars.remaining()];
+        chars.get(symbols);
+        return new ArrayInput(symbols);
+    }
+
+    /**
+     * @return number of symbols
+     */
+    public int length() {
+        return symbols.length;
+    }
+
+    /**
+     * @return index of lines of the input
+     */
+    public LineIndex lineIndex() {
+        return LineIndex.of(symbols, symbols.length);
+    }
+
+    @Override
+    public boolean hasSymbol(int index) {
+        return index < symbols.length;
+    }
+
+    @Override
+    public char symbolAt(int index) {
+        return symbols[index];
+    }
+
+    @Override
+    public String substring(int start, int end) {
+        return new String(symbols, start, end - start);
+    }
+
+    @Override
+    public int copyTo(int start, int end, byte[] dest, int destIndex) {
+        return Utf8.encode(symbols, start, end, dest, destIndex);
+    }
+
+    @Override
+    public void release(int index) {
+        // all symbols are kept
+    }
+
+    @Override
+    public long skipRun(int index, SkipRun run) {
+        return run.skip(symbols, index, symbols.length);
+    }
+
+}
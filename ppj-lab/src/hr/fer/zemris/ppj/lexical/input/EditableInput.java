@@ -0,0 +1,162 @@
+package hr.fer.zemris.ppj.lexical.input;
+
+import java.util.Arrays;
+
+/**
+ * Input that holds all of it's symbols and can be edited. Symbols are kept in
+ * a gap buffer, the gap is moved to the place of an edit, so edits close to
+ * each other only move the symbols between them.
+ * 
+ * @author fhrenic
+ */
+public class EditableInput implements LexInput {
+
+    private static final int MIN_GAP = 1 << 8;
+
+    private char[] symbols;
+    private int gapStart;
+    private int gapEnd;
+
+    /**
+     * Creates a new input with the given symbols.
+     * 
+     * @param text symbols
+     */
+    public EditableInput(CharSequence text) {
+        symbols = new char[text.length() + MIN_GAP];
+        for (int idx = 0; idx < text.length(); idx++) {
+            symbols[idx] = text.charAt(idx);
+        }
+        gapStart = text.length();
+        gapEnd = symbols.length;
+    }
+
+    /**
+     * @return number of symbols
+     */
+    public int length() {
+        return symbols.length - (gapEnd - gapStart);
+    }
+
+    /**
+     * Replaces symbols from the offset (inclusive) to the offset + removed
+     * (exclusive) with the inserted symbols.
+     * 
+     * @param offset index of the first removed symbol
+     * @param removed number of removed symbols
+     * @param inserted inserted symbols
+     */
+    public void replace(int offset, int removed, CharSequence inserted) {
+        if (offset < 0 || removed < 0 || offset + removed > length()) {
+            throw new IndexOutOfBoundsException("Can't remove " + removed + " symbols at "
+                    + offset + ", length is " + length());
+        }
+        moveGap(offset);
+        gapEnd += removed;
+        int length = inserted.length();
+        if (gapEnd - gapStart < length) {
+            grow(length);
+        }
+        for (int idx = 0; idx < length; idx++) {
+            symbols[gapStart++] = inserted.charAt(idx);
+        }
+    }
+
+    /**
+     * Moves the gap so it starts at the given index.
+     */
+    private void moveGap(int index) {
+        if (index < gapStart) {
+            int count = gapStart - index;
+            System.arraycopy(symbols, index, symbols, gapEnd - count, count);
+            gapStart -= count;
+            gapEnd -= count;
+        } else if (index > gapStart) {
+            int count = index - gapStart;
+            System.arraycopy(symbols, gapEnd, symbols, gapStart, count);
+            gapStart += count;
+            gapEnd += count;
+        }
+    }
+
+    /**
+     * Makes the gap big enough for the given number of symbols.
+     */
+    private void grow(int needed) {
+        int tail = symbols.length - gapEnd;
+        int capacity = Math.max(symbols.length * 2, length() + needed + MIN_GAP);
+        char[] grown = Arrays.copyOf(symbols, capacity);
+        System.arraycopy(symbols, gapEnd, grown, capacity - tail, tail);
+        symbols = grown;
+        gapEnd = capacity - tail;
+    }
+
+    @Override
+    public boolean hasSymbol(int index) {
+        return index < length();
+    }
+
+    @Override
+    public char symbolAt(int index) {
+        return index < gapStart ? symbols[index] : symbols[index + gapEnd - gapStart];
+    }
+
+    @Override
+    public String substring(int start, int end) {
+        return new String(copy(start, end));
+    }
+
+    @Override
+    public int copyTo(int start, int end, byte[] dest, int destIndex) {
+        if (end <= gapStart) {
+            return Utf8.encode(symbols, start, end, dest, destIndex);
+        }
+        if (start >= gapStart) {
+            int gap = gapEnd - gapStart;
+            return Utf8.encode(symbols, start + gap, end + gap, dest, destIndex);
+        }
+        char[] copy = copy(start, end);
+        return Utf8.encode(copy, 0, copy.length, dest, destIndex);
+    }
+
+    /**
+     * @return symbols from the start index (inclusive) to the end index
+     *         (exclusive)
+     */
+    private char[] copy(int start, int end) {
+        char[] copy = new char[end - start];
+        int beforeGap = Math.max(0, Math.min(end, gapStart) - start);
+        System.arraycopy(symbols, start, copy, 0, beforeGap);
+        int gap = gapEnd - gapStart;
+        System.arraycopy(symbols, start + beforeGap + gap, copy, beforeGap, copy.length
+                - beforeGap);
+        return copy;
+    }
+
+    @Override
+    public void release(int index) {
+        // all symbols are kept
+    }
+
+    @Override
+    public long skipRun(int index, SkipRun run) {
+        int lines = 0;
+        if (index < gapStart) {
+            long skipped = run.skip(symbols, index, gapStart);
+            index = SkipRun.end(skipped);
+            lines = SkipRun.lines(skipped);
+            if (index < gapStart) {
+                return skipped;
+            }
+        }
+        int gap = gapEnd - gapStart;
+        long skipped = run.skip(symbols, index + gap, symbols.length);
+        return SkipRun.result(SkipRun.end(skipped) - gap, lines + SkipRun.lines(skipped));
+    }
+
+    @Override
+    public String toString() {
+        return substring(0, length());
+    }
+
+}
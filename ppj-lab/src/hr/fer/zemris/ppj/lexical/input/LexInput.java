@@ -0,0 +1,76 @@
+package hr.fer.zemris.ppj.lexical.input;
+
+import java.io.IOException;
+
+/**
+ * Input of the lexical analyzer. Symbols are accessed by their index from the
+ * beginning of the input. Analyzer tells the input which symbols it won't need
+ * anymore, so an input doesn't have to keep all of the symbols in memory.
+ * 
+ * @author fhrenic
+ */
+public interface LexInput {
+
+    /**
+     * Tests if there is a symbol at the given index. Input can read more
+     * symbols from it's source if needed.
+     * 
+     * @param index index of the symbol
+     * @return <code>true</code> if there is a symbol at the index
+     * @throws IOException if reading from the source fails
+     */
+    public boolean hasSymbol(int index) throws IOException;
+
+    /**
+     * Returns a symbol at the given index. It is only called after
+     * {@link #hasSymbol(int)} returned <code>true</code> for the same index.
+     * 
+     * @param index index of the symbol
+     * @return symbol
+     */
+    public char symbolAt(int index);
+
+    /**
+     * Returns symbols from the start index (inclusive) to the end index
+     * (exclusive).
+     * 
+     * @param start start index
+     * @param end end index
+     * @return symbols as a string
+     */
+    public String substring(int start, int end);
+
+    /**
+     * Copies symbols from the start index (inclusive) to the end index
+     * (exclusive) into the given array as UTF-8 bytes. Destination must have
+     * room for {@link Utf8#MAX_BYTES_PER_SYMBOL} bytes per symbol.
+     * 
+     * @param start start index
+     * @param end end index
+     * @param dest destination array
+     * @param destIndex index of the first byte in the destination
+     * @return number of copied bytes
+     */
+    public int copyTo(int start, int end, byte[] dest, int destIndex);
+
+    /**
+     * Tells the input that symbols before the given index won't be needed
+     * anymore.
+     * 
+     * @param index index of the first symbol that is still needed
+     */
+    public void release(int index);
+
+    /**
+     * Skips symbols from the given index on while they belong to the run, see
+     * {@link SkipRun}. Input can release the skipped symbols.
+     * 
+     * @param index index of the first symbol
+     * @param run symbols that are skipped
+     * @return index after the run and number of lines in it, see
+     *         {@link SkipRun#end(long)} and {@link SkipRun#lines(long)}
+     * @throws IOException if reading from the source fails
+     */
+    public long skipRun(int index, SkipRun run) throws IOException;
+
+}
@@ -0,0 +1,109 @@
+package hr.fer.zemris.ppj.lexical.input;
+
+import java.util.Arrays;
+
+/**
+ * Indices where lines of an input start, found in one pass over the input.
+ * Line number of any index is then found by a binary search, or by a
+ * {@link Cursor} when indices mostly grow, like token starts do.
+ *
+ * @author fhrenic
+ */
+public class LineIndex {
+
+    // index of the first symbol of every line, first line starts at zero
+    private int[] starts;
+    private int count;
+
+    private LineIndex(int[] starts, int count) {
+        this.starts = starts;
+        this.count = count;
+    }
+
+    /**
+     * Creates an index of lines of the given symbols, lines end with
+     * <code>'\n'</code>.
+     *
+     * @param symbols symbols
+     * @param length number of symbols
+     * @return index of lines
+     */
+    public static LineIndex of(char[] symbols, int length) {
+        int[] starts = new int[Math.max(16, length >>> 5)];
+        int count = 1;
+        for (int idx = 0; idx < length; idx++) {
+            if (symbols[idx] == '\n') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = idx + 1;
+            }
+        }
+        return new LineIndex(starts, count);
+    }
+
+    /**
+     * @return number of lines
+     */
+    public int lineCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of the line the symbol at the given index is in.
+     * Lines are numbered from one.
+     *
+     * @param index index of a symbol
+     * @return line number
+     */
+    public int lineOf(int index) {
+        int low = 1;
+        int high = count;
+        // number of lines that start at or before the index
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return a new cursor at the first line
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Finds line numbers of indices that mostly grow by moving a line at a
+     * time, it searches the whole index only when an index is far away.
+     */
+    public class Cursor {
+
+        private static final int MAX_STEPS = 8;
+
+        private int line; // from zero
+
+        /**
+         * Returns the number of the line the symbol at the given index is in.
+         *
+         * @param index index of a symbol
+         * @return line number, from one
+         */
+        public int lineOf(int index) {
+            if (index < starts[line]
+                    || line + MAX_STEPS < count && starts[line + MAX_STEPS] <= index) {
+                line = LineIndex.this.lineOf(index) - 1;
+            }
+            while (line + 1 < count && starts[line + 1] <= index) {
+                line++;
+            }
+            return line + 1;
+        }
+    }
+
+}
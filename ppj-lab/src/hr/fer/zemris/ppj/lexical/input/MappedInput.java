@@ -0,0 +1,180 @@
+package hr.fer.zemris.ppj.lexical.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input that maps a whole file into memory. As long as the file is ASCII,
+ * symbols are the mapped bytes and index of a symbol is it's offset in the
+ * file, so nothing is decoded or copied. When the first byte outside of ASCII
+ * is reached, the rest of the file (from that byte on) is decoded as UTF-8
+ * while the analyzer reads it, through a {@link StreamInput}, so only a window
+ * of decoded symbols is kept. Bytes are checked for ASCII, and runs of skipped
+ * symbols are skipped, eight bytes at a time.
+ * 
+ * @author fhrenic
+ */
+public class MappedInput implements LexInput {
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final int TAIL_CAPACITY = 1 << 12;
+
+    private ByteBuffer bytes;
+    // same bytes, read as little endian words
+    private ByteBuffer words;
+    private int size;
+
+    private int asciiChecked; // bytes before this offset are ASCII
+    private int asciiEnd; // offset of the first byte that isn't ASCII
+    private StreamInput tail; // symbols from asciiEnd on, tail index 0 is asciiEnd
+
+    /**
+     * Maps the file with the given path.
+     * 
+     * @param path path to the file
+     * @throws IOException if file can't be mapped
+     */
+    public MappedInput(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to be mapped: " + path);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            bytes = mapped;
+            words = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            size = (int) fileSize;
+            asciiEnd = size;
+        }
+    }
+
+    @Override
+    public boolean hasSymbol(int index) throws IOException {
+        if (index < asciiChecked) {
+            return true;
+        }
+        if (tail != null) {
+            return tail.hasSymbol(index - asciiEnd);
+        }
+        while (asciiChecked <= index && asciiChecked + 8 <= size
+                && (words.getLong(asciiChecked) & HIGH_BITS) == 0) {
+            asciiChecked += 8;
+        }
+        while (asciiChecked <= index && asciiChecked < size) {
+            if (bytes.get(asciiChecked) < 0) {
+                decodeRest();
+                return hasSymbol(index);
+            }
+            asciiChecked++;
+        }
+        return index < asciiChecked;
+    }
+
+    @Override
+    public char symbolAt(int index) {
+        if (index < asciiEnd) {
+            return (char) bytes.get(index);
+        }
+        return tail.symbolAt(index - asciiEnd);
+    }
+
+    @Override
+    public String substring(int start, int end) {
+        byte[] dest = new byte[(end - start) * Utf8.MAX_BYTES_PER_SYMBOL];
+        int length = copyTo(start, end, dest, 0);
+        return new String(dest, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int copyTo(int start, int end, byte[] dest, int destIndex) {
+        int asciiTo = Math.min(end, asciiEnd);
+        int length = 0;
+        if (start < asciiTo) {
+            length = asciiTo - start;
+            // position of the shared buffer doesn't change
+            ByteBuffer source = bytes.duplicate();
+            source.position(start);
+            source.get(dest, destIndex, length);
+        }
+        if (end > asciiEnd) {
+            int from = Math.max(start, asciiEnd) - asciiEnd;
+            length += tail.copyTo(from, end - asciiEnd, dest, destIndex + length);
+        }
+        return length;
+    }
+
+    @Override
+    public void release(int index) {
+        // whole file is mapped, only decoded symbols are dropped
+        if (tail != null && index > asciiEnd) {
+            tail.release(index - asciiEnd);
+        }
+    }
+
+    @Override
+    public long skipRun(int index, SkipRun run) throws IOException {
+        int lines = 0;
+        if (index < asciiEnd) {
+            // bytes that aren't ASCII stop the run
+            long skipped = run.skip(words, index, asciiEnd);
+            index = SkipRun.end(skipped);
+            lines = SkipRun.lines(skipped);
+            asciiChecked = Math.max(asciiChecked, index);
+            if (index < asciiEnd || tail == null) {
+                return skipped;
+            }
+        }
+        long skipped = tail.skipRun(index - asciiEnd, run);
+        return SkipRun.result(SkipRun.end(skipped) + asciiEnd, lines + SkipRun.lines(skipped));
+    }
+
+    /**
+     * Starts decoding from the first byte that isn't ASCII.
+     */
+    private void decodeRest() {
+        asciiEnd = asciiChecked;
+        ByteBuffer rest = bytes.duplicate();
+        rest.position(asciiEnd);
+        tail = new StreamInput(new InputStreamReader(new BufferStream(rest),
+                StandardCharsets.UTF_8), TAIL_CAPACITY);
+    }
+
+    /**
+     * Stream of the bytes of a buffer.
+     */
+    private static class BufferStream extends InputStream {
+
+        private ByteBuffer buffer;
+
+        BufferStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] dest, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            length = Math.min(length, buffer.remaining());
+            buffer.get(dest, offset, length);
+            return length;
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+package hr.fer.zemris.ppj.lexical.input;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import hr.fer.zemris.ppj.lexical.automaton.CharClasses;
+
+/**
+ * Symbols that the lexer, in one of it's states, skips one at a time: each of
+ * them is a whole token (no rule can read further), the token is skipped and
+ * the state doesn't change, only the line number can grow. A run of such
+ * symbols can be skipped at once, without the automaton, by counting the
+ * lines.
+ *
+ * Inputs skip runs with {@link LexInput#skipRun(int, SkipRun)}. Inputs of
+ * bytes check eight symbols at a time with arithmetic on a <code>long</code>
+ * (SWAR), if the run has only a few ASCII symbols, or stops at only a few of
+ * them. Result of a skip is the index after the run in the low 32 bits and
+ * the number of lines in the high 32 bits, see {@link #end(long)} and
+ * {@link #lines(long)}.
+ *
+ * @author fhrenic
+ */
+public class SkipRun implements Serializable {
+
+    private static final long serialVersionUID = -5280617457936911431L;
+
+    /**
+     * Returned by {@link #lines(char)} for symbols that aren't skipped.
+     */
+    public static final int STOP = -1;
+
+    private static final int ASCII = 128;
+    private static final int MAX_PATTERNS = 4;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long ONES = 0x0101010101010101L;
+
+    private CharClasses classes;
+    // class -> lines the symbol adds, STOP if it isn't skipped
+    private byte[] classLines;
+    private byte[] ascii;
+
+    // symbols repeated in every byte of a long, null if SWAR can't be used
+    private long[] patterns;
+    // if true, patterns are symbols of the run, otherwise symbols it stops at
+    private boolean skipPatterns;
+    private long[] linePatterns;
+
+    /**
+     * Creates a new run.
+     *
+     * @param classes symbol classes
+     * @param classLines class -> lines a symbol of the class adds when it's
+     *            skipped, {@link #STOP} if it isn't skipped
+     */
+    public SkipRun(CharClasses classes, byte[] classLines) {
+        this.classes = classes;
+        this.classLines = classLines;
+        ascii = new byte[ASCII];
+        List<Long> skipped = new ArrayList<>();
+        List<Long> stops = new ArrayList<>();
+        List<Long> lines = new ArrayList<>();
+        boolean singleLines = true;
+        for (char symbol = 0; symbol < ASCII; symbol++) {
+            ascii[symbol] = classLines[classes.classOf(symbol)];
+            long pattern = symbol * ONES;
+            (ascii[symbol] == STOP ? stops : skipped).add(pattern);
+            if (ascii[symbol] > 0) {
+                lines.add(pattern);
+                singleLines &= ascii[symbol] == 1;
+            }
+        }
+
+        skipPatterns = skipped.size() <= stops.size();
+        List<Long> chosen = skipPatterns ? skipped : stops;
+        if (chosen.size() <= MAX_PATTERNS && lines.size() <= MAX_PATTERNS && singleLines) {
+            patterns = toArray(chosen);
+            linePatterns = toArray(lines);
+        }
+    }
+
+    private static long[] toArray(List<Long> list) {
+        long[] array = new long[list.size()];
+        for (int idx = 0; idx < array.length; idx++) {
+            array[idx] = list.get(idx);
+        }
+        return array;
+    }
+
+    /**
+     * @param symbol symbol
+     * @return number of lines the symbol adds when it's skipped, {@link #STOP}
+     *         if it isn't skipped
+     */
+    public int lines(char symbol) {
+        return symbol < ASCII ? ascii[symbol] : classLines[classes.classOf(symbol)];
+    }
+
+    /**
+     * @return symbol classes
+     */
+    public CharClasses getClasses() {
+        return classes;
+    }
+
+    /**
+     * @return class -> lines a symbol of the class adds when it's skipped,
+     *         {@link #STOP} if it isn't skipped
+     */
+    public byte[] getClassLines() {
+        return classLines.clone();
+    }
+
+    /**
+     * @param result result of a skip
+     * @return index after the run
+     */
+    public static int end(long result) {
+        return (int) result;
+    }
+
+    /**
+     * @param result result of a skip
+     * @return number of lines in the run
+     */
+    public static int lines(long result) {
+        return (int) (result >>> 32);
+    }
+
+    static long result(int end, int lines) {
+        return ((long) lines << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Skips symbols of the array.
+     *
+     * @param symbols symbols
+     * @param from index of the first symbol
+     * @param to index after the last symbol that can be skipped
+     * @return index after the run and number of lines
+     */
+    public long skip(char[] symbols, int from, int to) {
+        int lines = 0;
+        int index = from;
+        for (; index < to; index++) {
+            int add = lines(symbols[index]);
+            if (add == STOP) {
+                break;
+            }
+            lines += add;
+        }
+        return result(index, lines);
+    }
+
+    /**
+     * Skips symbols of a buffer of ASCII bytes, bytes that aren't ASCII are
+     * never skipped. Buffer has to be little endian.
+     *
+     * @param bytes bytes
+     * @param from index of the first symbol
+     * @param to index after the last symbol that can be skipped
+     * @return index after the run and number of lines
+     */
+    public long skip(ByteBuffer bytes, int from, int to) {
+        int lines = 0;
+        int index = from;
+        if (patterns != null) {
+            for (; index + 8 <= to; index += 8) {
+                long word = bytes.getLong(index);
+                long stops = stops(word);
+                long newLines = 0;
+                for (long pattern : linePatterns) {
+                    newLines |= equal(word, pattern);
+                }
+                if (stops != 0) {
+                    int skipped = Long.numberOfTrailingZeros(stops) >>> 3;
+                    newLines &= (1L << (8 * skipped)) - 1;
+                    return result(index + skipped, lines + Long.bitCount(newLines));
+                }
+                lines += Long.bitCount(newLines);
+            }
+        }
+        for (; index < to; index++) {
+            byte symbol = bytes.get(index);
+            if (symbol < 0 || ascii[symbol] == STOP) {
+                break;
+            }
+            lines += ascii[symbol];
+        }
+        return result(index, lines);
+    }
+
+    /**
+     * @return high bit of every byte of the word that isn't skipped
+     */
+    private long stops(long word) {
+        long matches = 0;
+        for (long pattern : patterns) {
+            matches |= equal(word, pattern);
+        }
+        // bytes that aren't ASCII don't match any pattern
+        return skipPatterns ? ~matches & HIGH_BITS : matches | (word & HIGH_BITS);
+    }
+
+    /**
+     * @return high bit of every byte of the word that is equal to the byte of
+     *         the pattern
+     */
+    private static long equal(long word, long pattern) {
+        long diff = word ^ pattern;
+        // high bit is set for every byte that isn't zero
+        long nonZero = ((diff & LOW_BITS) + LOW_BITS) | diff;
+        return ~nonZero & HIGH_BITS;
+    }
+
+}
@@ -0,0 +1,122 @@
+package hr.fer.zemris.ppj.lexical.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Input that reads symbols from a stream while the analyzer needs them. It
+ * keeps only a window of symbols, from the first symbol that wasn't released
+ * to the last symbol that was read. When the window has to move forward,
+ * released symbols are dropped and the buffer is refilled from the stream. The
+ * buffer grows only if a single token (with lookahead) doesn't fit into it.
+ * 
+ * @author fhrenic
+ */
+public class StreamInput implements LexInput {
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private Reader reader;
+    private char[] buffer;
+    private int offset; // index of the first symbol in the buffer
+    private int length; // number of symbols in the buffer
+    private int released; // symbols before this index aren't needed
+    private boolean eof;
+
+    /**
+     * Creates a new input that decodes the given stream as UTF-8.
+     * 
+     * @param stream input stream
+     */
+    public StreamInput(InputStream stream) {
+        this(new InputStreamReader(stream, StandardCharsets.UTF_8), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new input that reads from the given reader.
+     * 
+     * @param reader reader
+     * @param capacity initial buffer capacity
+     */
+    public StreamInput(Reader reader, int capacity) {
+        this.reader = reader;
+        buffer = new char[capacity];
+    }
+
+    @Override
+    public boolean hasSymbol(int index) throws IOException {
+        while (index >= offset + length) {
+            if (eof || !fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public char symbolAt(int index) {
+        return buffer[index - offset];
+    }
+
+    @Override
+    public String substring(int start, int end) {
+        return new String(buffer, start - offset, end - start);
+    }
+
+    @Override
+    public int copyTo(int start, int end, byte[] dest, int destIndex) {
+        return Utf8.encode(buffer, start - offset, end - offset, dest, destIndex);
+    }
+
+    @Override
+    public void release(int index) {
+        released = Math.max(released, index);
+    }
+
+    @Override
+    public long skipRun(int index, SkipRun run) throws IOException {
+        int lines = 0;
+        while (hasSymbol(index)) {
+            long skipped = run.skip(buffer, index - offset, length);
+            lines += SkipRun.lines(skipped);
+            index = SkipRun.end(skipped) + offset;
+            if (index < offset + length) {
+                break;
+            }
+            // whole window is skipped, so it can be dropped before refilling
+            release(index);
+        }
+        return SkipRun.result(index, lines);
+    }
+
+    /**
+     * Drops released symbols and reads more symbols into the buffer.
+     * 
+     * @return <code>false</code> if the end of the stream was reached
+     * @throws IOException if reading fails
+     */
+    private boolean fill() throws IOException {
+        int drop = Math.min(released - offset, length);
+        if (drop > 0) {
+            System.arraycopy(buffer, drop, buffer, 0, length - drop);
+            offset += drop;
+            length -= drop;
+        }
+        if (length == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        int read = reader.read(buffer, length, buffer.length - length);
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        length += read;
+        return true;
+    }
+
+}
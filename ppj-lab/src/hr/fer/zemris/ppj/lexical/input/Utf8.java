@@ -0,0 +1,63 @@
+package hr.fer.zemris.ppj.lexical.input;
+
+/**
+ * Helper that encodes symbols as UTF-8 bytes straight into a byte array,
+ * without creating strings.
+ * 
+ * @author fhrenic
+ */
+public class Utf8 {
+
+    /**
+     * Maximum number of bytes a single symbol is encoded to.
+     */
+    public static final int MAX_BYTES_PER_SYMBOL = 3;
+
+    private static final byte REPLACEMENT = '?';
+
+    /**
+     * Can't be instantiated
+     */
+    private Utf8() {
+    }
+
+    /**
+     * Encodes symbols from the start index (inclusive) to the end index
+     * (exclusive). Destination must have room for
+     * {@link #MAX_BYTES_PER_SYMBOL} bytes per symbol.
+     * 
+     * @param symbols symbols
+     * @param start start index
+     * @param end end index
+     * @param dest destination array
+     * @param destIndex index of the first byte in the destination
+     * @return number of written bytes
+     */
+    public static int encode(char[] symbols, int start, int end, byte[] dest, int destIndex) {
+        int idx = destIndex;
+        for (int i = start; i < end; i++) {
+            char c = symbols[i];
+            if (c < 0x80) {
+                dest[idx++] = (byte) c;
+            } else if (c < 0x800) {
+                dest[idx++] = (byte) (0xC0 | (c >> 6));
+                dest[idx++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(symbols[i + 1])) {
+                int cp = Character.toCodePoint(c, symbols[++i]);
+                dest[idx++] = (byte) (0xF0 | (cp >> 18));
+                dest[idx++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                dest[idx++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                dest[idx++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                dest[idx++] = REPLACEMENT;
+            } else {
+                dest[idx++] = (byte) (0xE0 | (c >> 12));
+                dest[idx++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dest[idx++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return idx - destIndex;
+    }
+
+}
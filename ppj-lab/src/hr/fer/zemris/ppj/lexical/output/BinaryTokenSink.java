@@ -0,0 +1,162 @@
+package hr.fer.zemris.ppj.lexical.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import hr.fer.zemris.ppj.lexical.input.LexInput;
+import hr.fer.zemris.ppj.lexical.input.Utf8;
+import hr.fer.zemris.ppj.util.Streamer;
+
+/**
+ * Writes tokens in a compact binary format that is read by the syntax
+ * analyzer. Stream starts with {@link Streamer#BINARY_TOKENS_HEADER}, after
+ * that every token is written as:
+ * <ul>
+ * <li>index of it's lex class, lex classes are numbered in the order they first
+ * appear; the first time a class appears it's index is followed by the length
+ * and UTF-8 bytes of it's name</li>
+ * <li>difference between it's line number and the line number of the previous
+ * token (the first token is compared to line zero)</li>
+ * <li>length and UTF-8 bytes of it's text</li>
+ * </ul>
+ * All numbers are unsigned varints, seven bits per byte with the highest bit
+ * set on all bytes except the last one. Line differences are zigzag encoded.
+ * 
+ * Tokens are buffered the same way as in {@link TextTokenSink}.
+ * 
+ * @author fhrenic
+ */
+public class BinaryTokenSink implements TokenSink {
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private OutputStream output;
+    private byte[] buffer;
+    private int length;
+
+    // lex class -> index
+    private Map<String, Integer> lexClasses;
+    private int lastLineNumber;
+
+    /**
+     * Creates a new sink that writes to the given output stream.
+     * 
+     * @param output output stream
+     */
+    public BinaryTokenSink(OutputStream output) {
+        this(output, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new sink that writes to the given output stream, tokens are
+     * kept in a buffer of the given capacity.
+     * 
+     * @param output output stream
+     * @param capacity buffer capacity in bytes
+     */
+    public BinaryTokenSink(OutputStream output, int capacity) {
+        this.output = output;
+        buffer = new byte[Math.max(capacity, Streamer.BINARY_TOKENS_HEADER.length)];
+        lexClasses = new HashMap<>();
+        lastLineNumber = 0;
+
+        System.arraycopy(Streamer.BINARY_TOKENS_HEADER, 0, buffer, 0,
+                Streamer.BINARY_TOKENS_HEADER.length);
+        length = Streamer.BINARY_TOKENS_HEADER.length;
+    }
+
+    @Override
+    public void addToken(String lexClass, int lineNumber, LexInput input, int start, int end)
+            throws IOException {
+        Integer index = lexClasses.get(lexClass);
+        byte[] name = null;
+        if (index == null) {
+            index = lexClasses.size();
+            lexClasses.put(lexClass, index);
+            name = lexClass.getBytes(StandardCharsets.UTF_8);
+        }
+        int maxText = (end - start) * Utf8.MAX_BYTES_PER_SYMBOL;
+        ensureCapacity(4 * MAX_VARINT_BYTES + (name == null ? 0 : name.length) + maxText);
+
+        writeVarint(index);
+        if (name != null) {
+            writeVarint(name.length);
+            System.arraycopy(name, 0, buffer, length, name.length);
+            length += name.length;
+        }
+        int delta = lineNumber - lastLineNumber;
+        writeVarint((delta << 1) ^ (delta >> 31));
+        lastLineNumber = lineNumber;
+
+        // text is copied right after a one byte length, it is moved if the
+        // length needs more bytes
+        int textLength = input.copyTo(start, end, buffer, length + 1);
+        int lengthBytes = varintLength(textLength);
+        if (lengthBytes > 1) {
+            System.arraycopy(buffer, length + 1, buffer, length + lengthBytes, textLength);
+        }
+        writeVarint(textLength);
+        length += textLength;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (length > 0) {
+            output.write(buffer, 0, length);
+            length = 0;
+        }
+        output.flush();
+    }
+
+    /**
+     * Makes room for the given number of bytes. Buffer is written out if it
+     * doesn't have enough room, and it grows only if a single token doesn't
+     * fit in it.
+     * 
+     * @param needed number of bytes
+     * @throws IOException if writing fails
+     */
+    private void ensureCapacity(int needed) throws IOException {
+        if (length + needed <= buffer.length) {
+            return;
+        }
+        if (length > 0) {
+            output.write(buffer, 0, length);
+            length = 0;
+        }
+        if (needed > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(needed, buffer.length * 2));
+        }
+    }
+
+    /**
+     * Writes an unsigned varint.
+     * 
+     * @param value value, treated as unsigned
+     */
+    private void writeVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    /**
+     * @return number of bytes the value takes as a varint
+     */
+    private static int varintLength(int value) {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,124 @@
+package hr.fer.zemris.ppj.lexical.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import hr.fer.zemris.ppj.lexical.input.LexInput;
+import hr.fer.zemris.ppj.lexical.input.Utf8;
+
+/**
+ * Writes tokens as text, one token per line: lex class, line number and text of
+ * the token, separated by spaces.
+ * 
+ * Tokens are encoded straight into a large byte buffer and the buffer is
+ * written to the output stream only when it fills up or when the sink is
+ * flushed. Line numbers are encoded digit by digit and lex class names are
+ * encoded once, so no strings are created per token.
+ * 
+ * @author fhrenic
+ */
+public class TextTokenSink implements TokenSink {
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int MAX_DIGITS = 10;
+
+    private OutputStream output;
+    private byte[] buffer;
+    private int length;
+
+    // lex class -> bytes of it's name followed by a space
+    private Map<String, byte[]> lexClasses;
+
+    /**
+     * Creates a new sink that writes to the given output stream.
+     * 
+     * @param output output stream
+     */
+    public TextTokenSink(OutputStream output) {
+        this(output, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new sink that writes to the given output stream, tokens are
+     * kept in a buffer of the given capacity.
+     * 
+     * @param output output stream
+     * @param capacity buffer capacity in bytes
+     */
+    public TextTokenSink(OutputStream output, int capacity) {
+        this.output = output;
+        buffer = new byte[capacity];
+        length = 0;
+        lexClasses = new HashMap<>();
+    }
+
+    @Override
+    public void addToken(String lexClass, int lineNumber, LexInput input, int start, int end)
+            throws IOException {
+        byte[] name = lexClasses.get(lexClass);
+        if (name == null) {
+            name = (lexClass + " ").getBytes(StandardCharsets.UTF_8);
+            lexClasses.put(lexClass, name);
+        }
+        ensureCapacity(name.length + MAX_DIGITS + 2 + (end - start) * Utf8.MAX_BYTES_PER_SYMBOL);
+
+        System.arraycopy(name, 0, buffer, length, name.length);
+        length += name.length;
+        writeNumber(lineNumber);
+        buffer[length++] = ' ';
+        length += input.copyTo(start, end, buffer, length);
+        buffer[length++] = '\n';
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (length > 0) {
+            output.write(buffer, 0, length);
+            length = 0;
+        }
+        output.flush();
+    }
+
+    /**
+     * Makes room for the given number of bytes. Buffer is written out if it
+     * doesn't have enough room, and it grows only if a single token doesn't
+     * fit in it.
+     * 
+     * @param needed number of bytes
+     * @throws IOException if writing fails
+     */
+    private void ensureCapacity(int needed) throws IOException {
+        if (length + needed <= buffer.length) {
+            return;
+        }
+        if (length > 0) {
+            output.write(buffer, 0, length);
+            length = 0;
+        }
+        if (needed > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(needed, buffer.length * 2));
+        }
+    }
+
+    /**
+     * Writes a non negative number in decimal.
+     * 
+     * @param number number
+     */
+    private void writeNumber(int number) {
+        int digits = 1;
+        for (int rest = number / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        length += digits;
+        for (int idx = length - 1; idx >= length - digits; idx--) {
+            buffer[idx] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+    }
+
+}
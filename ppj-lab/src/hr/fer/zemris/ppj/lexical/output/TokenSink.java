@@ -0,0 +1,37 @@
+package hr.fer.zemris.ppj.lexical.output;
+
+import java.io.IOException;
+
+import hr.fer.zemris.ppj.lexical.input.LexInput;
+
+/**
+ * Receives tokens recognized by the lexical analyzer. Text of a token isn't
+ * given as a string, it is a part of the input so a sink can copy it from
+ * there. Sink can keep tokens until it's flushed.
+ * 
+ * @author fhrenic
+ */
+public interface TokenSink {
+
+    /**
+     * Adds a token. Text of the token are symbols of the input from the start
+     * index (inclusive) to the end index (exclusive).
+     * 
+     * @param lexClass lex class of the token
+     * @param lineNumber line the token is in
+     * @param input input the token was read from
+     * @param start start index of the token's text
+     * @param end end index of the token's text
+     * @throws IOException if writing the token fails
+     */
+    public void addToken(String lexClass, int lineNumber, LexInput input, int start, int end)
+            throws IOException;
+
+    /**
+     * Writes out all tokens the sink kept.
+     * 
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException;
+
+}
@@ -0,0 +1,175 @@
+package hr.fer.zemris.ppj.lexical.parallel;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import hr.fer.zemris.ppj.lexical.Lex;
+import hr.fer.zemris.ppj.lexical.LexFactory;
+import hr.fer.zemris.ppj.lexical.TokenBoundaryListener;
+import hr.fer.zemris.ppj.lexical.input.LexInput;
+import hr.fer.zemris.ppj.lexical.input.LineIndex;
+
+/**
+ * Speculative analysis of one part of the input. Lexer starts at the beginning
+ * of the part in a guessed state, with line numbers counted from zero (or
+ * taken from the index of lines, if the lexer can use it), and
+ * stops at the first token that starts at or after the end of the part. Tokens
+ * and all points where tokens start (with the lexer's state and line there) are
+ * kept, so the real analysis can join this one at any of those points.
+ * 
+ * @author fhrenic
+ */
+class Chunk implements Callable<Chunk>, TokenBoundaryListener {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private LexFactory factory;
+    private LexInput input;
+    private LineIndex lines;
+    private int start;
+    private int limit;
+    private String startState;
+
+    private TokenBuffer tokens;
+    // boundaries, ordered by index
+    private int[] indices;
+    private String[] states;
+    private int[] lineNumbers;
+    private int[] tokenCounts;
+    private int size;
+
+    private int endIndex;
+    private String endState;
+    private int endLineNumber;
+
+    /**
+     * Creates a new part of the input.
+     * 
+     * @param factory creates the lexer
+     * @param input whole input
+     * @param lines index of lines of the input
+     * @param start index of the part's first symbol
+     * @param limit index after the part's last symbol
+     * @param startState guessed state of the lexer at the start
+     */
+    Chunk(LexFactory factory, LexInput input, LineIndex lines, int start, int limit,
+            String startState) {
+        this.factory = factory;
+        this.input = input;
+        this.lines = lines;
+        this.start = start;
+        this.limit = limit;
+        this.startState = startState;
+
+        tokens = new TokenBuffer();
+        indices = new int[INITIAL_CAPACITY];
+        states = new String[INITIAL_CAPACITY];
+        lineNumbers = new int[INITIAL_CAPACITY];
+        tokenCounts = new int[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public Chunk call() throws Exception {
+        Lex lex = factory.createLex(tokens);
+        lex.setBoundaryListener(this);
+        lex.setLineIndex(lines);
+        lex.startAt(start, startState, 0);
+        lex.analyzeInput(input);
+        endIndex = lex.getStartIndex();
+        endState = lex.getCurrentState();
+        endLineNumber = lex.getLineNumber();
+        return this;
+    }
+
+    @Override
+    public boolean atBoundary(int index, String state, int lineNumber) {
+        if (index >= limit) {
+            return false;
+        }
+        if (size == indices.length) {
+            int capacity = size * 2;
+            indices = Arrays.copyOf(indices, capacity);
+            states = Arrays.copyOf(states, capacity);
+            lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+            tokenCounts = Arrays.copyOf(tokenCounts, capacity);
+        }
+        indices[size] = index;
+        states[size] = state;
+        lineNumbers[size] = lineNumber;
+        tokenCounts[size] = tokens.size();
+        size++;
+        return true;
+    }
+
+    /**
+     * Finds the boundary with the given index and state.
+     * 
+     * @param index index of a token's first symbol
+     * @param state state of the lexer
+     * @return boundary, -1 if this analysis didn't get to that point
+     */
+    int find(int index, String state) {
+        int boundary = Arrays.binarySearch(indices, 0, size, index);
+        if (boundary < 0) {
+            return -1;
+        }
+        // more boundaries can have the same index if the state changed
+        while (boundary > 0 && indices[boundary - 1] == index) {
+            boundary--;
+        }
+        for (; boundary < size && indices[boundary] == index; boundary++) {
+            if (states[boundary].equals(state)) {
+                return boundary;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return index after the part's last symbol
+     */
+    int limit() {
+        return limit;
+    }
+
+    /**
+     * @return line number at the boundary, counted from zero or real
+     */
+    int lineNumber(int boundary) {
+        return lineNumbers[boundary];
+    }
+
+    /**
+     * @return number of tokens before the boundary
+     */
+    int tokenCount(int boundary) {
+        return tokenCounts[boundary];
+    }
+
+    TokenBuffer tokens() {
+        return tokens;
+    }
+
+    /**
+     * @return index where the analysis stopped
+     */
+    int endIndex() {
+        return endIndex;
+    }
+
+    /**
+     * @return state of the lexer where the analysis stopped
+     */
+    String endState() {
+        return endState;
+    }
+
+    /**
+     * @return line number where the analysis stopped, counted from zero or
+     *         real
+     */
+    int endLineNumber() {
+        return endLineNumber;
+    }
+
+}
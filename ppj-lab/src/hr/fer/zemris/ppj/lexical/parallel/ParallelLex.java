@@ -0,0 +1,189 @@
+package hr.fer.zemris.ppj.lexical.parallel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import hr.fer.zemris.ppj.lexical.Lex;
+import hr.fer.zemris.ppj.lexical.LexFactory;
+import hr.fer.zemris.ppj.lexical.TokenBoundaryListener;
+import hr.fer.zemris.ppj.lexical.input.ArrayInput;
+import hr.fer.zemris.ppj.lexical.input.LineIndex;
+import hr.fer.zemris.ppj.lexical.output.TokenSink;
+
+/**
+ * Analyzes a large input on more threads at once. Input is split into parts,
+ * every part (except the first one) starts right after a new line if there is
+ * one near. All parts are analyzed at the same time on a fork join pool,
+ * starting in the lexer's starting state, as if the part was the whole input.
+ * 
+ * Parts are then joined in order. What the lexer does from the start of a
+ * token depends only on the token's position and the lexer's state, so when
+ * the real analysis gets to a point where the analysis of the next part also
+ * started a token in the same state, the rest of the next part is taken as it
+ * is. Line numbers of the next part are moved by the difference between the
+ * real line number and the part's line number at that point (if the rules
+ * count exactly the new lines, lexers take real line numbers from an index of
+ * lines, see {@link Lex#setLineIndex(LineIndex)}). If the guess was
+ * wrong and there is no such point, the part is analyzed again from where the
+ * real analysis is, until it gets to such a point. Result is always the same
+ * as the result of a single lexer.
+ * 
+ * @author fhrenic
+ */
+public class ParallelLex {
+
+    /**
+     * Inputs shorter than this aren't split.
+     */
+    public static final int MIN_CHUNK_LENGTH = 1 << 18;
+
+    private static final int NEW_LINE_SEARCH = 1 << 12;
+
+    private LexFactory factory;
+    private String startState;
+    private int parallelism;
+
+    /**
+     * Creates a new analyzer that uses as many threads as there are
+     * processors.
+     * 
+     * @param factory creates lexers
+     * @param startState starting state of the lexer
+     */
+    public ParallelLex(LexFactory factory, String startState) {
+        this(factory, startState, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new analyzer.
+     * 
+     * @param factory creates lexers
+     * @param startState starting state of the lexer
+     * @param parallelism number of threads, input is split into that many parts
+     */
+    public ParallelLex(LexFactory factory, String startState, int parallelism) {
+        this.factory = factory;
+        this.startState = startState;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Analyzes the input and gives tokens to the sink, in order.
+     * 
+     * @param input input
+     * @param sink sink that receives tokens
+     * @throws IOException if the sink fails
+     */
+    public void analyzeInput(ArrayInput input, TokenSink sink) throws IOException {
+        int numChunks = Math.max(1, Math.min(parallelism, input.length() / MIN_CHUNK_LENGTH));
+        if (numChunks == 1) {
+            factory.createLex(sink).analyzeInput(input);
+            return;
+        }
+
+        int[] starts = chunkStarts(input, numChunks);
+        LineIndex lines = input.lineIndex();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<Chunk>> chunks = new ArrayList<>();
+            for (int idx = 0; idx < numChunks; idx++) {
+                int limit = idx + 1 < numChunks ? starts[idx + 1] : input.length();
+                chunks.add(pool.submit(new Chunk(factory, input, lines, starts[idx], limit,
+                        startState)));
+            }
+            join(input, lines, chunks, sink);
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException("Parallel analysis failed", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        sink.flush();
+    }
+
+    /**
+     * Finds where parts start.
+     */
+    private static int[] chunkStarts(ArrayInput input, int numChunks) {
+        int[] starts = new int[numChunks];
+        for (int idx = 1; idx < numChunks; idx++) {
+            int start = (int) ((long) input.length() * idx / numChunks);
+            int searchEnd = Math.min(input.length(), start + NEW_LINE_SEARCH);
+            for (int pos = start; pos < searchEnd; pos++) {
+                if (input.symbolAt(pos) == '\n') {
+                    start = pos + 1;
+                    break;
+                }
+            }
+            starts[idx] = Math.max(start, starts[idx - 1]);
+        }
+        return starts;
+    }
+
+    /**
+     * Joins analyses of parts, in order.
+     */
+    private void join(ArrayInput input, LineIndex lines, List<Future<Chunk>> chunks,
+            TokenSink sink)
+            throws InterruptedException, ExecutionException, IOException {
+        // where the real analysis is
+        int index = 0;
+        String state = startState;
+        int lineNumber = 1;
+
+        for (Future<Chunk> future : chunks) {
+            Chunk chunk = future.get();
+            int boundary = chunk.find(index, state);
+
+            if (boundary < 0 && index < chunk.limit()) {
+                // wrong guess, analyze again until the analyses meet
+                Lex lex = factory.createLex(sink);
+                lex.setLineIndex(lines);
+                Meeting meeting = new Meeting(chunk);
+                lex.setBoundaryListener(meeting);
+                lex.startAt(index, state, lineNumber);
+                lex.analyzeInput(input);
+                boundary = meeting.boundary;
+                index = lex.getStartIndex();
+                state = lex.getCurrentState();
+                lineNumber = lex.getLineNumber();
+            }
+
+            if (boundary >= 0) {
+                int lineOffset = lineNumber - chunk.lineNumber(boundary);
+                chunk.tokens().writeTo(chunk.tokenCount(boundary), lineOffset, input, sink);
+                index = chunk.endIndex();
+                state = chunk.endState();
+                lineNumber = chunk.endLineNumber() + lineOffset;
+            }
+        }
+    }
+
+    /**
+     * Stops the lexer when it gets to a boundary of the part, or to the part's
+     * end.
+     */
+    private static class Meeting implements TokenBoundaryListener {
+
+        private Chunk chunk;
+        private int boundary;
+
+        Meeting(Chunk chunk) {
+            this.chunk = chunk;
+            boundary = -1;
+        }
+
+        @Override
+        public boolean atBoundary(int index, String state, int lineNumber) {
+            if (index >= chunk.limit()) {
+                return false;
+            }
+            boundary = chunk.find(index, state);
+            return boundary < 0;
+        }
+    }
+
+}
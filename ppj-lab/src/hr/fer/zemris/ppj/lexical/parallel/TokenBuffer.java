@@ -0,0 +1,82 @@
+package hr.fer.zemris.ppj.lexical.parallel;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import hr.fer.zemris.ppj.lexical.input.LexInput;
+import hr.fer.zemris.ppj.lexical.output.TokenSink;
+
+/**
+ * Sink that keeps tokens in memory, so they can be given to another sink
+ * later, with their line numbers moved. Text of tokens isn't copied, only
+ * their positions in the input are kept.
+ * 
+ * @author fhrenic
+ */
+public class TokenBuffer implements TokenSink {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private String[] lexClasses;
+    private int[] lineNumbers;
+    private int[] starts;
+    private int[] ends;
+    private int size;
+
+    /**
+     * Creates a new, empty buffer.
+     */
+    public TokenBuffer() {
+        lexClasses = new String[INITIAL_CAPACITY];
+        lineNumbers = new int[INITIAL_CAPACITY];
+        starts = new int[INITIAL_CAPACITY];
+        ends = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    @Override
+    public void addToken(String lexClass, int lineNumber, LexInput input, int start, int end) {
+        if (size == lexClasses.length) {
+            int capacity = size * 2;
+            lexClasses = Arrays.copyOf(lexClasses, capacity);
+            lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        lexClasses[size] = lexClass;
+        lineNumbers[size] = lineNumber;
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    @Override
+    public void flush() {
+        // tokens are kept until they are given to another sink
+    }
+
+    /**
+     * @return number of tokens
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gives tokens from the given index on to the sink.
+     * 
+     * @param from index of the first token
+     * @param lineOffset number that is added to line numbers
+     * @param input input the tokens were read from
+     * @param sink sink that receives tokens
+     * @throws IOException if the sink fails
+     */
+    public void writeTo(int from, int lineOffset, LexInput input, TokenSink sink)
+            throws IOException {
+        for (int idx = from; idx < size; idx++) {
+            sink.addToken(lexClasses[idx], lineNumbers[idx] + lineOffset, input, starts[idx],
+                    ends[idx]);
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package hr.fer.zemris.ppj.lexical.regex;
+
+import java.util.List;
+
+/**
+ * Expression that matches what any of the choices matches.
+ * 
+ * @author fhrenic
+ */
+public class ChoiceRegex extends Regex {
+
+    private List<Regex> choices;
+
+    /**
+     * @param choices choices
+     */
+    public ChoiceRegex(List<Regex> choices) {
+        this.choices = choices;
+    }
+
+    @Override
+    public void build(NFABuilder builder, int left, int right) {
+        for (Regex choice : choices) {
+            // every choice starts in it's own state, so they don't share the
+            // state's transition via symbols
+            int start = builder.newState();
+            builder.addEpsilonTransition(left, start);
+            choice.build(builder, start, right);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("(");
+        for (Regex choice : choices) {
+            if (sb.length() > 1) {
+                sb.append('|');
+            }
+            sb.append(choice);
+        }
+        return sb.append(')').toString();
+    }
+
+}
@@ -0,0 +1,58 @@
+package hr.fer.zemris.ppj.lexical.regex;
+
+import java.util.List;
+
+/**
+ * Expressions one after another, no expressions match the empty string.
+ * 
+ * @author fhrenic
+ */
+public class ConcatRegex extends Regex {
+
+    private List<Regex> parts;
+
+    /**
+     * @param parts expressions in order
+     */
+    public ConcatRegex(List<Regex> parts) {
+        this.parts = parts;
+    }
+
+    @Override
+    public void build(NFABuilder builder, int left, int right) {
+        if (parts.isEmpty()) {
+            builder.addEpsilonTransition(left, right);
+            return;
+        }
+        int state = left;
+        for (int idx = 0; idx < parts.size() - 1; idx++) {
+            int next = builder.newState();
+            parts.get(idx).build(builder, state, next);
+            state = next;
+        }
+        parts.get(parts.size() - 1).build(builder, state, right);
+    }
+
+    @Override
+    public String literal() {
+        StringBuilder sb = new StringBuilder();
+        for (Regex part : parts) {
+            String literal = part.literal();
+            if (literal == null) {
+                return null;
+            }
+            sb.append(literal);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Regex part : parts) {
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+
+}
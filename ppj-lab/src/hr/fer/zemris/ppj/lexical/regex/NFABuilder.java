@@ -0,0 +1,34 @@
+package hr.fer.zemris.ppj.lexical.regex;
+
+/**
+ * Builds a nondeterministic automaton from regular expressions. States are
+ * numbers, every state can have at most one transition via symbols, but it
+ * can be a transition via a whole set of them.
+ * 
+ * @author fhrenic
+ */
+public interface NFABuilder {
+
+    /**
+     * @return new state
+     */
+    public int newState();
+
+    /**
+     * Adds an epsilon transition.
+     * 
+     * @param from state the transition leaves
+     * @param to state the transition enters
+     */
+    public void addEpsilonTransition(int from, int to);
+
+    /**
+     * Adds a transition via any symbol of the set.
+     * 
+     * @param from state the transition leaves
+     * @param to state the transition enters
+     * @param symbols symbols of the transition
+     */
+    public void addTransition(int from, int to, SymbolSet symbols);
+
+}
@@ -0,0 +1,33 @@
+package hr.fer.zemris.ppj.lexical.regex;
+
+/**
+ * Node of a parsed regular expression. Nodes can be shared, a regular
+ * definition is parsed once and every expression that uses it points to the
+ * same node.
+ * 
+ * @author fhrenic
+ */
+public abstract class Regex {
+
+    /**
+     * Adds states and transitions that recognize this expression, between the
+     * given states. New states are created for every call, so a shared node
+     * gets it's own states everywhere it's used. Transitions via symbols are
+     * only added from new states or from the left state, and only by nodes
+     * that don't add anything else from it.
+     * 
+     * @param builder builder of the automaton
+     * @param left state before the expression
+     * @param right state after the expression
+     */
+    public abstract void build(NFABuilder builder, int left, int right);
+
+    /**
+     * @return the only string this expression matches, <code>null</code> if it
+     *         matches more strings or none
+     */
+    public String literal() {
+        return null;
+    }
+
+}
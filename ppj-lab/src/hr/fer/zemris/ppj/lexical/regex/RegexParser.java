@@ -0,0 +1,210 @@
+package hr.fer.zemris.ppj.lexical.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import hr.fer.zemris.ppj.util.Util;
+
+/**
+ * Parses regular expressions of the generator's input into trees of
+ * {@link Regex} nodes. Operators are <code>|</code>, <code>*</code>,
+ * <code>(</code>, <code>)</code>, <code>{name}</code> for a regular
+ * definition, <code>$</code> for the empty string and <code>\</code> that
+ * makes the next symbol literal (see {@link Util#unescape(char)}).
+ *
+ * With the extended syntax, <code>+</code> and <code>?</code> are operators
+ * too, and <code>[...]</code> is a class of symbols, with ranges like
+ * <code>a-z</code> and <code>^</code> at the beginning for the complement. In
+ * the basic syntax they are literal symbols, so old definitions mean the same
+ * thing as before.
+ *
+ * Regular definitions aren't copied into expressions, a use of a definition
+ * points to it's parsed tree.
+ *
+ * @author fhrenic
+ */
+public class RegexParser {
+
+    private static final char EPS = '$';
+
+    private Map<String, Regex> definitions;
+    private boolean extended;
+
+    private String regex;
+    private int index;
+    private int depth;
+
+    /**
+     * Creates a new parser.
+     *
+     * @param definitions regular definitions that can be used, name -> tree
+     * @param extended if <code>true</code> the extended syntax is used
+     */
+    public RegexParser(Map<String, Regex> definitions, boolean extended) {
+        this.definitions = definitions;
+        this.extended = extended;
+    }
+
+    /**
+     * Parses the given regular expression.
+     *
+     * @param regex regular expression
+     * @return tree of the expression
+     * @throws IllegalArgumentException if the expression isn't valid
+     */
+    public Regex parse(String regex) {
+        this.regex = regex;
+        index = 0;
+        depth = 0;
+        Regex tree = parseChoice();
+        if (index < regex.length()) {
+            throw error("Unexpected symbol");
+        }
+        return tree;
+    }
+
+    /**
+     * choice := concat ('|' concat)*
+     */
+    private Regex parseChoice() {
+        List<Regex> choices = new ArrayList<>();
+        choices.add(parseConcat());
+        while (index < regex.length() && regex.charAt(index) == '|') {
+            index++;
+            choices.add(parseConcat());
+        }
+        return choices.size() == 1 ? choices.get(0) : new ChoiceRegex(choices);
+    }
+
+    /**
+     * concat := repeat*
+     */
+    private Regex parseConcat() {
+        List<Regex> parts = new ArrayList<>();
+        while (index < regex.length()) {
+            char symbol = regex.charAt(index);
+            if (symbol == '|' || symbol == ')' && depth > 0) {
+                break;
+            }
+            parts.add(parseRepeat());
+        }
+        return parts.size() == 1 ? parts.get(0) : new ConcatRegex(parts);
+    }
+
+    /**
+     * repeat := atom operator*, in the basic syntax there is at most one
+     * operator and it's <code>*</code>
+     */
+    private Regex parseRepeat() {
+        Regex atom = parseAtom();
+        while (index < regex.length() && isRepeat(regex.charAt(index))) {
+            atom = new RepeatRegex(atom, regex.charAt(index++));
+            if (!extended) {
+                break;
+            }
+        }
+        return atom;
+    }
+
+    private boolean isRepeat(char symbol) {
+        return symbol == '*' || extended && (symbol == '+' || symbol == '?');
+    }
+
+    /**
+     * atom := '(' choice ')' | '{' name '}' | '[' class ']' | '\' symbol |
+     * '$' | symbol
+     */
+    private Regex parseAtom() {
+        char symbol = regex.charAt(index++);
+        switch (symbol) {
+            case '(':
+                depth++;
+                Regex inner = parseChoice();
+                if (index == regex.length()) {
+                    throw error("Missing )");
+                }
+                index++;
+                depth--;
+                return inner;
+            case '{':
+                int closer = regex.indexOf('}', index);
+                if (closer < 0) {
+                    throw error("Missing }");
+                }
+                String name = regex.substring(index, closer);
+                Regex definition = definitions.get(name);
+                if (definition == null) {
+                    throw error("Unknown regular definition {" + name + "}");
+                }
+                index = closer + 1;
+                return definition;
+            case '\\':
+                return new SymbolRegex(SymbolSet.of(Util.unescape(escaped())));
+            case EPS:
+                return new ConcatRegex(new ArrayList<Regex>());
+            case '[':
+                return extended ? new SymbolRegex(parseClass())
+                        : new SymbolRegex(SymbolSet.of(symbol));
+            default:
+                return new SymbolRegex(SymbolSet.of(symbol));
+        }
+    }
+
+    /**
+     * class := '^'? (symbol ('-' symbol)?)* ']', opening bracket is already
+     * read
+     */
+    private SymbolSet parseClass() {
+        boolean negated = index < regex.length() && regex.charAt(index) == '^';
+        if (negated) {
+            index++;
+        }
+        char[] ranges = new char[16];
+        int length = 0;
+        while (true) {
+            if (index == regex.length()) {
+                throw error("Missing ]");
+            }
+            if (regex.charAt(index) == ']') {
+                index++;
+                break;
+            }
+            char first = classSymbol();
+            char last = first;
+            if (index + 1 < regex.length() && regex.charAt(index) == '-'
+                    && regex.charAt(index + 1) != ']') {
+                index++;
+                last = classSymbol();
+            }
+            if (length == ranges.length) {
+                ranges = Arrays.copyOf(ranges, length * 2);
+            }
+            ranges[length++] = first;
+            ranges[length++] = last;
+        }
+        SymbolSet symbols = SymbolSet.of(ranges, length);
+        return negated ? symbols.complement() : symbols;
+    }
+
+    private char classSymbol() {
+        char symbol = regex.charAt(index++);
+        return symbol == '\\' ? Util.unescape(escaped()) : symbol;
+    }
+
+    /**
+     * @return symbol after the backslash
+     */
+    private char escaped() {
+        if (index == regex.length()) {
+            throw error("Nothing to escape");
+        }
+        return regex.charAt(index++);
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at " + index + " in " + regex);
+    }
+
+}
@@ -0,0 +1,50 @@
+package hr.fer.zemris.ppj.lexical.regex;
+
+/**
+ * Expression repeated zero or more times (<code>*</code>), one or more times
+ * (<code>+</code>) or at most once (<code>?</code>).
+ * 
+ * @author fhrenic
+ */
+public class RepeatRegex extends Regex {
+
+    private Regex regex;
+    private char operator;
+
+    /**
+     * @param regex repeated expression
+     * @param operator one of <code>*</code>, <code>+</code> and
+     *            <code>?</code>
+     */
+    public RepeatRegex(Regex regex, char operator) {
+        if (operator != '*' && operator != '+' && operator != '?') {
+            throw new IllegalArgumentException("Unknown operator: " + operator);
+        }
+        this.regex = regex;
+        this.operator = operator;
+    }
+
+    @Override
+    public void build(NFABuilder builder, int left, int right) {
+        if (operator == '?') {
+            regex.build(builder, left, right);
+            builder.addEpsilonTransition(left, right);
+            return;
+        }
+        // loops go through new states, so they can't be entered from around
+        int start = builder.newState();
+        int end = operator == '*' ? start : builder.newState();
+        builder.addEpsilonTransition(left, start);
+        regex.build(builder, start, end);
+        if (end != start) {
+            builder.addEpsilonTransition(end, start);
+        }
+        builder.addEpsilonTransition(end, right);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + regex + ")" + operator;
+    }
+
+}
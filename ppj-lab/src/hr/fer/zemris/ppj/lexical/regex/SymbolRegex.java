@@ -0,0 +1,39 @@
+package hr.fer.zemris.ppj.lexical.regex;
+
+/**
+ * Expression that matches one symbol of a set.
+ * 
+ * @author fhrenic
+ */
+public class SymbolRegex extends Regex {
+
+    private SymbolSet symbols;
+
+    /**
+     * @param symbols symbols that are matched
+     */
+    public SymbolRegex(SymbolSet symbols) {
+        this.symbols = symbols;
+    }
+
+    @Override
+    public void build(NFABuilder builder, int left, int right) {
+        if (!symbols.isEmpty()) {
+            builder.addTransition(left, right, symbols);
+        }
+    }
+
+    @Override
+    public String literal() {
+        if (symbols.rangeCount() == 1 && symbols.first(0) == symbols.last(0)) {
+            return String.valueOf(symbols.first(0));
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return symbols.toString();
+    }
+
+}
@@ -0,0 +1,162 @@
+package hr.fer.zemris.ppj.lexical.regex;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Set of symbols, kept as sorted ranges that don't touch each other. A class
+ * like <code>[a-zA-Z]</code> is two ranges, no matter how many symbols it has.
+ * Sets are never changed after they are created.
+ * 
+ * @author fhrenic
+ */
+public class SymbolSet implements Serializable {
+
+    private static final long serialVersionUID = 7270127913616101640L;
+
+    /**
+     * Set without symbols.
+     */
+    public static final SymbolSet EMPTY = new SymbolSet(new char[0]);
+
+    // first and last symbol of every range, both are in the set
+    private char[] ranges;
+
+    private SymbolSet(char[] ranges) {
+        this.ranges = ranges;
+    }
+
+    /**
+     * @return set with only the given symbol
+     */
+    public static SymbolSet of(char symbol) {
+        return new SymbolSet(new char[] { symbol, symbol });
+    }
+
+    /**
+     * Creates a set from ranges in any order, they can overlap.
+     * 
+     * @param ranges first and last symbol of every range
+     * @param length number of used elements of the array, it's even
+     * @return set with symbols of all ranges
+     */
+    public static SymbolSet of(char[] ranges, int length) {
+        // ranges are sorted by their first symbol as (first, last) pairs
+        long[] sorted = new long[length / 2];
+        for (int idx = 0; idx < sorted.length; idx++) {
+            char first = ranges[2 * idx];
+            char last = ranges[2 * idx + 1];
+            if (first > last) {
+                throw new IllegalArgumentException("Range " + first + "-" + last
+                        + " is in reverse order");
+            }
+            sorted[idx] = ((long) first << 16) | last;
+        }
+        Arrays.sort(sorted);
+
+        char[] merged = new char[length];
+        int size = 0;
+        for (long range : sorted) {
+            char first = (char) (range >>> 16);
+            char last = (char) range;
+            if (size > 0 && first <= merged[size - 1] + 1) {
+                merged[size - 1] = (char) Math.max(merged[size - 1], last);
+            } else {
+                merged[size++] = first;
+                merged[size++] = last;
+            }
+        }
+        return new SymbolSet(Arrays.copyOf(merged, size));
+    }
+
+    /**
+     * @return set of all symbols that aren't in this set
+     */
+    public SymbolSet complement() {
+        char[] complement = new char[ranges.length + 2];
+        int size = 0;
+        int next = Character.MIN_VALUE;
+        for (int idx = 0; idx < ranges.length; idx += 2) {
+            if (ranges[idx] > next) {
+                complement[size++] = (char) next;
+                complement[size++] = (char) (ranges[idx] - 1);
+            }
+            next = ranges[idx + 1] + 1;
+        }
+        if (next <= Character.MAX_VALUE) {
+            complement[size++] = (char) next;
+            complement[size++] = Character.MAX_VALUE;
+        }
+        return new SymbolSet(Arrays.copyOf(complement, size));
+    }
+
+    /**
+     * @return <code>true</code> if the symbol is in the set
+     */
+    public boolean contains(char symbol) {
+        // index of the first range boundary greater than the symbol
+        int low = 0;
+        int high = ranges.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ranges[mid] <= symbol) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        // inside a range, or it's last symbol
+        return low % 2 == 1 || (low > 0 && ranges[low - 1] == symbol);
+    }
+
+    /**
+     * @return <code>true</code> if the set has no symbols
+     */
+    public boolean isEmpty() {
+        return ranges.length == 0;
+    }
+
+    /**
+     * @return number of ranges
+     */
+    public int rangeCount() {
+        return ranges.length / 2;
+    }
+
+    /**
+     * @return first symbol of the range
+     */
+    public char first(int range) {
+        return ranges[2 * range];
+    }
+
+    /**
+     * @return last symbol of the range
+     */
+    public char last(int range) {
+        return ranges[2 * range + 1];
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof SymbolSet && Arrays.equals(ranges, ((SymbolSet) obj).ranges);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(ranges);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int range = 0; range < rangeCount(); range++) {
+            sb.append(first(range));
+            if (last(range) != first(range)) {
+                sb.append('-').append(last(range));
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+}
@@ -48,7 +48,17 @@ public class SemanticAnalyzer {
      * @param trieFilename file path to production definitions
      */
     public SemanticAnalyzer(String trieFilename) {
-        productionTrie = new Trie(trieFilename);
+        this(new Trie(trieFilename));
+    }
+
+    /**
+     * Creates a new {@link SemanticAnalyzer} that uses productions from the given trie.
+     * Analyzers don't change the trie, so any number of them can use the same trie at once.
+     * 
+     * @param productionTrie production definitions
+     */
+    public SemanticAnalyzer(Trie productionTrie) {
+        this.productionTrie = productionTrie;
         error = null;
         codegen = new CodeGen();
     }
@@ -50,6 +50,13 @@ public class LRNode {
         return symbol;
     }
 
+    /**
+     * @return children of this node, in order
+     */
+    public List<LRNode> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
     @Override
     public String toString() {
         return new StringBuilder().append(toString(0)).append('\n').toString();
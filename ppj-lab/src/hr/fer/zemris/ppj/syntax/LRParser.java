@@ -19,14 +19,13 @@ import hr.fer.zemris.ppj.util.Streamer;
 public class LRParser {
 
     private OutputStream output;
-    private Map<Integer, Map<Symbol, LRAction>> actions;
-    private Map<Integer, Map<Symbol, Integer>> newStates;
+    private LRTables tables;
 
     private Stack<StackEntry> stack;
     private boolean accepts;
 
-    private List<LRSymbol> symbols;
-    private int index;
+    private SymbolSource symbols;
+    private LRSymbol current;
 
     /**
      * Creates a new {@link LRParser}
@@ -39,38 +38,95 @@ public class LRParser {
     public LRParser(InputStream input, OutputStream output, List<String> syncSymbols,
             Map<Integer, Map<Symbol, LRAction>> actions,
             Map<Integer, Map<Symbol, Integer>> newStates) {
+        this(input, output, LRTables.of(syncSymbols, actions, newStates));
+    }
+
+    /**
+     * Creates a new {@link LRParser}
+     * 
+     * @param input used to read symbols
+     * @param output used to print the tree
+     * @param tables actions and new states of the parser
+     */
+    public LRParser(InputStream input, OutputStream output, LRTables tables) {
         this.output = output;
-        this.actions = actions;
-        this.newStates = newStates;
-        symbols = LRSymbol.readSymbolsFrom(input, syncSymbols);
+        this.tables = tables;
+        symbols = of(LRSymbol.readSymbolsFrom(input, tables.getSyncSymbols()));
         accepts = false;
     }
 
+    /**
+     * Creates a new {@link LRParser} that parses the given symbols, it only
+     * builds the tree (see {@link #parseTree()}).
+     * 
+     * @param symbols symbols, the last one is {@link Symbol#STREAM_END}
+     * @param tables actions and new states of the parser
+     */
+    public LRParser(List<LRSymbol> symbols, LRTables tables) {
+        this(of(symbols), tables);
+    }
+
+    /**
+     * Creates a new {@link LRParser} that parses symbols from the given
+     * source, it only builds the tree (see {@link #parseTree()}). Symbols are
+     * read one at a time, as the parser needs them.
+     * 
+     * @param symbols source of symbols, the last one is
+     *            {@link Symbol#STREAM_END}
+     * @param tables actions and new states of the parser
+     */
+    public LRParser(SymbolSource symbols, LRTables tables) {
+        this.tables = tables;
+        this.symbols = symbols;
+        accepts = false;
+    }
+
+    private static SymbolSource of(final List<LRSymbol> symbols) {
+        return new SymbolSource() {
+
+            private int index;
+
+            @Override
+            public LRSymbol next() {
+                return index < symbols.size() ? symbols.get(index++) : null;
+            }
+        };
+    }
+
     /**
      * Parses input from input stream.
      */
     public void parse() {
+        LRNode tree = parseTree();
+
+        // print tree
+        try {
+            Streamer.writeToStream(tree, output);
+        } catch (Exception e) {
+        }
+    }
+
+    /**
+     * Parses the symbols and builds the tree.
+     * 
+     * @return root of the tree, <code>null</code> if error recovery emptied
+     *         the stack
+     */
+    public LRNode parseTree() {
         stack = new Stack<>();
         stack.push(new StackEntry(0, null));
-        index = 0;
-
-        while (!accepts && index < symbols.size() && !stack.isEmpty()) {
-            LRSymbol current = symbols.get(index);
-            Map<Symbol, LRAction> map = actions.get(stack.peek().state);
+        current = symbols.next();
 
-            LRAction action;
-            if (map == null || (action = map.get(current.getSymbol())) == null) {
+        while (!accepts && current != null && !stack.isEmpty()) {
+            LRAction action = tables.action(stack.peek().state, current.getSymbol());
+            if (action == null) {
                 errorRecovery();
             } else {
                 action.execute(this);
             }
         }
 
-        // print tree
-        try {
-            Streamer.writeToStream(stack.peek().node, output);
-        } catch (Exception e) {
-        }
+        return stack.isEmpty() ? null : stack.peek().node;
     }
 
     /**
@@ -79,8 +135,8 @@ public class LRParser {
      * @param newState new state to go to
      */
     public void executeMove(int newState) {
-        LRSymbol current = symbols.get(index++);
         stack.push(new StackEntry(newState, new LRNode(current)));
+        current = symbols.next();
     }
 
     /**
@@ -109,9 +165,8 @@ public class LRParser {
         // needs to be done to have output ordering correct
         parent.reverseChildrenOrder();
 
-        Map<Symbol, Integer> map = newStates.get(stack.peek().state);
-        Integer newState;
-        if (map != null && (newState = map.get(parent.getSymbol().getSymbol())) != null) {
+        int newState = tables.newState(stack.peek().state, parent.getSymbol().getSymbol());
+        if (newState != LRTables.NO_STATE) {
             stack.push(new StackEntry(newState, parent));
         } else {
             errorRecovery();
@@ -131,23 +186,23 @@ public class LRParser {
      */
     private void errorRecovery() {
 
-        System.err.println("Error at row " + symbols.get(index));
+        System.err.println("Error at row " + current);
         StringBuilder err = new StringBuilder();
         err.append("Expected one of following:");
-        for (Symbol s : actions.get(stack.peek().state).keySet()) {
+        for (Symbol s : tables.expected(stack.peek().state)) {
             err.append(' ');
             err.append(s);
         }
         System.err.println(err);
 
         System.err.println("Searching for synchronization symbol...");
-        LRSymbol sync;
-        while (!(sync = symbols.get(index)).getSymbol().isSync()) {
-            if (++index == symbols.size()) {
+        while (!current.getSymbol().isSync()) {
+            if ((current = symbols.next()) == null) {
                 System.err.println("Didn't find synchronization symbol");
                 return;
             }
         }
+        LRSymbol sync = current;
         System.err.println("Found symbol " + sync);
 
         // searching for valid transition
@@ -157,8 +212,7 @@ public class LRParser {
                         "Error recovery hasn't come to a valid state. Stoping analysis");
                 return;
             }
-            Map<Symbol, LRAction> map = actions.get(stack.peek().state);
-            if (map == null || map.get(sync.getSymbol()) == null) {
+            if (tables.action(stack.peek().state, sync.getSymbol()) == null) {
                 stack.pop();
             } else {
                 break;
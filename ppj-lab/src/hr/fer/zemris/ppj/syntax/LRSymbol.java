@@ -1,13 +1,22 @@
 package hr.fer.zemris.ppj.syntax;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import hr.fer.zemris.ppj.syntax.grammar.Symbol;
+import hr.fer.zemris.ppj.util.Streamer;
 
 /**
  * A wrapper around symbol that also has line number and original text.
@@ -16,27 +25,38 @@ import hr.fer.zemris.ppj.syntax.grammar.Symbol;
  */
 public class LRSymbol {
 
+    private static final int BUFFER_CAPACITY = 1 << 16;
+
     /**
-     * Read symbols from input stream
+     * Read symbols from input stream. Stream is either in the text format, one
+     * symbol per line, or in the binary format written by the lexical analyzer
+     * (see {@link Streamer#BINARY_TOKENS_HEADER}), the format is recognized by
+     * the first bytes of the stream.
      * 
      * @param input stream
+     * @param syncSymbols names of synchronization symbols
      * @return list of read symbols
      */
     public static List<LRSymbol> readSymbolsFrom(InputStream input, List<String> syncSymbols) {
         List<LRSymbol> symbols = new ArrayList<>();
+        SymbolCache cache = new SymbolCache(syncSymbols);
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input))) {
-            String currLine;
-            while ((currLine = reader.readLine()) != null) {
-                String[] elements = currLine.split(" ", 3);
-                Symbol sym = new Symbol(elements[0], true);
-                if (syncSymbols.contains(sym.toString())) {
-                    sym.setSync(true);
-                }
-                int lineNumber = Integer.parseInt(elements[1]);
-                String originalText = elements[2];
-                LRSymbol lrsym = new LRSymbol(sym, lineNumber, originalText);
-                symbols.add(lrsym);
+        try (BufferedInputStream stream = new BufferedInputStream(input, BUFFER_CAPACITY)) {
+            byte[] header = Streamer.BINARY_TOKENS_HEADER;
+            stream.mark(header.length);
+            byte[] start = new byte[header.length];
+            int read = 0;
+            int length;
+            while (read < start.length
+                    && (length = stream.read(start, read, start.length - read)) > 0) {
+                read += length;
+            }
+
+            if (Arrays.equals(start, header)) {
+                readBinarySymbols(stream, cache, symbols);
+            } else {
+                stream.reset();
+                readTextSymbols(stream, cache, symbols);
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -47,6 +67,126 @@ public class LRSymbol {
         return symbols;
     }
 
+    /**
+     * Reads symbols in the text format, every line is lex class, line number
+     * and original text separated by spaces.
+     */
+    private static void readTextSymbols(InputStream input, SymbolCache cache,
+            List<LRSymbol> symbols) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+        String currLine;
+        while ((currLine = reader.readLine()) != null) {
+            int first = currLine.indexOf(' ');
+            int second = currLine.indexOf(' ', first + 1);
+            Symbol sym = cache.get(currLine.substring(0, first));
+            int lineNumber = Integer.parseInt(currLine.substring(first + 1, second));
+            String originalText = currLine.substring(second + 1);
+            symbols.add(new LRSymbol(sym, lineNumber, originalText));
+        }
+    }
+
+    /**
+     * Reads symbols in the binary format, header is already read.
+     */
+    private static void readBinarySymbols(InputStream input, SymbolCache cache,
+            List<LRSymbol> symbols) throws IOException {
+        List<Symbol> lexClasses = new ArrayList<>();
+        byte[] text = new byte[1 << 8];
+        int lineNumber = 0;
+
+        int index;
+        while ((index = readVarint(input, true)) >= 0) {
+            if (index == lexClasses.size()) {
+                int length = readVarint(input, false);
+                text = readBytes(input, text, length);
+                lexClasses.add(cache.get(new String(text, 0, length, StandardCharsets.UTF_8)));
+            }
+            Symbol sym = lexClasses.get(index);
+
+            int delta = readVarint(input, false);
+            lineNumber += (delta >>> 1) ^ -(delta & 1);
+
+            int length = readVarint(input, false);
+            text = readBytes(input, text, length);
+            String originalText = new String(text, 0, length, StandardCharsets.UTF_8);
+            symbols.add(new LRSymbol(sym, lineNumber, originalText));
+        }
+    }
+
+    /**
+     * Reads an unsigned varint.
+     * 
+     * @param input stream
+     * @param endAllowed if the stream can end before the varint
+     * @return value, -1 if the stream ended before the varint
+     * @throws IOException if reading fails or the stream ends inside a varint
+     */
+    private static int readVarint(InputStream input, boolean endAllowed) throws IOException {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = input.read();
+            if (b < 0) {
+                if (shift == 0 && endAllowed) {
+                    return -1;
+                }
+                throw new EOFException("Token stream ended unexpectedly");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Reads the given number of bytes into the buffer, buffer grows if it's
+     * too small.
+     * 
+     * @return buffer with the bytes
+     */
+    private static byte[] readBytes(InputStream input, byte[] buffer, int length)
+            throws IOException {
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        int read = 0;
+        while (read < length) {
+            int n = input.read(buffer, read, length - read);
+            if (n < 0) {
+                throw new EOFException("Token stream ended unexpectedly");
+            }
+            read += n;
+        }
+        return buffer;
+    }
+
+    /**
+     * Creates only one symbol for every lex class, and marks synchronization
+     * symbols.
+     */
+    static class SymbolCache {
+
+        private Set<String> syncSymbols;
+        private Map<String, Symbol> symbols;
+
+        SymbolCache(List<String> syncSymbols) {
+            this.syncSymbols = new HashSet<>(syncSymbols);
+            symbols = new HashMap<>();
+        }
+
+        Symbol get(String lexClass) {
+            Symbol sym = symbols.get(lexClass);
+            if (sym == null) {
+                sym = new Symbol(lexClass, true);
+                if (syncSymbols.contains(lexClass)) {
+                    sym.setSync(true);
+                }
+                symbols.put(lexClass, sym);
+            }
+            return sym;
+        }
+    }
+
     private Symbol symbol;
     private int lineNumber;
     private String originalText;
@@ -0,0 +1,345 @@
+package hr.fer.zemris.ppj.syntax;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import hr.fer.zemris.ppj.syntax.actions.AcceptAction;
+import hr.fer.zemris.ppj.syntax.actions.LRAction;
+import hr.fer.zemris.ppj.syntax.actions.MoveAction;
+import hr.fer.zemris.ppj.syntax.actions.ReduceAction;
+import hr.fer.zemris.ppj.syntax.grammar.Production;
+import hr.fer.zemris.ppj.syntax.grammar.Symbol;
+import hr.fer.zemris.ppj.util.FlatTables;
+
+/**
+ * Tables of the LR parser: action of every state for every terminal symbol,
+ * and new state of every state for every non terminal symbol, after a
+ * reduction. Tables are dense, with a row for every state, so they can be
+ * written as {@link FlatTables} and used straight from the mapped file.
+ * Actions are created once for every state and production, so looking one up
+ * doesn't create anything.
+ *
+ * @author fhrenic
+ */
+public class LRTables {
+
+    /**
+     * New state if there is none.
+     */
+    public static final int NO_STATE = -1;
+
+    // action codes are in the lowest two bits, the rest is the new state or
+    // the index of the production
+    private static final int ERROR = 0;
+    private static final int MOVE = 1;
+    private static final int REDUCE = 2;
+    private static final int ACCEPT = 3;
+
+    private int numStates;
+    // terminal symbols first
+    private Symbol[] symbols;
+    private int numTerminals;
+    // symbol -> column in it's table
+    private Map<Symbol, Integer> columns;
+    private Production[] productions;
+    private List<String> syncSymbols;
+
+    // state * terminals + column -> action code
+    private IntBuffer actions;
+    // state * non terminals + column -> new state
+    private IntBuffer newStates;
+
+    private LRAction[] moves;
+    private LRAction[] reductions;
+    private LRAction accept;
+
+    private LRTables(int numStates, Symbol[] symbols, int numTerminals,
+            Production[] productions, List<String> syncSymbols, IntBuffer actions,
+            IntBuffer newStates) {
+        int numNonTerminals = symbols.length - numTerminals;
+        if (actions.limit() != numStates * numTerminals
+                || newStates.limit() != numStates * numNonTerminals) {
+            throw new IllegalArgumentException("Tables don't have " + numStates + " states");
+        }
+        this.numStates = numStates;
+        this.symbols = symbols;
+        this.numTerminals = numTerminals;
+        this.productions = productions;
+        this.syncSymbols = syncSymbols;
+        this.actions = actions;
+        this.newStates = newStates;
+
+        columns = new HashMap<>();
+        for (int idx = 0; idx < symbols.length; idx++) {
+            columns.put(symbols[idx], idx < numTerminals ? idx : idx - numTerminals);
+        }
+        moves = new LRAction[numStates];
+        for (int state = 0; state < numStates; state++) {
+            moves[state] = new MoveAction(state);
+        }
+        reductions = new LRAction[productions.length];
+        for (int idx = 0; idx < productions.length; idx++) {
+            reductions[idx] = new ReduceAction(productions[idx]);
+        }
+        accept = new AcceptAction();
+    }
+
+    /**
+     * Creates tables from the tables of a grammar.
+     *
+     * @param syncSymbols names of synchronization symbols
+     * @param actions state -> symbol -> action
+     * @param newStates state -> symbol -> new state
+     * @return tables
+     */
+    public static LRTables of(List<String> syncSymbols,
+            Map<Integer, Map<Symbol, LRAction>> actions,
+            Map<Integer, Map<Symbol, Integer>> newStates) {
+        int numStates = 0;
+        TreeSet<Symbol> allSymbols = new TreeSet<>();
+        TreeSet<Production> allProductions = new TreeSet<>();
+        for (Map.Entry<Integer, Map<Symbol, LRAction>> e : actions.entrySet()) {
+            numStates = Math.max(numStates, e.getKey() + 1);
+            allSymbols.addAll(e.getValue().keySet());
+            for (LRAction action : e.getValue().values()) {
+                if (action instanceof ReduceAction) {
+                    Production p = ((ReduceAction) action).getProduction();
+                    allProductions.add(p);
+                    allSymbols.add(p.getLHS());
+                    for (int idx = 0; idx < p.getSize(); idx++) {
+                        allSymbols.add(p.getAt(idx));
+                    }
+                }
+            }
+        }
+        for (Map.Entry<Integer, Map<Symbol, Integer>> e : newStates.entrySet()) {
+            numStates = Math.max(numStates, e.getKey() + 1);
+            allSymbols.addAll(e.getValue().keySet());
+        }
+
+        List<Symbol> symbols = new ArrayList<>();
+        for (Symbol s : allSymbols) {
+            if (s.isTerminal()) {
+                symbols.add(s);
+            }
+        }
+        int numTerminals = symbols.size();
+        for (Symbol s : allSymbols) {
+            if (!s.isTerminal()) {
+                symbols.add(s);
+            }
+        }
+        Map<Symbol, Integer> columns = new HashMap<>();
+        for (int idx = 0; idx < symbols.size(); idx++) {
+            columns.put(symbols.get(idx), idx < numTerminals ? idx : idx - numTerminals);
+        }
+        Production[] productions = allProductions.toArray(new Production[0]);
+        Map<Production, Integer> productionIndices = new HashMap<>();
+        for (int idx = 0; idx < productions.length; idx++) {
+            productionIndices.put(productions[idx], idx);
+        }
+
+        int[] actionTable = new int[numStates * numTerminals];
+        for (Map.Entry<Integer, Map<Symbol, LRAction>> e : actions.entrySet()) {
+            int row = e.getKey() * numTerminals;
+            for (Map.Entry<Symbol, LRAction> a : e.getValue().entrySet()) {
+                actionTable[row + columns.get(a.getKey())] = code(a.getValue(),
+                        productionIndices);
+            }
+        }
+        int numNonTerminals = symbols.size() - numTerminals;
+        int[] newStateTable = new int[numStates * numNonTerminals];
+        Arrays.fill(newStateTable, NO_STATE);
+        for (Map.Entry<Integer, Map<Symbol, Integer>> e : newStates.entrySet()) {
+            int row = e.getKey() * numNonTerminals;
+            for (Map.Entry<Symbol, Integer> s : e.getValue().entrySet()) {
+                newStateTable[row + columns.get(s.getKey())] = s.getValue();
+            }
+        }
+
+        return new LRTables(numStates, symbols.toArray(new Symbol[0]), numTerminals,
+                productions, syncSymbols, IntBuffer.wrap(actionTable),
+                IntBuffer.wrap(newStateTable));
+    }
+
+    private static int code(LRAction action, Map<Production, Integer> productionIndices) {
+        if (action instanceof MoveAction) {
+            return ((MoveAction) action).getNewState() << 2 | MOVE;
+        } else if (action instanceof ReduceAction) {
+            return productionIndices.get(((ReduceAction) action).getProduction()) << 2 | REDUCE;
+        } else if (action instanceof AcceptAction) {
+            return ACCEPT;
+        }
+        throw new IllegalArgumentException("Unknown action: " + action);
+    }
+
+    /**
+     * Reads tables written by {@link #write(FlatTables)}, tables of actions and
+     * new states are used in place.
+     *
+     * @param flat flat tables
+     * @return tables
+     * @throws IOException if tables are invalid
+     */
+    public static LRTables read(FlatTables flat) throws IOException {
+        try {
+            IntBuffer header = flat.getSection(0);
+            int numStates = header.get(0);
+            int numTerminals = header.get(1);
+
+            IntBuffer names = flat.getSection(1);
+            Symbol[] symbols = new Symbol[names.limit()];
+            for (int idx = 0; idx < symbols.length; idx++) {
+                symbols[idx] = new Symbol(flat.getString(names.get(idx)), idx < numTerminals);
+            }
+
+            IntBuffer values = flat.getSection(2);
+            List<Production> productions = new ArrayList<>();
+            while (values.hasRemaining()) {
+                Symbol lhs = symbols[values.get()];
+                List<Symbol> rhs = new ArrayList<>();
+                for (int idx = values.get(); idx > 0; idx--) {
+                    rhs.add(symbols[values.get()]);
+                }
+                if (rhs.isEmpty()) {
+                    rhs.add(Symbol.EPS_SYMBOL);
+                }
+                productions.add(new Production(lhs, rhs, productions.size()));
+            }
+
+            IntBuffer syncNames = flat.getSection(3);
+            List<String> syncSymbols = new ArrayList<>();
+            for (int idx = 0; idx < syncNames.limit(); idx++) {
+                syncSymbols.add(flat.getString(syncNames.get(idx)));
+            }
+
+            return new LRTables(numStates, symbols, numTerminals,
+                    productions.toArray(new Production[0]), syncSymbols, flat.getSection(4),
+                    flat.getSection(5));
+        } catch (IndexOutOfBoundsException | BufferUnderflowException
+                | IllegalArgumentException ex) {
+            throw new IOException("Invalid syntax tables: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes the tables to flat tables.
+     *
+     * @param flat flat tables to write to
+     */
+    public void write(FlatTables flat) {
+        flat.addSection(new int[] { numStates, numTerminals });
+
+        int[] names = new int[symbols.length];
+        for (int idx = 0; idx < symbols.length; idx++) {
+            names[idx] = flat.addString(symbols[idx].toString());
+        }
+        flat.addSection(names);
+
+        List<Integer> values = new ArrayList<>();
+        Map<Symbol, Integer> indices = new HashMap<>();
+        for (int idx = 0; idx < symbols.length; idx++) {
+            indices.put(symbols[idx], idx);
+        }
+        for (Production p : productions) {
+            values.add(indices.get(p.getLHS()));
+            values.add(p.getSize());
+            for (int idx = 0; idx < p.getSize(); idx++) {
+                values.add(indices.get(p.getAt(idx)));
+            }
+        }
+        int[] productionValues = new int[values.size()];
+        for (int idx = 0; idx < productionValues.length; idx++) {
+            productionValues[idx] = values.get(idx);
+        }
+        flat.addSection(productionValues);
+
+        int[] syncNames = new int[syncSymbols.size()];
+        for (int idx = 0; idx < syncNames.length; idx++) {
+            syncNames[idx] = flat.addString(syncSymbols.get(idx));
+        }
+        flat.addSection(syncNames);
+
+        flat.addSection(copy(actions));
+        flat.addSection(copy(newStates));
+    }
+
+    private static int[] copy(IntBuffer buffer) {
+        int[] values = new int[buffer.limit()];
+        buffer.duplicate().get(values);
+        return values;
+    }
+
+    /**
+     * Returns the action of the state for the symbol.
+     *
+     * @param state state of the parser
+     * @param symbol terminal symbol
+     * @return action, <code>null</code> if there is none
+     */
+    public LRAction action(int state, Symbol symbol) {
+        Integer column = columns.get(symbol);
+        if (column == null || !symbol.isTerminal() || state < 0 || state >= numStates) {
+            return null;
+        }
+        int code = actions.get(state * numTerminals + column);
+        switch (code & 3) {
+            case MOVE:
+                return moves[code >>> 2];
+            case REDUCE:
+                return reductions[code >>> 2];
+            case ACCEPT:
+                return accept;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the state the parser goes to from the given state after it
+     * reduces a production to the symbol.
+     *
+     * @param state state of the parser
+     * @param symbol non terminal symbol
+     * @return new state, {@link #NO_STATE} if there is none
+     */
+    public int newState(int state, Symbol symbol) {
+        Integer column = columns.get(symbol);
+        if (column == null || symbol.isTerminal() || state < 0 || state >= numStates) {
+            return NO_STATE;
+        }
+        return newStates.get(state * (symbols.length - numTerminals) + column);
+    }
+
+    /**
+     * @param state state of the parser
+     * @return terminal symbols the state has an action for
+     */
+    public List<Symbol> expected(int state) {
+        List<Symbol> expected = new ArrayList<>();
+        if (state < 0 || state >= numStates) {
+            return expected;
+        }
+        for (int column = 0; column < numTerminals; column++) {
+            if (actions.get(state * numTerminals + column) != ERROR) {
+                expected.add(symbols[column]);
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * @return names of synchronization symbols
+     */
+    public List<String> getSyncSymbols() {
+        return syncSymbols;
+    }
+
+}
@@ -0,0 +1,261 @@
+package hr.fer.zemris.ppj.syntax;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import hr.fer.zemris.ppj.lexical.input.LexInput;
+import hr.fer.zemris.ppj.lexical.output.TokenSink;
+import hr.fer.zemris.ppj.syntax.grammar.Symbol;
+
+/**
+ * Bounded queue between a lexer on one thread and the parser on another.
+ * Lexer gives tokens to the queue as a sink, they are turned into symbols and
+ * published in batches through a ring buffer with a fixed number of slots.
+ * Parser reads them as a symbol source while the lexer is still working. When
+ * the ring is full the lexer waits, so only a bounded number of symbols is in
+ * the queue at any time.
+ *
+ * There must be only one thread that adds tokens and only one that reads
+ * symbols. Threads don't lock anything, the positions in the ring are
+ * volatile and a thread that has to wait spins for a while and then parks
+ * until the other one wakes it up.
+ *
+ * @author fhrenic
+ */
+public class SymbolQueue implements TokenSink, SymbolSource {
+
+    /**
+     * Number of slots of the ring if it isn't given.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Maximum number of symbols in one batch.
+     */
+    public static final int BATCH_SIZE = 256;
+
+    private static final int SPINS = 16;
+
+    // marks the end of symbols
+    private static final LRSymbol[] END = new LRSymbol[0];
+
+    private final LRSymbol[][] slots;
+    private final int mask;
+    // number of published batches, written only by the producer
+    private volatile long tail;
+    // number of taken batches, written only by the consumer
+    private volatile long head;
+    private volatile boolean cancelled;
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+
+    // producer
+    private LRSymbol.SymbolCache cache;
+    private LRSymbol[] batch;
+    private int batchSize;
+    private boolean closed;
+
+    // consumer
+    private LRSymbol[] current;
+    private int currentIndex;
+    private boolean ended;
+
+    /**
+     * Creates a new queue with {@value #DEFAULT_CAPACITY} slots.
+     *
+     * @param syncSymbols names of synchronization symbols
+     */
+    public SymbolQueue(List<String> syncSymbols) {
+        this(syncSymbols, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new queue.
+     *
+     * @param syncSymbols names of synchronization symbols
+     * @param capacity number of batches the queue holds, rounded up to a power
+     *            of two
+     */
+    public SymbolQueue(List<String> syncSymbols, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new LRSymbol[size][];
+        mask = size - 1;
+        cache = new LRSymbol.SymbolCache(syncSymbols);
+        batch = new LRSymbol[BATCH_SIZE];
+        current = END;
+    }
+
+    @Override
+    public void addToken(String lexClass, int lineNumber, LexInput input, int start, int end)
+            throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Queue is closed");
+        }
+        if (cancelled) {
+            return;
+        }
+        add(new LRSymbol(cache.get(lexClass), lineNumber, input.substring(start, end)));
+    }
+
+    /**
+     * Publishes symbols of the batch that isn't full yet, so the parser can
+     * read them.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (batchSize > 0 && !closed) {
+            LRSymbol[] symbols = Arrays.copyOf(batch, batchSize);
+            batchSize = 0;
+            publish(symbols);
+        }
+    }
+
+    /**
+     * Adds the end of the stream and publishes the rest of the symbols. Called
+     * by the producer when the lexer is done.
+     *
+     * @throws IOException if the parser stopped reading
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        add(new LRSymbol(Symbol.STREAM_END));
+        flush();
+        closed = true;
+        publish(END);
+    }
+
+    /**
+     * Ends the symbols without the end of the stream, the parser stops after
+     * the symbols it already got. Called by the producer when the lexer fails.
+     */
+    public void fail() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            publish(END);
+        } catch (IOException ex) {
+            // parser stopped reading, it doesn't need the end
+        }
+    }
+
+    private void add(LRSymbol symbol) throws IOException {
+        batch[batchSize++] = symbol;
+        if (batchSize == BATCH_SIZE) {
+            LRSymbol[] symbols = batch;
+            batch = new LRSymbol[BATCH_SIZE];
+            batchSize = 0;
+            publish(symbols);
+        }
+    }
+
+    private void publish(LRSymbol[] symbols) throws IOException {
+        long t = tail;
+        for (int spin = 0; t - head == slots.length; spin++) {
+            if (cancelled) {
+                throw new IOException("Parser stopped reading symbols");
+            }
+            if (spin < SPINS) {
+                Thread.yield();
+                continue;
+            }
+            waitingProducer = Thread.currentThread();
+            if (t - head == slots.length && !cancelled) {
+                LockSupport.park(this);
+            }
+            waitingProducer = null;
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("Interrupted while waiting for the parser");
+            }
+        }
+        if (cancelled) {
+            throw new IOException("Parser stopped reading symbols");
+        }
+        slots[(int) t & mask] = symbols;
+        tail = t + 1;
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    @Override
+    public LRSymbol next() {
+        if (currentIndex == current.length) {
+            if (ended || (current = take()) == null) {
+                ended = true;
+                current = END;
+                return null;
+            }
+            currentIndex = 0;
+        }
+        return current[currentIndex++];
+    }
+
+    /**
+     * Takes the next batch, waits for it if the ring is empty.
+     *
+     * @return batch, <code>null</code> at the end or if the thread was
+     *         interrupted
+     */
+    private LRSymbol[] take() {
+        long h = head;
+        for (int spin = 0; h == tail; spin++) {
+            if (spin < SPINS) {
+                Thread.yield();
+                continue;
+            }
+            waitingConsumer = Thread.currentThread();
+            if (h == tail) {
+                LockSupport.park(this);
+            }
+            waitingConsumer = null;
+            if (Thread.currentThread().isInterrupted()) {
+                cancel();
+                return null;
+            }
+        }
+        int slot = (int) h & mask;
+        LRSymbol[] symbols = slots[slot];
+        slots[slot] = null;
+        head = h + 1;
+        Thread producer = waitingProducer;
+        if (producer != null) {
+            LockSupport.unpark(producer);
+        }
+        return symbols == END ? null : symbols;
+    }
+
+    /**
+     * Stops the queue from the parser's side. Tokens the lexer adds after this
+     * are dropped, and it gets an exception instead of waiting for the parser
+     * when it publishes symbols.
+     */
+    public void cancel() {
+        cancelled = true;
+        Thread producer = waitingProducer;
+        if (producer != null) {
+            LockSupport.unpark(producer);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the parser read all symbols, to the end
+     */
+    public boolean hasEnded() {
+        return ended;
+    }
+
+}
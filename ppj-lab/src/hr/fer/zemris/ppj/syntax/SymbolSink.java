@@ -0,0 +1,56 @@
+package hr.fer.zemris.ppj.syntax;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import hr.fer.zemris.ppj.lexical.input.LexInput;
+import hr.fer.zemris.ppj.lexical.output.TokenSink;
+import hr.fer.zemris.ppj.syntax.grammar.Symbol;
+
+/**
+ * Keeps tokens of the lexical analyzer as symbols of the parser, so the parser
+ * can read them without writing and reading them back (see
+ * {@link LRSymbol#readSymbolsFrom(java.io.InputStream, List)}).
+ * 
+ * @author fhrenic
+ */
+public class SymbolSink implements TokenSink {
+
+    private LRSymbol.SymbolCache cache;
+    private List<LRSymbol> symbols;
+    private boolean ended;
+
+    /**
+     * Creates a new sink.
+     * 
+     * @param syncSymbols names of synchronization symbols
+     */
+    public SymbolSink(List<String> syncSymbols) {
+        cache = new LRSymbol.SymbolCache(syncSymbols);
+        symbols = new ArrayList<>();
+    }
+
+    @Override
+    public void addToken(String lexClass, int lineNumber, LexInput input, int start, int end) {
+        symbols.add(new LRSymbol(cache.get(lexClass), lineNumber, input.substring(start, end)));
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Returns all symbols, followed by the end of the stream. No more tokens
+     * can be added after this.
+     * 
+     * @return list of symbols
+     */
+    public List<LRSymbol> getSymbols() {
+        if (!ended) {
+            symbols.add(new LRSymbol(Symbol.STREAM_END));
+            ended = true;
+        }
+        return symbols;
+    }
+
+}
@@ -0,0 +1,19 @@
+package hr.fer.zemris.ppj.syntax;
+
+import hr.fer.zemris.ppj.syntax.grammar.Symbol;
+
+/**
+ * Gives symbols to the parser one at a time, in order.
+ *
+ * @author fhrenic
+ */
+public interface SymbolSource {
+
+    /**
+     * Returns the next symbol, the last one is {@link Symbol#STREAM_END}.
+     *
+     * @return next symbol, <code>null</code> if there are no more symbols
+     */
+    public LRSymbol next();
+
+}
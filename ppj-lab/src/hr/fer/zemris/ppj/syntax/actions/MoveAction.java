@@ -15,6 +15,13 @@ public class MoveAction implements LRAction {
         this.newState = newState;
     }
 
+    /**
+     * @return state the parser moves to
+     */
+    public int getNewState() {
+        return newState;
+    }
+
     @Override
     public void execute(LRParser parser) {
         parser.executeMove(newState);
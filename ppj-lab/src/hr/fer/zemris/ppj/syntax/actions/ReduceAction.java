@@ -16,6 +16,13 @@ public class ReduceAction implements LRAction {
         this.production = production;
     }
 
+    /**
+     * @return production that is reduced
+     */
+    public Production getProduction() {
+        return production;
+    }
+
     @Override
     public void execute(LRParser parser) {
         parser.executeReduce(production);
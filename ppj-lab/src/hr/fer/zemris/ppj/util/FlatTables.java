@@ -0,0 +1,224 @@
+package hr.fer.zemris.ppj.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tables of a generator in a flat binary format: a header, a table of strings
+ * and sections of numbers. Generators add strings and sections, analyzers read
+ * them back by index, in the same order. Unlike objects written by an object
+ * stream, nothing has to be found by reflection, and sections of a mapped file
+ * are read in place (see {@link Streamer#mapTables(String, int)}).
+ *
+ * Format, all numbers are little endian <code>int</code>s:
+ *
+ * <pre>
+ * magic 'PPJF', version, kind, number of strings, number of sections
+ * offset and length (in bytes) of every string, UTF-8
+ * offset and length (in numbers) of every section
+ * strings and sections, sections start at offsets divisible by four
+ * </pre>
+ *
+ * @author fhrenic
+ */
+public class FlatTables {
+
+    /**
+     * Version of the format, tables of other versions aren't read.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Kind of tables of the lexical analyzer.
+     */
+    public static final int LEXICAL = 1;
+
+    /**
+     * Kind of tables of the syntax analyzer.
+     */
+    public static final int SYNTAX = 2;
+
+    private static final int MAGIC = 'P' | 'P' << 8 | 'J' << 16 | 'F' << 24;
+    private static final int HEADER_SIZE = 5;
+
+    private int kind;
+    private List<String> strings;
+    private Map<String, Integer> stringIndices;
+    private List<IntBuffer> sections;
+
+    /**
+     * Creates empty tables.
+     *
+     * @param kind kind of tables, {@link #LEXICAL} or {@link #SYNTAX}
+     */
+    public FlatTables(int kind) {
+        this.kind = kind;
+        strings = new ArrayList<>();
+        stringIndices = new HashMap<>();
+        sections = new ArrayList<>();
+    }
+
+    /**
+     * Reads tables from a buffer with the whole file, sections are views of
+     * the buffer.
+     *
+     * @param buffer buffer with tables
+     * @param kind expected kind of tables
+     * @return tables
+     * @throws IOException if the buffer doesn't have tables of the given kind
+     *             and version
+     */
+    public static FlatTables read(ByteBuffer buffer, int kind) throws IOException {
+        ByteBuffer bytes = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.limit() < 4 * HEADER_SIZE || bytes.getInt(0) != MAGIC) {
+            throw new IOException("Not a table file");
+        }
+        if (bytes.getInt(4) != VERSION) {
+            throw new IOException("Unsupported table version " + bytes.getInt(4));
+        }
+        if (bytes.getInt(8) != kind) {
+            throw new IOException("Expected tables of kind " + kind + ", found "
+                    + bytes.getInt(8));
+        }
+
+        FlatTables tables = new FlatTables(kind);
+        int numStrings = bytes.getInt(12);
+        int numSections = bytes.getInt(16);
+        int entry = 4 * HEADER_SIZE;
+        try {
+            for (int idx = 0; idx < numStrings; idx++, entry += 8) {
+                byte[] utf8 = new byte[bytes.getInt(entry + 4)];
+                bytes.position(bytes.getInt(entry));
+                bytes.get(utf8);
+                tables.strings.add(new String(utf8, StandardCharsets.UTF_8));
+            }
+            for (int idx = 0; idx < numSections; idx++, entry += 8) {
+                bytes.position(bytes.getInt(entry));
+                bytes.limit(bytes.position() + 4 * bytes.getInt(entry + 4));
+                tables.sections.add(bytes.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
+                bytes.clear();
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException ex) {
+            throw new IOException("Table file is truncated");
+        }
+        return tables;
+    }
+
+    /**
+     * Writes tables to the stream.
+     *
+     * @param stream stream to write to
+     * @throws IOException if writing fails
+     */
+    public void write(OutputStream stream) throws IOException {
+        List<byte[]> utf8 = new ArrayList<>();
+        int size = 4 * HEADER_SIZE + 8 * (strings.size() + sections.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            utf8.add(bytes);
+            size += bytes.length;
+        }
+        size = align(size);
+        for (IntBuffer section : sections) {
+            size += 4 * section.limit();
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.putInt(MAGIC).putInt(VERSION).putInt(kind);
+        bytes.putInt(strings.size()).putInt(sections.size());
+        int offset = 4 * HEADER_SIZE + 8 * (strings.size() + sections.size());
+        for (byte[] string : utf8) {
+            bytes.putInt(offset).putInt(string.length);
+            offset += string.length;
+        }
+        offset = align(offset);
+        for (IntBuffer section : sections) {
+            bytes.putInt(offset).putInt(section.limit());
+            offset += 4 * section.limit();
+        }
+        for (byte[] string : utf8) {
+            bytes.put(string);
+        }
+        bytes.position(align(bytes.position()));
+        for (IntBuffer section : sections) {
+            for (int idx = 0; idx < section.limit(); idx++) {
+                bytes.putInt(section.get(idx));
+            }
+        }
+        stream.write(bytes.array());
+    }
+
+    private static int align(int offset) {
+        return (offset + 3) & ~3;
+    }
+
+    /**
+     * Adds a string to the table of strings, if it isn't already there.
+     *
+     * @param string string
+     * @return index of the string
+     */
+    public int addString(String string) {
+        Integer index = stringIndices.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.add(string);
+            stringIndices.put(string, index);
+        }
+        return index;
+    }
+
+    /**
+     * Adds a section, the array mustn't be changed after this.
+     *
+     * @param values numbers of the section
+     * @return index of the section
+     */
+    public int addSection(int[] values) {
+        sections.add(IntBuffer.wrap(values));
+        return sections.size() - 1;
+    }
+
+    /**
+     * @param index index of a string
+     * @return string with the given index
+     */
+    public String getString(int index) {
+        return strings.get(index);
+    }
+
+    /**
+     * @param index index of a section
+     * @return read-only section with the given index
+     */
+    public IntBuffer getSection(int index) {
+        return sections.get(index).asReadOnlyBuffer();
+    }
+
+    /**
+     * @param index index of a section
+     * @return copy of the section with the given index
+     */
+    public int[] getInts(int index) {
+        IntBuffer section = getSection(index);
+        int[] values = new int[section.limit()];
+        section.get(values);
+        return values;
+    }
+
+    /**
+     * @return number of sections
+     */
+    public int numberOfSections() {
+        return sections.size();
+    }
+
+}
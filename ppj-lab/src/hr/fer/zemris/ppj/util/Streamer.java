@@ -3,6 +3,7 @@
  */
 package hr.fer.zemris.ppj.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -11,12 +12,18 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * This class is used mainly for handling input/output streams. GLA class writes
  * objects using object output stream. Those objects are read by the LA class.
+ * Generators also write flat tables (see {@link FlatTables}), analyzers map
+ * them into memory instead of reading objects.
  * 
  * @author fhrenic
  */
@@ -25,7 +32,13 @@ public class Streamer {
     // names of files used for communication between generators and analyzers 
     public static final String FOLDER = "analizator";
     public static final String LEXICAL_OBJECTS = "lex_objects.ppj";
-    public static final String SYNTAX_OBJECTS = "syn_objects.ppj";
+    public static final String LEXICAL_TABLES = "lex_tables.ppj";
+    public static final String SYNTAX_TABLES = "syn_tables.ppj";
+
+    // first bytes of a binary token stream written by the lexical analyzer, a
+    // text token stream never starts with a zero byte; the last byte is the
+    // format version
+    public static final byte[] BINARY_TOKENS_HEADER = { 0, 'P', 'P', 'J', 'T', 1 };
 
     static {
         new File(FOLDER).mkdirs();
@@ -64,6 +77,41 @@ public class Streamer {
         return objStream;
     }
 
+    /**
+     * Writes flat tables to the file with the given name.
+     * 
+     * @param fileName name of the file
+     * @param tables tables to write
+     * @throws IOException if writing fails
+     */
+    public static void writeTables(String fileName, FlatTables tables) throws IOException {
+        try (OutputStream stream = new FileOutputStream(fileName)) {
+            tables.write(stream);
+        }
+    }
+
+    /**
+     * Maps the file with flat tables into memory, read-only. Sections of the
+     * tables are views of the mapped file.
+     * 
+     * @param fileName name of the file
+     * @param kind expected kind of tables, see {@link FlatTables}
+     * @return tables
+     * @throws IOException if the file can't be mapped or it doesn't have
+     *             tables of the given kind
+     */
+    public static FlatTables mapTables(String fileName, int kind) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to be mapped: " + fileName);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            return FlatTables.read(mapped, kind);
+        }
+    }
+
     /**
      * Helper method that reads entire content from an input stream into a
      * single string
@@ -82,6 +130,23 @@ public class Streamer {
         return sb.toString();
     }
 
+    /**
+     * Helper method that reads entire content from an input stream
+     * 
+     * @param stream input stream to read from
+     * @return stream content
+     * @throws IOException
+     */
+    public static byte[] readBytes(InputStream stream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int length;
+        byte[] buffer = new byte[BUFFER_CAPACITY];
+        while ((length = stream.read(buffer)) > 0) {
+            bytes.write(buffer, 0, length);
+        }
+        return bytes.toByteArray();
+    }
+
     /**
      * Writes a given string to the output stream
      * 
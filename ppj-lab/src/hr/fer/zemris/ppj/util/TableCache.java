@@ -0,0 +1,343 @@
+package hr.fer.zemris.ppj.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Cache of files written by generators, on the disk. Files are found by a key,
+ * a hash of the generator, it's version and options, and the definition it
+ * reads, so a definition that didn't change isn't generated again.
+ *
+ * Every entry is a directory named by it's key. Generator writes files into a
+ * temporary directory that is then renamed, so an entry is either complete or
+ * it doesn't exist. While an entry is generated, it's key is locked (between
+ * processes with a file lock), so builds that need the same entry at the same
+ * time wait for the first one instead of generating it again. Entries that
+ * were used least recently are removed when the cache is larger than it's
+ * maximum size.
+ *
+ * Nothing is cached by default. The default cache is used only if it's
+ * directory is given by the <code>ppj.cache</code> property, and it's size in
+ * megabytes can be given by the <code>ppj.cache.size</code> property. Entries
+ * are found by {@link #GENERATOR_VERSION}, not by the code of generators, so
+ * it has to be increased whenever generators change what they write.
+ *
+ * @author fhrenic
+ */
+public class TableCache {
+
+    /**
+     * Version of the generators, it's a part of every key. It has to be
+     * increased whenever the generated files change for the same definition.
+     */
+    public static final int GENERATOR_VERSION = 1;
+
+    /**
+     * Maximum size of the default cache in bytes if it isn't given.
+     */
+    public static final long DEFAULT_MAX_SIZE = 64L << 20;
+
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final long STALE_MILLIS = 24L * 60 * 60 * 1000;
+
+    // file locks are held by the whole process, so threads of this process
+    // lock keys here first, a key always uses the same stripe
+    private static final Object[] STRIPES = new Object[64];
+
+    static {
+        for (int idx = 0; idx < STRIPES.length; idx++) {
+            STRIPES[idx] = new Object();
+        }
+    }
+
+    /**
+     * Writes generated files.
+     */
+    public interface Generator {
+
+        /**
+         * Writes generated files into the directory.
+         *
+         * @param directory empty directory
+         * @throws IOException if writing fails
+         */
+        public void generate(Path directory) throws IOException;
+    }
+
+    private Path directory;
+    private long maxSize;
+
+    /**
+     * Creates a cache in the given directory, it's created if it doesn't
+     * exist.
+     *
+     * @param directory directory of the cache, <code>null</code> if nothing
+     *            is cached
+     * @param maxSize maximum size of all entries in bytes
+     */
+    public TableCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return cache in the directory given by system properties, a cache that
+     *         doesn't cache anything if there is none
+     */
+    public static TableCache getDefault() {
+        String dir = System.getProperty("ppj.cache");
+        if (dir == null || dir.isEmpty()) {
+            return new TableCache(null, 0);
+        }
+        Path path = Paths.get(dir);
+        long maxSize = DEFAULT_MAX_SIZE;
+        String size = System.getProperty("ppj.cache.size");
+        if (size != null) {
+            maxSize = Long.parseLong(size) << 20;
+        }
+        return new TableCache(path, maxSize);
+    }
+
+    /**
+     * Creates the key of generated files.
+     *
+     * @param generator name and options of the generator
+     * @param definition definition the generator reads
+     * @return key, a hexadecimal hash
+     */
+    public static String key(String generator, byte[] definition) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String prefix = "ppj " + GENERATOR_VERSION + " " + FlatTables.VERSION + " "
+                    + generator + "\n";
+            digest.update(prefix.getBytes(StandardCharsets.UTF_8));
+            digest.update(definition);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b & 0xFF));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 isn't available", ex);
+        }
+    }
+
+    /**
+     * Puts files with the given names into the target directory, from the
+     * entry with the given key. If there is no such entry, it's generated
+     * first. Every file replaces the old one at once, files that the entry
+     * doesn't have are removed from the target directory.
+     *
+     * @param key key of the files, see {@link #key(String, byte[])}
+     * @param generator writes the files if they aren't cached
+     * @param target target directory
+     * @param names names of files
+     * @throws IOException if files can't be generated or copied
+     */
+    public void load(String key, Generator generator, Path target, String... names)
+            throws IOException {
+        Files.createDirectories(target);
+        if (directory == null || !prepare()) {
+            Path temp = Files.createTempDirectory(target, "gen");
+            try {
+                generator.generate(temp);
+                copy(temp, target, names);
+            } finally {
+                delete(temp);
+            }
+            return;
+        }
+
+        Path entry = directory.resolve(key);
+        for (int attempt = 0;; attempt++) {
+            if (!Files.isDirectory(entry)) {
+                generate(key, generator);
+            }
+            try {
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                copy(entry, target, names);
+                return;
+            } catch (NoSuchFileException ex) {
+                // entry was removed by another build
+                if (attempt > 0) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the cache directory.
+     *
+     * @return <code>false</code> if it can't be created
+     */
+    private boolean prepare() {
+        try {
+            Files.createDirectories(directory);
+            return Files.isWritable(directory);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Generates the entry while the key is locked, unless another build
+     * generated it in the meantime.
+     */
+    private void generate(String key, Generator generator) throws IOException {
+        synchronized (STRIPES[(key.hashCode() & Integer.MAX_VALUE) % STRIPES.length]) {
+            try (FileChannel channel = FileChannel.open(directory.resolve(key + LOCK_SUFFIX),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // released when the channel is closed
+                channel.lock();
+                Path entry = directory.resolve(key);
+                if (Files.isDirectory(entry)) {
+                    return;
+                }
+                Path temp = Files.createTempDirectory(directory, key + ".");
+                try {
+                    generator.generate(temp);
+                    Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException ex) {
+                    // entry may be generated by a build that didn't see the
+                    // lock, it was removed while this build waited for it
+                    if (!Files.isDirectory(entry)) {
+                        throw ex;
+                    }
+                } finally {
+                    delete(temp);
+                }
+                evict(entry);
+            }
+        }
+    }
+
+    /**
+     * Copies files through temporary files that are renamed, so the target
+     * directory never has a part of a file.
+     */
+    private static void copy(Path from, Path target, String... names) throws IOException {
+        for (String name : names) {
+            Path source = from.resolve(name);
+            Path destination = target.resolve(name);
+            if (!Files.exists(source)) {
+                if (!Files.isDirectory(from)) {
+                    throw new NoSuchFileException(from.toString());
+                }
+                Files.deleteIfExists(destination);
+                continue;
+            }
+            Path temp = Files.createTempFile(target, name, ".tmp");
+            try {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, destination, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Removes entries that were used least recently until the cache isn't
+     * larger than it's maximum size, the given entry is kept. Temporary
+     * directories left by builds that failed are removed too.
+     */
+    private void evict(Path keep) throws IOException {
+        final List<Path> entries = new ArrayList<>();
+        final List<FileTime> times = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        long total = 0;
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (!Files.isDirectory(path)) {
+                    continue;
+                }
+                FileTime time = Files.getLastModifiedTime(path);
+                if (path.getFileName().toString().indexOf('.') >= 0) {
+                    if (now - time.toMillis() > STALE_MILLIS) {
+                        delete(path);
+                    }
+                    continue;
+                }
+                long size = size(path);
+                total += size;
+                if (!path.equals(keep)) {
+                    entries.add(path);
+                    times.add(time);
+                    sizes.add(size);
+                }
+            }
+        }
+
+        List<Integer> order = new ArrayList<>();
+        for (int idx = 0; idx < entries.size(); idx++) {
+            order.add(idx);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer first, Integer second) {
+                return times.get(first).compareTo(times.get(second));
+            }
+        });
+        for (int idx : order) {
+            if (total <= maxSize) {
+                break;
+            }
+            Path entry = entries.get(idx);
+            // renamed first, so nobody sees a part of the entry
+            Path removed = entry.resolveSibling(entry.getFileName() + ".removed");
+            try {
+                Files.move(entry, removed, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                continue;
+            }
+            // lock file stays, another build may hold it's lock
+            delete(removed);
+            total -= sizes.get(idx);
+        }
+    }
+
+    private static long size(Path dir) throws IOException {
+        long size = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                size += Files.size(file);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Deletes a directory with files, if it exists.
+     */
+    private static void delete(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+}
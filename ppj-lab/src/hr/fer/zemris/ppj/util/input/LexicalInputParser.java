@@ -6,20 +6,36 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
-import hr.fer.zemris.ppj.automaton.Automaton;
+import hr.fer.zemris.ppj.automaton.DFA;
+import hr.fer.zemris.ppj.automaton.DFAExtended;
+import hr.fer.zemris.ppj.automaton.CharAutomaton;
+import hr.fer.zemris.ppj.automaton.DFAMinimizer;
+import hr.fer.zemris.ppj.lexical.KeywordTable;
 import hr.fer.zemris.ppj.lexical.LexRule;
+import hr.fer.zemris.ppj.lexical.LexTables;
 import hr.fer.zemris.ppj.lexical.actions.ChangeStateAction;
 import hr.fer.zemris.ppj.lexical.actions.GoBackAction;
 import hr.fer.zemris.ppj.lexical.actions.LexAction;
 import hr.fer.zemris.ppj.lexical.actions.NewLineAction;
 import hr.fer.zemris.ppj.lexical.actions.SkipAction;
+import hr.fer.zemris.ppj.lexical.automaton.CharClasses;
 import hr.fer.zemris.ppj.lexical.automaton.LexAutomaton;
+import hr.fer.zemris.ppj.lexical.automaton.LazyLexDFA;
 import hr.fer.zemris.ppj.lexical.automaton.LexAutomatonHandler;
+import hr.fer.zemris.ppj.lexical.automaton.LexDFA;
+import hr.fer.zemris.ppj.lexical.automaton.LexMachine;
+import hr.fer.zemris.ppj.lexical.automaton.SymbolTransition;
+import hr.fer.zemris.ppj.lexical.input.SkipRun;
+import hr.fer.zemris.ppj.lexical.regex.RegexParser;
+import hr.fer.zemris.ppj.lexical.regex.SymbolSet;
 
 /**
  * Class which reads definitions for generator of lexical analyzer and offers
@@ -36,24 +52,84 @@ public class LexicalInputParser {
     public static final String GO_BACK = "VRATI_SE";
     public static final String SKIP = "-";
 
+    /**
+     * Default maximum number of states of an automaton that is built by the
+     * generator, automatons with more states are built while analyzing.
+     */
+    public static final int DEFAULT_MAX_DFA_STATES = 1 << 13;
+
     private List<String> stateNames;
     private List<String> lexClasses;
     private HashMap<String, List<LexRule>> states;
+    private HashMap<String, LexMachine> automatons;
+    private HashMap<String, SkipRun> skipRuns;
+    private boolean newLineLines;
     private LexAutomatonHandler handler;
+    private boolean minimize;
+    private int maxDFAStates;
 
     private String currLine;
 
     /**
      * Creates new instance of {@link LexicalInputParser} which reads given
-     * input and parses it.
+     * input and parses it. Automatons of states are minimized.
      * 
      * @param input which contains definitions for generator of lexical analyzer
      */
     public LexicalInputParser(InputStream input) {
+        this(input, true);
+    }
+
+    /**
+     * Creates new instance of {@link LexicalInputParser} which reads given
+     * input and parses it.
+     * 
+     * @param input which contains definitions for generator of lexical analyzer
+     * @param minimize if <code>true</code> automatons of states are minimized
+     */
+    public LexicalInputParser(InputStream input, boolean minimize) {
+        this(input, minimize, DEFAULT_MAX_DFA_STATES);
+    }
+
+    /**
+     * Creates new instance of {@link LexicalInputParser} which reads given
+     * input and parses it. Automatons of states that would have more than the
+     * given number of states are built lazily, while analyzing (see
+     * {@link LazyLexDFA}).
+     * 
+     * @param input which contains definitions for generator of lexical analyzer
+     * @param minimize if <code>true</code> automatons of states are minimized
+     * @param maxDFAStates maximum number of states of an automaton that is
+     *            built completely, zero to build all automatons lazily
+     */
+    public LexicalInputParser(InputStream input, boolean minimize, int maxDFAStates) {
+        this(input, minimize, maxDFAStates, false);
+    }
+
+    /**
+     * Creates new instance of {@link LexicalInputParser} which reads given
+     * input and parses it. With the extended syntax, regular expressions can
+     * have classes like <code>[a-z]</code> and operators <code>+</code> and
+     * <code>?</code> (see {@link RegexParser}).
+     * 
+     * @param input which contains definitions for generator of lexical analyzer
+     * @param minimize if <code>true</code> automatons of states are minimized
+     * @param maxDFAStates maximum number of states of an automaton that is
+     *            built completely, zero to build all automatons lazily
+     * @param extendedSyntax if <code>true</code> regular expressions use the
+     *            extended syntax
+     */
+    public LexicalInputParser(InputStream input, boolean minimize, int maxDFAStates,
+            boolean extendedSyntax) {
+        this.minimize = minimize;
+        this.maxDFAStates = maxDFAStates;
         stateNames = new ArrayList<>();
         lexClasses = new ArrayList<>();
         states = new LinkedHashMap<>();
-        handler = LexAutomaton.getHandler();
+        automatons = new LinkedHashMap<>();
+        skipRuns = new HashMap<>();
+        handler = new LexAutomatonHandler();
+        handler.setExtendedSyntax(extendedSyntax);
 
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(input))) {
             parse(reader);
@@ -135,12 +211,15 @@ public class LexicalInputParser {
      * @throws IOException if error occurs while reading
      */
     private void readRules(BufferedReader reader) throws IOException {
+        Map<String, List<LexAutomaton>> ruleAutomatons = new HashMap<>();
+        // rule -> string it matches, if it matches only one
+        Map<LexRule, String> literals = new HashMap<>();
         while ((currLine = reader.readLine()) != null) {
             int idx = currLine.indexOf('>');
             String state = currLine.substring(1, idx);
             String regEx = currLine.substring(idx + 1);
             // Automaton<Character> automaton = AutomatonCreator.fromString(regEx);
-            Automaton<Character> automaton = handler.fromString(regEx);
+            LexAutomaton automaton = handler.fromString(regEx);
 
             reader.readLine(); // reads the { symbol
             String lexClass = reader.readLine();
@@ -150,12 +229,306 @@ public class LexicalInputParser {
             }
 
             List<LexRule> lexRules = states.get(state);
+            List<LexAutomaton> stateAutomatons = ruleAutomatons.get(state);
             if (lexRules == null) {
-                lexRules = new LinkedList<>();
+                lexRules = new ArrayList<>();
+                stateAutomatons = new ArrayList<>();
+                ruleAutomatons.put(state, stateAutomatons);
             }
-            lexRules.add(new LexRule(lexClass, automaton, actions));
+            LexRule rule = new LexRule(lexClass, automaton, actions);
+            String literal = handler.literal(regEx);
+            if (literal != null && !literal.isEmpty()) {
+                literals.put(rule, literal);
+            }
+            lexRules.add(rule);
+            stateAutomatons.add(automaton);
             states.put(state, lexRules);
         }
+
+        // automatons of all states share symbol classes, they are computed from
+        // transitions of rule automatons, so the joined automatons are built
+        // with transitions via classes instead of symbols
+        List<SymbolTransition> transitions = new ArrayList<>();
+        for (String state : states.keySet()) {
+            transitions.addAll(handler.symbolTransitions(ruleAutomatons.get(state)));
+        }
+        CharClasses classes = new CharClasses(transitions);
+
+        // all rules of a state except keywords are joined into a single
+        // automaton, if it's too big it will be built while analyzing
+        for (String state : states.keySet()) {
+            List<LexRule> rules = states.get(state);
+            Map<LexRule, Map<String, LexRule>> keywords = keywords(rules, literals);
+            Set<LexRule> keywordRules = new HashSet<>();
+            for (Map<String, LexRule> accepted : keywords.values()) {
+                keywordRules.addAll(accepted.values());
+            }
+            List<LexAutomaton> joined = new ArrayList<>();
+            List<Integer> joinedRules = new ArrayList<>();
+            for (int idx = 0; idx < rules.size(); idx++) {
+                if (!keywordRules.contains(rules.get(idx))) {
+                    joined.add(rules.get(idx).getAutomaton());
+                    joinedRules.add(idx);
+                }
+            }
+
+            Map<Integer, Integer> stateLabels = new HashMap<>();
+            DFA<Integer, Integer> dfa = handler.createDFA(joined, stateLabels, classes,
+                    maxDFAStates);
+            if (dfa == null) {
+                automatons.put(state,
+                        new LazyLexDFA(handler, ruleAutomatons.get(state), classes));
+                continue;
+            }
+            if (minimize) {
+                DFAExtended<Integer, Integer> minimal = DFAMinimizer.minimize(dfa, stateLabels);
+                dfa = minimal.getDfa();
+                stateLabels = DFAMinimizer.minimizeLabels(minimal, stateLabels);
+            }
+            // labels are indices of joined rules, automaton needs indices of
+            // all rules
+            for (Map.Entry<Integer, Integer> e : stateLabels.entrySet()) {
+                e.setValue(joinedRules.get(e.getValue()));
+            }
+            for (Map.Entry<LexRule, Map<String, LexRule>> e : keywords.entrySet()) {
+                e.getKey().setKeywords(new KeywordTable(e.getValue()));
+            }
+            LexDFA automaton = new LexDFA(dfa, stateLabels, classes);
+            automatons.put(state, automaton);
+            SkipRun run = skipRun(automaton, states.get(state));
+            if (run != null) {
+                skipRuns.put(state, run);
+            }
+        }
+        newLineLines = countsNewLines(classes);
+    }
+
+    /**
+     * Tests if rules count exactly the new lines, so the line number is always
+     * the number of new lines before the token, plus one: in every state,
+     * every string a rule accepts has as many new lines as the rule has
+     * {@value #NEW_LINE} actions, and a new line is never dropped as an error.
+     * 
+     * @param classes symbol classes of automatons
+     * @return <code>true</code> if rules count exactly the new lines
+     */
+    private boolean countsNewLines(CharClasses classes) {
+        int newLine = classes.classOf('\n');
+        for (int cls : classes.classesOf(SymbolSet.of('\n').complement())) {
+            if (cls == newLine) {
+                return false; // other symbols are in the same class
+            }
+        }
+        for (String state : states.keySet()) {
+            LexMachine automaton = automatons.get(state);
+            if (!(automaton instanceof LexDFA)
+                    || !countsNewLines((LexDFA) automaton, states.get(state), newLine)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks every pair of automaton state and number of new lines on the way
+     * to it from the starting state.
+     */
+    private static boolean countsNewLines(LexDFA automaton, List<LexRule> rules, int newLine) {
+        int next = automaton.transition(automaton.startState(), newLine);
+        if (next == LexMachine.DEAD || automaton.acceptedRule(next) == LexMachine.NO_RULE) {
+            return false; // new line can be dropped
+        }
+        int max = 0;
+        for (LexRule rule : rules) {
+            max = Math.max(max, newLines(rule));
+        }
+        // more new lines than any rule counts are all the same
+        int counts = max + 2;
+        boolean[] seen = new boolean[automaton.numberOfStates() * counts];
+        int[] queue = new int[seen.length];
+        int size = 0;
+        queue[size++] = automaton.startState() * counts;
+        seen[queue[0]] = true;
+        for (int head = 0; head < size; head++) {
+            int state = queue[head] / counts;
+            int lines = queue[head] % counts;
+            int rule = automaton.acceptedRule(state);
+            if (rule != LexMachine.NO_RULE && !countsNewLines(rules.get(rule), lines)) {
+                return false;
+            }
+            for (int cls = 0; cls < automaton.getClasses().count(); cls++) {
+                next = automaton.transition(state, cls);
+                if (next == LexMachine.DEAD) {
+                    continue;
+                }
+                int pair = next * counts + Math.min(max + 1, cls == newLine ? lines + 1 : lines);
+                if (!seen[pair]) {
+                    seen[pair] = true;
+                    queue[size++] = pair;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the rule counts the given number of new
+     *         lines, and so do it's keywords
+     */
+    private static boolean countsNewLines(LexRule rule, int lines) {
+        if (newLines(rule) != lines || lines > 0 && goesBack(rule)) {
+            return false; // rule that goes back can give new lines back
+        }
+        KeywordTable keywords = rule.getKeywords();
+        if (keywords != null) {
+            String[] words = keywords.getKeywords();
+            LexRule[] keywordRules = keywords.getRules();
+            for (int slot = 0; slot < words.length; slot++) {
+                int wordLines = words[slot].length() - words[slot].replace("\n", "").length();
+                if (newLines(keywordRules[slot]) != wordLines
+                        || wordLines > 0 && goesBack(keywordRules[slot])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int newLines(LexRule rule) {
+        int lines = 0;
+        for (LexAction action : rule.getActions()) {
+            if (action instanceof NewLineAction) {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static boolean goesBack(LexRule rule) {
+        for (LexAction action : rule.getActions()) {
+            if (action instanceof GoBackAction) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds keyword rules of a state: rules of lex classes that match a single
+     * string, which no rule before them matches and a later rule of a lex
+     * class that isn't a keyword does.
+     * That rule accepts the keyword instead, and then gives it to the keyword
+     * rule (see {@link KeywordTable}), so the keyword rule isn't needed in the
+     * automaton and the lexer does the same thing as before.
+     * 
+     * @param rules rules of the state, in order
+     * @param literals rule -> string it matches, if it matches only one
+     * @return rule -> keywords it accepts instead of keyword rules
+     */
+    private static Map<LexRule, Map<String, LexRule>> keywords(List<LexRule> rules,
+            Map<LexRule, String> literals) {
+        List<CharAutomaton> automatons = new ArrayList<>();
+        for (LexRule rule : rules) {
+            automatons.add(rule.getAutomaton().newAutomaton());
+        }
+        // keyword rules are the first rules that match their strings, rules
+        // after them can only be keywords with other strings
+        boolean[] none = new boolean[rules.size()];
+        boolean[] candidates = new boolean[rules.size()];
+        for (int idx = 0; idx < rules.size(); idx++) {
+            String literal = literals.get(rules.get(idx));
+            candidates[idx] = literal != null && rules.get(idx).hasLexClass()
+                    && firstAccepting(automatons, literal, 0, none) == idx;
+        }
+
+        Map<LexRule, Map<String, LexRule>> keywords = new LinkedHashMap<>();
+        for (int idx = 0; idx < rules.size(); idx++) {
+            if (!candidates[idx]) {
+                continue;
+            }
+            String literal = literals.get(rules.get(idx));
+            int general = firstAccepting(automatons, literal, idx + 1, candidates);
+            if (general < 0 || !rules.get(general).hasLexClass()) {
+                continue;
+            }
+            Map<String, LexRule> accepted = keywords.get(rules.get(general));
+            if (accepted == null) {
+                accepted = new LinkedHashMap<>();
+                keywords.put(rules.get(general), accepted);
+            }
+            accepted.put(literal, rules.get(idx));
+        }
+        return keywords;
+    }
+
+    /**
+     * @return index of the first automaton from the given index on that
+     *         accepts the text, automatons of skipped rules are ignored, -1 if
+     *         there is none
+     */
+    private static int firstAccepting(List<CharAutomaton> automatons, String text, int from,
+            boolean[] skipped) {
+        for (int idx = from; idx < automatons.size(); idx++) {
+            if (skipped[idx]) {
+                continue;
+            }
+            CharAutomaton automaton = automatons.get(idx);
+            automaton.reset();
+            for (int pos = 0; pos < text.length() && !automaton.isDead(); pos++) {
+                automaton.consume(text.charAt(pos));
+            }
+            if (automaton.accepts()) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds symbols that are skipped one at a time in the state: from the
+     * starting state the automaton goes via the symbol to a state that accepts
+     * a rule and has no transitions, and the rule only skips the symbol and
+     * maybe increments the line number.
+     * 
+     * @param automaton automaton of the state
+     * @param rules rules of the state
+     * @return skipped symbols, <code>null</code> if there are none
+     */
+    private static SkipRun skipRun(LexDFA automaton, List<LexRule> rules) {
+        int numClasses = automaton.getClasses().count();
+        byte[] classLines = new byte[numClasses];
+        boolean skips = false;
+        // class 0 has symbols that no rule uses
+        classLines[0] = SkipRun.STOP;
+        for (int cls = 1; cls < numClasses; cls++) {
+            classLines[cls] = SkipRun.STOP;
+            int next = automaton.transition(automaton.startState(), cls);
+            if (next == LexMachine.DEAD || automaton.acceptedRule(next) == LexMachine.NO_RULE) {
+                continue;
+            }
+            boolean last = true;
+            for (int nextCls = 0; nextCls < numClasses && last; nextCls++) {
+                last = automaton.transition(next, nextCls) == LexMachine.DEAD;
+            }
+            LexRule rule = rules.get(automaton.acceptedRule(next));
+            if (!last || rule.hasLexClass() || rule.getKeywords() != null) {
+                continue;
+            }
+            int lines = 0;
+            for (LexAction action : rule.getActions()) {
+                if (action instanceof NewLineAction) {
+                    lines++;
+                } else if (!(action instanceof SkipAction)) {
+                    lines = SkipRun.STOP;
+                    break;
+                }
+            }
+            if (lines != SkipRun.STOP && lines <= Byte.MAX_VALUE) {
+                classLines[cls] = (byte) lines;
+                skips = true;
+            }
+        }
+        return skips ? new SkipRun(automaton.getClasses(), classLines) : null;
     }
 
     /**
@@ -215,6 +588,17 @@ public class LexicalInputParser {
         return states;
     }
 
+    /**
+     * Returns map of automatons for lexical analyzer, for every state there is
+     * one automaton that recognizes all of the state's rules. Automaton labels
+     * are indices of rules in the list returned by {@link #getStates()}.
+     * 
+     * @return map of automatons for lexical analyzer
+     */
+    public HashMap<String, LexMachine> getAutomatons() {
+        return automatons;
+    }
+
     /**
      * Gives the {@link AutomatonHandler}.
      * 
@@ -224,6 +608,17 @@ public class LexicalInputParser {
         return handler;
     }
 
+    /**
+     * Returns everything the lexical analyzer needs, in one object that can be
+     * shared by lexers.
+     * 
+     * @return tables for lexical analyzer
+     */
+    public LexTables getTables() {
+        return new LexTables(getStartState(), states, automatons, handler, skipRuns,
+                newLineLines);
+    }
+
     /**
      * Returns a list of lexical analyzer states.
      * 
@@ -11,6 +11,9 @@ import java.util.Stack;
 import hr.fer.zemris.ppj.semantic.SemNode;
 import hr.fer.zemris.ppj.semantic.SemNodeT;
 import hr.fer.zemris.ppj.semantic.SemNodeV;
+import hr.fer.zemris.ppj.syntax.LRNode;
+import hr.fer.zemris.ppj.syntax.LRSymbol;
+import hr.fer.zemris.ppj.syntax.grammar.Symbol;
 
 /**
  * @author fhrenic
@@ -64,6 +67,39 @@ public class SemanticInputParser {
 
     }
 
+    /**
+     * Converts the tree built by the parser, same as if it was written and
+     * parsed from the input.
+     * 
+     * @param tree root of the tree, <code>null</code> if there is none
+     */
+    public void parse(LRNode tree) {
+        if (tree == null) {
+            // nothing is written if there is no tree
+            root = new SemNodeV(null);
+            return;
+        }
+        root = new SemNodeV(tree.getSymbol().toString());
+        convert(tree, root);
+    }
+
+    private static void convert(LRNode tree, SemNodeV node) {
+        for (LRNode child : tree.getChildren()) {
+            LRSymbol symbol = child.getSymbol();
+            if (symbol.getSymbol().equals(Symbol.EPS_SYMBOL)) {
+                continue;
+            }
+            if (symbol.getSymbol().isTerminal()) {
+                node.addChild(new SemNodeT(symbol.getSymbol().toString(),
+                        symbol.getLineNumber(), symbol.getOriginalText()));
+            } else {
+                SemNodeV childNode = new SemNodeV(symbol.toString());
+                node.addChild(childNode);
+                convert(child, childNode);
+            }
+        }
+    }
+
     public SemNodeV getRoot() {
         return root;
     }